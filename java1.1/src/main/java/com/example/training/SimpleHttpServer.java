@@ -1,6 +1,5 @@
 package com.example.training;
 
-import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -9,6 +8,12 @@ import java.net.Socket;
 
 public class SimpleHttpServer {
 
+  /**
+   * index.html as a ready-to-send HTTP/1.0 response, rebuilt only when the file's timestamp changes.
+   */
+  private static final ResponseCache RESPONSE_CACHE =
+      new ResponseCache("/index.html", "text/html; charset=UTF-8", "HTTP/1.0", "");
+
   public static void main(String[] args) {
     int port = 5000;
 
@@ -25,16 +30,8 @@ public class SimpleHttpServer {
         InputStream in = client.getInputStream();
         OutputStream out = client.getOutputStream();
 
-        // Prepare HTTP response
-        String body = readResourceFile();
-        String response =
-            "HTTP/1.0 200 OK\r\n" +
-                "Content-Type: text/html\r\n" +
-                "Content-Length: " + body.length() + "\r\n" +
-                "\r\n" +
-                body;
-
-        out.write(response.getBytes());
+        // Served from the pre-encoded cache: one write, no file I/O or re-encoding per hit
+        out.write(RESPONSE_CACHE.get().bytes);
         out.flush();
 
         client.close();
@@ -51,38 +48,4 @@ public class SimpleHttpServer {
       }
     }
   }
-
-  public static String readResourceFile() {
-    StringBuffer buffer = new StringBuffer();
-    InputStream is = null;
-    DataInputStream dis = null;
-    try {
-      is = SimpleHttpServer.class.getResourceAsStream("../../../index.html");
-      if (is == null) {
-        return "ERROR: Resource file index.html not found in CLASSPATH.";
-      }
-      dis = new DataInputStream(is);
-      String line;
-      while ((line = dis.readLine()) != null) {
-        buffer.append(line);
-        buffer.append('\n'); // Append newline character back
-      }
-    } catch (IOException e) {
-      System.out.println("IO Error: " + e.getMessage());
-      return "ERROR: Failed to read file due to I/O exception.";
-    } finally {
-      try {
-        if (dis != null) {
-          dis.close();
-        } else if (is != null) {
-          is.close(); // Fallback if dis was not initialized
-        }
-      } catch (IOException e) {
-        e.printStackTrace();
-      }
-    }
-
-    return buffer.toString();
-  }
-
 }
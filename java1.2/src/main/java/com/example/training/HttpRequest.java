@@ -0,0 +1,171 @@
+package com.example.training;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+
+/**
+ * A minimal HTTP/1.x request head: request line plus headers.
+ * Parsing works directly on the (buffered) socket InputStream, one byte at a time,
+ * so several pipelined requests can be read back to back from the same stream.
+ */
+public class HttpRequest {
+
+  private static final int MAX_LINE = 8192;
+  private static final int MAX_HEADERS = 100;
+
+  private final String method;
+  private final String path;
+  private final String version;
+  private final HashMap headers;
+
+  private HttpRequest(String method, String path, String version, HashMap headers) {
+    this.method = method;
+    this.path = path;
+    this.version = version;
+    this.headers = headers;
+  }
+
+  /**
+   * Reads the next request head from the stream.
+   *
+   * @return the parsed request, or null if the peer closed the connection between requests
+   * @throws MalformedRequestException if the bytes on the wire are not a valid request head
+   */
+  public static HttpRequest read(InputStream in) throws IOException {
+    String requestLine = readLine(in);
+    // Tolerate stray CRLFs between pipelined requests (RFC 7230, section 3.5)
+    while (requestLine != null && requestLine.length() == 0) {
+      requestLine = readLine(in);
+    }
+    if (requestLine == null) {
+      return null;
+    }
+
+    int sp1 = requestLine.indexOf(' ');
+    int sp2 = requestLine.lastIndexOf(' ');
+    if (sp1 <= 0 || sp2 == sp1) {
+      throw new MalformedRequestException("Bad request line: " + requestLine);
+    }
+    String method = requestLine.substring(0, sp1);
+    String path = requestLine.substring(sp1 + 1, sp2).trim();
+    String version = requestLine.substring(sp2 + 1);
+    if (!version.startsWith("HTTP/1.")) {
+      throw new MalformedRequestException("Unsupported protocol: " + version);
+    }
+
+    HashMap headers = new HashMap();
+    String line;
+    while ((line = readLine(in)) != null && line.length() > 0) {
+      if (headers.size() >= MAX_HEADERS) {
+        throw new MalformedRequestException("Too many headers");
+      }
+      int colon = line.indexOf(':');
+      if (colon <= 0) {
+        throw new MalformedRequestException("Bad header line: " + line);
+      }
+      headers.put(line.substring(0, colon).trim().toLowerCase(), line.substring(colon + 1).trim());
+    }
+    if (line == null) {
+      throw new MalformedRequestException("Connection closed inside request head");
+    }
+    return new HttpRequest(method, path, version, headers);
+  }
+
+  /**
+   * Reads one line terminated by LF (an optional preceding CR is dropped), decoding it as ISO-8859-1.
+   *
+   * @return the line, or null on end of stream before any byte was read
+   */
+  private static String readLine(InputStream in) throws IOException {
+    StringBuffer sb = new StringBuffer(64);
+    int b;
+    while ((b = in.read()) != -1) {
+      if (b == '\n') {
+        int len = sb.length();
+        if (len > 0 && sb.charAt(len - 1) == '\r') {
+          sb.setLength(len - 1);
+        }
+        return sb.toString();
+      }
+      if (sb.length() >= MAX_LINE) {
+        throw new MalformedRequestException("Header line too long");
+      }
+      sb.append((char) b);
+    }
+    if (sb.length() > 0) {
+      throw new MalformedRequestException("Connection closed inside request line");
+    }
+    return null;
+  }
+
+  public String getMethod() {
+    return method;
+  }
+
+  public String getPath() {
+    return path;
+  }
+
+  public String getVersion() {
+    return version;
+  }
+
+  /**
+   * @param name header name, case-insensitive
+   */
+  public String getHeader(String name) {
+    return (String) headers.get(name.toLowerCase());
+  }
+
+  /**
+   * HTTP/1.1 connections are persistent unless the client says "Connection: close";
+   * HTTP/1.0 connections are persistent only when the client asks for "Connection: keep-alive".
+   */
+  public boolean isKeepAlive() {
+    String connection = getHeader("Connection");
+    if (connection != null) {
+      connection = connection.toLowerCase();
+      if (connection.indexOf("close") >= 0) {
+        return false;
+      }
+      if (connection.indexOf("keep-alive") >= 0) {
+        return true;
+      }
+    }
+    return "HTTP/1.1".equals(version);
+  }
+
+  /**
+   * @return the declared body length, 0 when absent, or -1 when the body is chunked or the header is invalid
+   */
+  public long getContentLength() {
+    if (getHeader("Transfer-Encoding") != null) {
+      return -1;
+    }
+    String value = getHeader("Content-Length");
+    if (value == null) {
+      return 0;
+    }
+    try {
+      long length = Long.parseLong(value);
+      return length < 0 ? -1 : length;
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  public String toString() {
+    return method + " " + path + " " + version;
+  }
+
+  /**
+   * Signals a syntactically invalid request; the server answers with 400 and closes the connection.
+   */
+  public static class MalformedRequestException extends IOException {
+
+    public MalformedRequestException(String message) {
+      super(message);
+    }
+  }
+}
@@ -0,0 +1,223 @@
+package com.example.training;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+
+/**
+ * Multi-threaded HTTP/1.1 server built only with Java 1.2 APIs.
+ * <p>
+ * Compared to {@link SimpleHttpServer} it:
+ * <ul>
+ *   <li>hands every accepted socket to a bounded {@link WorkerPool} and answers 503 when the pool is saturated,</li>
+ *   <li>parses each request ({@link HttpRequest}) and keeps the connection open (HTTP/1.1 keep-alive),</li>
+ *   <li>supports pipelining: responses are buffered and flushed only once no further request bytes are waiting,
+ *   so a burst of pipelined requests is answered with a single socket write,</li>
+ *   <li>serves index.html from a {@link ResponseCache} instead of re-reading it for every hit.</li>
+ * </ul>
+ * Idle connections are closed after a socket timeout so they cannot pin worker threads forever.
+ */
+public class KeepAliveHttpServer {
+
+  private static final int IDLE_TIMEOUT_MILLIS = 5000;
+  private static final int MAX_REQUESTS_PER_CONNECTION = 10000;
+
+  private final int port;
+  private final WorkerPool pool;
+  private final ResponseCache keepAliveResponse =
+      new ResponseCache("/index.html", "text/html; charset=UTF-8", "HTTP/1.1", "Connection: keep-alive\r\n");
+  private final ResponseCache closeResponse =
+      new ResponseCache("/index.html", "text/html; charset=UTF-8", "HTTP/1.1", "Connection: close\r\n");
+  private volatile boolean running = true;
+  private ServerSocket server;
+
+  public KeepAliveHttpServer(int port, int workers, int queueCapacity) {
+    this.port = port;
+    this.pool = new WorkerPool("http-worker", workers, queueCapacity);
+  }
+
+  public static void main(String[] args) {
+    int port = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+    int workers = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+    int queue = args.length > 2 ? Integer.parseInt(args[2]) : 1024;
+    try {
+      new KeepAliveHttpServer(port, workers, queue).serve();
+    } catch (IOException e) {
+      System.out.println("Server error: " + e.getMessage());
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Accept loop; runs until {@link #stop()} is called.
+   */
+  public void serve() throws IOException {
+    server = new ServerSocket(port, 1024);
+    System.out.println("Keep-alive HTTP server started on port " + port + " with " + pool.threads() + " workers");
+    try {
+      while (running) {
+        Socket client;
+        try {
+          client = server.accept();
+        } catch (IOException e) {
+          if (!running) {
+            break;
+          }
+          System.out.println("Accept failed: " + e.getMessage());
+          continue;
+        }
+        client.setTcpNoDelay(true);
+        client.setSoTimeout(IDLE_TIMEOUT_MILLIS);
+        if (!pool.offer(new ConnectionHandler(client))) {
+          rejectBusy(client);
+        }
+      }
+    } finally {
+      // Connections still waiting for a worker would otherwise hang until the client times out
+      List dropped = pool.shutdown();
+      for (int i = 0; i < dropped.size(); i++) {
+        rejectBusy(((ConnectionHandler) dropped.get(i)).socket);
+      }
+      closeQuietly(server);
+    }
+  }
+
+  public void stop() {
+    running = false;
+    closeQuietly(server);
+  }
+
+  private void rejectBusy(Socket client) {
+    try {
+      OutputStream out = client.getOutputStream();
+      out.write(headers(503, "Service Unavailable", 0, false));
+      out.flush();
+    } catch (IOException e) {
+      // The client is dropped either way
+    } finally {
+      closeQuietly(client);
+    }
+  }
+
+  /**
+   * Serves every request arriving on one persistent connection.
+   */
+  private class ConnectionHandler implements Runnable {
+
+    private final Socket socket;
+
+    ConnectionHandler(Socket socket) {
+      this.socket = socket;
+    }
+
+    public void run() {
+      try {
+        InputStream in = new BufferedInputStream(socket.getInputStream(), 8192);
+        OutputStream out = new BufferedOutputStream(socket.getOutputStream(), 16384);
+        try {
+          serveConnection(in, out);
+        } catch (HttpRequest.MalformedRequestException e) {
+          out.write(headers(400, "Bad Request", 0, false));
+        }
+        out.flush();
+      } catch (InterruptedIOException e) {
+        // Idle timeout: the client kept the connection open without sending anything
+      } catch (IOException e) {
+        // Client reset or went away mid-response; nothing left to answer
+      } finally {
+        closeQuietly(socket);
+      }
+    }
+
+    private void serveConnection(InputStream in, OutputStream out) throws IOException {
+      for (int served = 1; running; served++) {
+        HttpRequest request = HttpRequest.read(in);
+        if (request == null) {
+          return;
+        }
+        long contentLength = request.getContentLength();
+        if (contentLength < 0) {
+          out.write(headers(411, "Length Required", 0, false));
+          return;
+        }
+        skipFully(in, contentLength);
+
+        boolean keepAlive = request.isKeepAlive() && served < MAX_REQUESTS_PER_CONNECTION;
+        writeResponse(request, out, keepAlive);
+        if (!keepAlive) {
+          return;
+        }
+        // Pipelining: only hit the socket once the client has no more requests queued up
+        if (in.available() == 0) {
+          out.flush();
+        }
+      }
+    }
+  }
+
+  private void writeResponse(HttpRequest request, OutputStream out, boolean keepAlive) throws IOException {
+    String method = request.getMethod();
+    boolean head = "HEAD".equals(method);
+    if (!head && !"GET".equals(method)) {
+      out.write(headers(405, "Method Not Allowed", 0, keepAlive));
+      return;
+    }
+    String path = request.getPath();
+    if (!"/".equals(path) && !"/index.html".equals(path)) {
+      out.write(headers(404, "Not Found", 0, keepAlive));
+      return;
+    }
+    ResponseCache.Entry response = (keepAlive ? keepAliveResponse : closeResponse).get();
+    out.write(response.bytes, 0, head ? response.headerLength : response.bytes.length);
+  }
+
+  private static byte[] headers(int status, String reason, int contentLength, boolean keepAlive) {
+    String headers =
+        "HTTP/1.1 " + status + " " + reason + "\r\n" +
+        "Content-Type: text/html; charset=UTF-8\r\n" +
+        "Content-Length: " + contentLength + "\r\n" +
+        "Connection: " + (keepAlive ? "keep-alive" : "close") + "\r\n" +
+        "\r\n";
+    try {
+      return headers.getBytes("ISO-8859-1");
+    } catch (IOException e) {
+      // ISO-8859-1 is a mandatory charset on every Java platform
+      throw new IllegalStateException(e.getMessage());
+    }
+  }
+
+  private static void skipFully(InputStream in, long count) throws IOException {
+    while (count > 0) {
+      if (in.read() == -1) {
+        throw new HttpRequest.MalformedRequestException("Connection closed inside request body");
+      }
+      count--;
+      long skipped = in.skip(count);
+      count -= skipped;
+    }
+  }
+
+  private static void closeQuietly(Socket socket) {
+    try {
+      socket.close();
+    } catch (IOException e) {
+      // Ignored
+    }
+  }
+
+  private static void closeQuietly(ServerSocket socket) {
+    try {
+      if (socket != null) {
+        socket.close();
+      }
+    } catch (IOException e) {
+      // Ignored
+    }
+  }
+}
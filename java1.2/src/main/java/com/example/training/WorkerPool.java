@@ -0,0 +1,100 @@
+package com.example.training;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * A fixed-size pool of worker threads fed by a bounded FIFO queue.
+ * Java 1.2 has no java.util.concurrent, so the hand-off is built on
+ * wait()/notify() around a LinkedList from the new Collections framework.
+ */
+public class WorkerPool {
+
+  private final LinkedList queue = new LinkedList();
+  private final int capacity;
+  private final Thread[] workers;
+  private boolean shutdown;
+
+  public WorkerPool(String name, int threads, int capacity) {
+    if (threads < 1 || capacity < 1) {
+      throw new IllegalArgumentException("threads and capacity must be positive");
+    }
+    this.capacity = capacity;
+    this.workers = new Thread[threads];
+    for (int i = 0; i < threads; i++) {
+      workers[i] = new Thread(new Runnable() {
+        public void run() {
+          runWorker();
+        }
+      }, name + "-" + i);
+      workers[i].setDaemon(true);
+      workers[i].start();
+    }
+  }
+
+  /**
+   * Queues a task without blocking.
+   *
+   * @return false when the queue is full or the pool is shut down, so the caller can shed load
+   */
+  public synchronized boolean offer(Runnable task) {
+    if (shutdown || queue.size() >= capacity) {
+      return false;
+    }
+    queue.addLast(task);
+    notify();
+    return true;
+  }
+
+  public synchronized int queued() {
+    return queue.size();
+  }
+
+  public int threads() {
+    return workers.length;
+  }
+
+  /**
+   * Stops taking tasks; running tasks finish, queued ones are dropped.
+   *
+   * @return the dropped tasks, so the caller can release what they hold (e.g. close their sockets)
+   */
+  public synchronized List shutdown() {
+    shutdown = true;
+    List dropped = new ArrayList(queue);
+    queue.clear();
+    notifyAll();
+    return dropped;
+  }
+
+  private synchronized Runnable take() throws InterruptedException {
+    while (queue.isEmpty()) {
+      if (shutdown) {
+        return null;
+      }
+      wait();
+    }
+    return (Runnable) queue.removeFirst();
+  }
+
+  private void runWorker() {
+    while (true) {
+      Runnable task;
+      try {
+        task = take();
+      } catch (InterruptedException e) {
+        return;
+      }
+      if (task == null) {
+        return;
+      }
+      try {
+        task.run();
+      } catch (RuntimeException e) {
+        // A failing task must not kill the worker thread
+        System.out.println("Worker task failed: " + e);
+      }
+    }
+  }
+}
@@ -0,0 +1,150 @@
+package com.example.training;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+
+/**
+ * Caches one classpath resource as a complete, pre-encoded HTTP response (status line, headers and body
+ * in a single byte[]), so a hit costs exactly one socket write and no file I/O or string building.
+ * <p>
+ * The resource's timestamp is checked at most once per {@link #CHECK_INTERVAL_MILLIS}; when it changes
+ * the response is rebuilt. Resources packed in a jar cannot change at runtime and are loaded only once; a file
+ * whose timestamp cannot be read is re-read at every check.
+ * The file is sent as raw bytes, so no decode/re-encode round trip happens and Content-Length is exact.
+ */
+public class ResponseCache {
+
+  public static final long CHECK_INTERVAL_MILLIS = 1000;
+
+  private final String resourcePath;
+  private final String contentType;
+  private final String protocol;
+  private final String extraHeaders;
+
+  // File.lastModified() answers 0 when it cannot read the file: never trust it, re-read the resource
+  private static final long UNKNOWN = 0;
+  private static final long UNCHANGING = -2;
+
+  private Entry entry;
+  private long lastModified = -1;
+  private long lastCheck;
+
+  /**
+   * @param resourcePath absolute classpath path, e.g. "/index.html"
+   * @param contentType  value of the Content-Type header
+   * @param protocol     protocol of the status line, e.g. "HTTP/1.0"
+   * @param extraHeaders additional header lines, each terminated by CRLF, or an empty string
+   */
+  public ResponseCache(String resourcePath, String contentType, String protocol, String extraHeaders) {
+    this.resourcePath = resourcePath;
+    this.contentType = contentType;
+    this.protocol = protocol;
+    this.extraHeaders = extraHeaders;
+  }
+
+  /**
+   * @return the current response, rebuilt first if the resource changed since the last check
+   */
+  public synchronized Entry get() throws IOException {
+    long now = System.currentTimeMillis();
+    if (entry != null && now - lastCheck < CHECK_INTERVAL_MILLIS) {
+      return entry;
+    }
+    lastCheck = now;
+
+    URL url = ResponseCache.class.getResource(resourcePath);
+    if (url == null) {
+      lastModified = -1;
+      entry = build("404 Not Found", "text/plain",
+          ("ERROR: Resource file " + resourcePath + " not found in CLASSPATH.").getBytes("UTF-8"));
+      return entry;
+    }
+    long modified = timestampOf(url);
+    if (entry == null || modified == UNKNOWN || modified != lastModified) {
+      entry = build("200 OK", contentType, readBytes(url));
+      lastModified = modified;
+    }
+    return entry;
+  }
+
+  private Entry build(String status, String type, byte[] body) throws IOException {
+    String headers =
+        protocol + " " + status + "\r\n" +
+        "Content-Type: " + type + "\r\n" +
+        "Content-Length: " + body.length + "\r\n" +
+        extraHeaders +
+        "\r\n";
+    byte[] head = headers.getBytes("ISO-8859-1");
+    byte[] bytes = new byte[head.length + body.length];
+    System.arraycopy(head, 0, bytes, 0, head.length);
+    System.arraycopy(body, 0, bytes, head.length, body.length);
+    return new Entry(bytes, head.length);
+  }
+
+  /**
+   * @return the file's modification time; {@link #UNCHANGING} for resources inside a jar, {@link #UNKNOWN} when
+   * the file cannot be read
+   */
+  private static long timestampOf(URL url) throws IOException {
+    if ("file".equals(url.getProtocol())) {
+      return new File(decodePath(url.getFile())).lastModified();
+    }
+    return UNCHANGING;
+  }
+
+  /**
+   * Undoes the percent-encoding of a file URL path (spaces, non-ASCII characters as UTF-8). Unlike URLDecoder it
+   * keeps '+' as it is: in a path it is a plain character.
+   */
+  private static String decodePath(String path) throws IOException {
+    if (path.indexOf('%') < 0) {
+      return path;
+    }
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(path.length());
+    for (int i = 0; i < path.length(); i++) {
+      char c = path.charAt(i);
+      if (c == '%' && i + 2 < path.length()) {
+        bytes.write(Integer.parseInt(path.substring(i + 1, i + 3), 16));
+        i += 2;
+      } else if (c < 0x80) {
+        bytes.write(c);
+      } else {
+        byte[] utf8 = String.valueOf(c).getBytes("UTF-8");
+        bytes.write(utf8, 0, utf8.length);
+      }
+    }
+    return new String(bytes.toByteArray(), "UTF-8");
+  }
+
+  private static byte[] readBytes(URL url) throws IOException {
+    InputStream is = url.openStream();
+    try {
+      ByteArrayOutputStream out = new ByteArrayOutputStream(8192);
+      byte[] buf = new byte[8192];
+      int n;
+      while ((n = is.read(buf)) != -1) {
+        out.write(buf, 0, n);
+      }
+      return out.toByteArray();
+    } finally {
+      is.close();
+    }
+  }
+
+  /**
+   * An immutable pre-encoded response. Bytes [0, headerLength) are the head, the rest is the body.
+   */
+  public static class Entry {
+
+    public final byte[] bytes;
+    public final int headerLength;
+
+    Entry(byte[] bytes, int headerLength) {
+      this.bytes = bytes;
+      this.headerLength = headerLength;
+    }
+  }
+}
@@ -2,6 +2,7 @@ package com.example.training;
 
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.Random;
 import java.util.Timer;
 import java.util.TimerTask;
 
@@ -10,6 +11,14 @@ public class TimerDemo {
   private static final SimpleDateFormat FMT = new SimpleDateFormat("HH:mm:ss.SSS");
 
   public static void main(String[] args) throws Exception {
+    if (args.length > 0 && args[0].equals("wheel")) {
+      wheelDemo();
+      int n = args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+      for (int round = 1; round <= 3; round++) { // the first round includes JIT warm-up
+        timeoutBenchmark(n);
+      }
+      return;
+    }
     // true => thread daemon (nu blochează închiderea aplicației)
     Timer timer = new Timer(true);
 
@@ -88,7 +97,109 @@ public class TimerDemo {
     }
   }
 
+  /**
+   * The same three modes on a {@link TimingWheel} with 2 workers; the fixed-delay task is now slow (1200 ms
+   * per run), yet the fixed-rate task keeps its 700 ms rhythm.
+   */
+  private static void wheelDemo() throws InterruptedException {
+    TimingWheel wheel = new TimingWheel(10, 2, true);
+    wheel.schedule(new WheelCountingTask("one-shot", 1, 0), 1000L);
+    wheel.schedule(new WheelCountingTask("slow fixed-delay", 3, 1200L), 500L, 1000L);
+    Date startAt = new Date(System.currentTimeMillis() + 1500L);
+    wheel.scheduleAtFixedRate(new WheelCountingTask("fixed-rate", 5, 200L), startAt, 700L);
+
+    Thread.sleep(7000L);
+    wheel.cancel();
+    System.out.println(ts() + " [main] wheel done");
+  }
+
+  /**
+   * Schedules {@code n} timeouts 10..60 s ahead and cancels 99% of them, as a server does with request
+   * timeouts, on java.util.Timer and on a TimingWheel.
+   */
+  private static void timeoutBenchmark(int n) {
+    Random random = new Random(42);
+    long[] delays = new long[n];
+    for (int i = 0; i < n; i++) {
+      delays[i] = 10000L + random.nextInt(50000);
+    }
+
+    Timer timer = new Timer(true);
+    TimerTask[] timerTasks = new TimerTask[n];
+    long t0 = System.currentTimeMillis();
+    for (int i = 0; i < n; i++) {
+      timerTasks[i] = new SafeTask("timeout");
+      timer.schedule(timerTasks[i], delays[i]);
+    }
+    long t1 = System.currentTimeMillis();
+    for (int i = 0; i < n; i++) {
+      if (i % 100 != 0) {
+        timerTasks[i].cancel();
+      }
+    }
+    int purged = timer.purge(); // without it the cancelled tasks stay in the heap until their deadline
+    long t2 = System.currentTimeMillis();
+    timer.cancel();
+    System.out.println("Timer:       schedule " + n + " in " + (t1 - t0) + " ms, cancel 99% + purge("
+        + purged + ") in " + (t2 - t1) + " ms");
+    timerTasks = null;
+
+    TimingWheel wheel = new TimingWheel(true);
+    WheelTask[] wheelTasks = new WheelTask[n];
+    t0 = System.currentTimeMillis();
+    for (int i = 0; i < n; i++) {
+      wheelTasks[i] = new WheelCountingTask("timeout", 1, 0);
+      wheel.schedule(wheelTasks[i], delays[i]);
+    }
+    t1 = System.currentTimeMillis();
+    for (int i = 0; i < n; i++) {
+      if (i % 100 != 0) {
+        wheelTasks[i].cancel();
+      }
+    }
+    t2 = System.currentTimeMillis();
+    System.out.println("TimingWheel: schedule " + n + " in " + (t1 - t0) + " ms, cancel 99% in " + (t2 - t1)
+        + " ms, still pending: " + wheel.size());
+    wheel.cancel();
+  }
+
+  // CountingTask pentru TimingWheel; workMillis simulează durata muncii
+  static class WheelCountingTask extends WheelTask {
+
+    private final String name;
+    private final int maxRuns;
+    private final long workMillis;
+    private int count = 0;
+
+    WheelCountingTask(String name, int maxRuns, long workMillis) {
+      this.name = name;
+      this.maxRuns = maxRuns;
+      this.workMillis = workMillis;
+    }
+
+    public void run() {
+      count++;
+      System.out.println(ts() + " [" + name + "] run #" + count + " (due " + format(new Date(scheduledExecutionTime())) + ")");
+      if (workMillis > 0) {
+        try {
+          Thread.sleep(workMillis);
+        } catch (InterruptedException ignored) {
+        }
+      }
+      if (count >= maxRuns) {
+        cancel();
+      }
+    }
+  }
+
   private static String ts() {
-    return FMT.format(new Date());
+    return format(new Date());
+  }
+
+  // SimpleDateFormat nu este thread-safe, iar wheelDemo rulează task-urile pe mai mulți workeri
+  private static String format(Date date) {
+    synchronized (FMT) {
+      return FMT.format(date);
+    }
   }
 }
@@ -0,0 +1,428 @@
+package com.example.training;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedList;
+
+/**
+ * A {@link java.util.Timer} replacement for very many timeouts: a hierarchical timing wheel.
+ * <ul>
+ *   <li>4 wheels of 256 slots; slot i of wheel k holds the tasks due in the i-th block of 256^k ticks, so
+ *   schedule and cancel are O(1) (one list insert or unlink) instead of Timer's O(log n) heap,</li>
+ *   <li>every tick expires one slot; when a wheel wraps, the due slot of the next wheel is spread over the
+ *   lower ones. With the default 10 ms tick the wheels cover 2^32 ticks (about 16 months),</li>
+ *   <li>a late timer thread catches up all missed ticks in one batch and runs the tasks after releasing the
+ *   lock, so schedule and cancel never wait for a running task,</li>
+ *   <li>with {@code workers > 0} the due tasks run on that many worker threads, so one slow task does not
+ *   delay all the others (Java 1.3 has no executors or virtual threads),</li>
+ *   <li>same modes as Timer: one-shot, fixed-delay ({@code schedule} with a period) and fixed-rate
+ *   ({@code scheduleAtFixedRate}); a repeating task is rescheduled only after its run ends, so its
+ *   executions never overlap,</li>
+ *   <li>an exception thrown by a task cancels that task only; the timer keeps running (a Timer thread dies).</li>
+ * </ul>
+ * Deadlines are rounded up to the next tick: a task never runs early, and at most one tick late plus the
+ * scheduling delay of the threads.
+ */
+public class TimingWheel {
+
+  private static final int BITS = 8;
+  private static final int SLOTS = 1 << BITS;
+  private static final int MASK = SLOTS - 1;
+  private static final int LEVELS = 4;
+  private static final long MAX_SPAN = 1L << (BITS * LEVELS);
+
+  final Object lock = new Object();
+
+  private final long tickMillis;
+  private final long start;
+  private final Bucket[][] wheels = new Bucket[LEVELS][SLOTS];
+  private final Thread ticker;
+  private final Worker[] workers;
+  private final LinkedList ready = new LinkedList(); // due tasks for the workers, guarded by itself
+  private boolean stopped; // guarded by ready
+
+  // guarded by lock
+  private long now;
+  private int pending;
+  private boolean cancelled;
+
+  /**
+   * A 10 ms tick, tasks run on the timer thread, like {@code new Timer()}.
+   */
+  public TimingWheel() {
+    this(false);
+  }
+
+  public TimingWheel(boolean isDaemon) {
+    this(10, 0, isDaemon);
+  }
+
+  /**
+   * @param tickMillis resolution of the deadlines
+   * @param workers    threads that run the due tasks; 0 runs them on the timer thread
+   */
+  public TimingWheel(long tickMillis, int workers, boolean isDaemon) {
+    if (tickMillis <= 0) {
+      throw new IllegalArgumentException("Non-positive tick.");
+    }
+    this.tickMillis = tickMillis;
+    this.start = System.currentTimeMillis();
+    for (int level = 0; level < LEVELS; level++) {
+      for (int slot = 0; slot < SLOTS; slot++) {
+        wheels[level][slot] = new Bucket();
+      }
+    }
+    this.workers = new Worker[workers];
+    for (int i = 0; i < workers; i++) {
+      this.workers[i] = new Worker("timing-wheel-worker-" + (i + 1));
+      this.workers[i].setDaemon(isDaemon);
+      this.workers[i].start();
+    }
+    ticker = new Thread("timing-wheel") {
+      public void run() {
+        tickLoop();
+      }
+    };
+    ticker.setDaemon(isDaemon);
+    ticker.start();
+  }
+
+  // ---------------------------------------------------------
+  // Same methods as java.util.Timer
+
+  public void schedule(WheelTask task, long delay) {
+    if (delay < 0) {
+      throw new IllegalArgumentException("Negative delay.");
+    }
+    sched(task, System.currentTimeMillis() + delay, 0, false);
+  }
+
+  public void schedule(WheelTask task, Date time) {
+    sched(task, time.getTime(), 0, false);
+  }
+
+  public void schedule(WheelTask task, long delay, long period) {
+    if (delay < 0) {
+      throw new IllegalArgumentException("Negative delay.");
+    }
+    sched(task, System.currentTimeMillis() + delay, period, false);
+  }
+
+  public void schedule(WheelTask task, Date firstTime, long period) {
+    sched(task, firstTime.getTime(), period, false);
+  }
+
+  public void scheduleAtFixedRate(WheelTask task, long delay, long period) {
+    if (delay < 0) {
+      throw new IllegalArgumentException("Negative delay.");
+    }
+    sched(task, System.currentTimeMillis() + delay, period, true);
+  }
+
+  public void scheduleAtFixedRate(WheelTask task, Date firstTime, long period) {
+    sched(task, firstTime.getTime(), period, true);
+  }
+
+  /**
+   * Stops the timer: scheduled tasks are discarded, a task that is running finishes.
+   */
+  public void cancel() {
+    synchronized (lock) {
+      cancelled = true;
+      for (int level = 0; level < LEVELS; level++) {
+        for (int slot = 0; slot < SLOTS; slot++) {
+          Bucket bucket = wheels[level][slot];
+          for (WheelTask t = bucket.head; t != null; t = t.next) {
+            t.state = WheelTask.CANCELLED;
+            t.bucket = null;
+          }
+          bucket.head = null;
+        }
+      }
+      pending = 0;
+      lock.notifyAll();
+    }
+    synchronized (ready) {
+      stopped = true;
+      ready.clear();
+      ready.notifyAll();
+    }
+  }
+
+  /**
+   * Cancelled tasks leave the wheel immediately, so there is never anything to purge.
+   *
+   * @return always 0
+   */
+  public int purge() {
+    return 0;
+  }
+
+  /**
+   * @return how many tasks are waiting for their deadline
+   */
+  public int size() {
+    synchronized (lock) {
+      return pending;
+    }
+  }
+
+  // ---------------------------------------------------------
+
+  private void sched(WheelTask task, long time, long period, boolean fixedRate) {
+    if (time < 0) {
+      throw new IllegalArgumentException("Illegal execution time.");
+    }
+    if (period < 0 || (period == 0 && fixedRate)) {
+      throw new IllegalArgumentException("Non-positive period.");
+    }
+    synchronized (lock) {
+      if (cancelled) {
+        throw new IllegalStateException("Timer already cancelled.");
+      }
+      task.bind(this);
+      task.deadline = time;
+      task.period = period;
+      task.fixedRate = fixedRate;
+      insert(task);
+    }
+  }
+
+  boolean cancelTask(WheelTask task) {
+    synchronized (lock) {
+      boolean prevented = task.state == WheelTask.SCHEDULED;
+      task.state = WheelTask.CANCELLED;
+      if (task.bucket != null) {
+        task.bucket.remove(task);
+        pending--;
+      }
+      return prevented;
+    }
+  }
+
+  /**
+   * Puts a task due at {@code task.deadline} into the wheel; the caller holds the lock.
+   */
+  private void insert(WheelTask task) {
+    if (pending == 0) {
+      // The wheel is empty, so the clock can jump straight to the present: no slots to expire on the way
+      now = Math.max(now, currentTick());
+    }
+    long tick = (task.deadline - start + tickMillis - 1) / tickMillis;
+    task.deadlineTick = Math.max(tick, now + 1);
+    place(task);
+    pending++;
+    if (pending == 1) {
+      lock.notifyAll(); // the timer thread may be waiting for work
+    }
+  }
+
+  /**
+   * Adds the task to the slot of the lowest wheel that can hold its distance from {@code now}.
+   */
+  private void place(WheelTask task) {
+    long due = task.deadlineTick;
+    long distance = due - now;
+    if (distance >= MAX_SPAN) {
+      due = now + MAX_SPAN - 1; // parked in the last wheel; re-placed when that slot comes round
+      distance = MAX_SPAN - 1;
+    }
+    int level = 0;
+    while (level < LEVELS - 1 && distance >= (1L << (BITS * (level + 1)))) {
+      level++;
+    }
+    int slot = (int) ((due >>> (BITS * level)) & MASK);
+    wheels[level][slot].add(task);
+  }
+
+  private void tickLoop() {
+    ArrayList due = new ArrayList();
+    while (true) {
+      synchronized (lock) {
+        try {
+          while (!cancelled && pending == 0) {
+            lock.wait();
+          }
+          if (cancelled) {
+            return;
+          }
+          long target = currentTick();
+          if (target <= now) {
+            long wait = start + (now + 1) * tickMillis - System.currentTimeMillis();
+            lock.wait(Math.max(1, wait));
+            continue;
+          }
+          while (now < target && pending > 0) {
+            advance(due);
+          }
+          if (pending == 0) {
+            now = target;
+          }
+        } catch (InterruptedException e) {
+          return;
+        }
+      }
+      for (int i = 0; i < due.size(); i++) {
+        dispatch((WheelTask) due.get(i));
+      }
+      due.clear();
+    }
+  }
+
+  /**
+   * Moves the clock one tick and collects the tasks due at the new tick.
+   */
+  private void advance(ArrayList due) {
+    now++;
+    // When a wheel wraps, spread the next wheel's current slot over the lower wheels (highest first)
+    for (int level = LEVELS - 1; level > 0; level--) {
+      if ((now & ((1L << (BITS * level)) - 1)) == 0) {
+        Bucket bucket = wheels[level][(int) ((now >>> (BITS * level)) & MASK)];
+        WheelTask t = bucket.takeAll();
+        while (t != null) {
+          WheelTask next = t.next;
+          t.next = null;
+          place(t);
+          t = next;
+        }
+      }
+    }
+    WheelTask t = wheels[0][(int) (now & MASK)].takeAll();
+    while (t != null) {
+      WheelTask next = t.next;
+      t.next = null;
+      if (t.deadlineTick > now) {
+        place(t); // was parked beyond the last wheel
+      } else {
+        pending--;
+        t.lastExecution = t.deadline;
+        if (t.period == 0) {
+          t.state = WheelTask.EXECUTED;
+        }
+        due.add(t);
+      }
+      t = next;
+    }
+  }
+
+  private void dispatch(WheelTask task) {
+    if (workers.length == 0) {
+      execute(task);
+      return;
+    }
+    synchronized (ready) {
+      ready.addLast(task);
+      ready.notify();
+    }
+  }
+
+  /**
+   * Runs a due task, then reschedules it if it repeats: fixed-rate from its previous deadline, fixed-delay
+   * from when this run started (as Timer does).
+   */
+  private void execute(WheelTask task) {
+    synchronized (lock) {
+      // Collected tasks wait in the ready queue or the rest of the due batch, where cancel() does not reach
+      // them: a repeating task stays SCHEDULED, a one-shot task is already EXECUTED
+      if (task.state == WheelTask.CANCELLED || cancelled) {
+        return;
+      }
+    }
+    long started = System.currentTimeMillis();
+    boolean failed = false;
+    try {
+      task.run();
+    } catch (Throwable t) {
+      failed = true;
+      System.err.println("TimingWheel: task " + task + " failed and was cancelled: " + t);
+    }
+    synchronized (lock) {
+      if (failed) {
+        task.state = WheelTask.CANCELLED;
+      }
+      if (task.period == 0 || task.state != WheelTask.SCHEDULED || cancelled) {
+        return;
+      }
+      task.deadline = task.fixedRate ? task.deadline + task.period : started + task.period;
+      insert(task);
+    }
+  }
+
+  private long currentTick() {
+    return (System.currentTimeMillis() - start) / tickMillis;
+  }
+
+  // ---------------------------------------------------------
+
+  /**
+   * One slot: a doubly linked list threaded through the tasks themselves, so unlinking needs no search.
+   */
+  static final class Bucket {
+
+    WheelTask head;
+
+    void add(WheelTask task) {
+      task.bucket = this;
+      task.prev = null;
+      task.next = head;
+      if (head != null) {
+        head.prev = task;
+      }
+      head = task;
+    }
+
+    void remove(WheelTask task) {
+      if (task.prev != null) {
+        task.prev.next = task.next;
+      } else {
+        head = task.next;
+      }
+      if (task.next != null) {
+        task.next.prev = task.prev;
+      }
+      task.prev = null;
+      task.next = null;
+      task.bucket = null;
+    }
+
+    /**
+     * Empties the slot and returns its tasks as a list linked through {@code next}.
+     */
+    WheelTask takeAll() {
+      WheelTask first = head;
+      head = null;
+      for (WheelTask t = first; t != null; t = t.next) {
+        t.bucket = null;
+        t.prev = null;
+      }
+      return first;
+    }
+  }
+
+  private final class Worker extends Thread {
+
+    Worker(String name) {
+      super(name);
+    }
+
+    public void run() {
+      while (true) {
+        WheelTask task;
+        synchronized (ready) {
+          try {
+            while (ready.isEmpty() && !stopped) {
+              ready.wait();
+            }
+          } catch (InterruptedException e) {
+            return;
+          }
+          if (stopped) {
+            return;
+          }
+          task = (WheelTask) ready.removeFirst();
+        }
+        execute(task);
+      }
+    }
+  }
+}
@@ -0,0 +1,79 @@
+package com.example.training;
+
+/**
+ * A task for {@link TimingWheel}, with the same contract as {@link java.util.TimerTask}: implement
+ * {@link #run()}, call {@link #cancel()} to stop it (also from inside run), and read
+ * {@link #scheduledExecutionTime()} to see when the current execution was due.
+ * <p>
+ * A task can be scheduled only once. Cancelling unlinks it from the wheel at once, so there is nothing
+ * left to purge.
+ */
+public abstract class WheelTask implements Runnable {
+
+  static final int VIRGIN = 0;
+  static final int SCHEDULED = 1;
+  static final int EXECUTED = 2;
+  static final int CANCELLED = 3;
+
+  // Set once, under this task's monitor, when the task is scheduled
+  private TimingWheel owner;
+
+  // The fields below are guarded by the owner's lock
+  int state = VIRGIN;
+  long deadline;
+  long deadlineTick;
+  long period;
+  boolean fixedRate;
+  long lastExecution;
+  TimingWheel.Bucket bucket;
+  WheelTask prev;
+  WheelTask next;
+
+  protected WheelTask() {
+  }
+
+  public abstract void run();
+
+  /**
+   * @return true if this prevented one or more future executions, as {@link java.util.TimerTask#cancel()}
+   */
+  public boolean cancel() {
+    TimingWheel wheel;
+    synchronized (this) {
+      wheel = owner;
+      if (wheel == null) {
+        state = CANCELLED;
+        return false;
+      }
+    }
+    return wheel.cancelTask(this);
+  }
+
+  /**
+   * @return when the most recent execution was due, in milliseconds; for repeating tasks, inside run(),
+   * the execution that is running now
+   */
+  public long scheduledExecutionTime() {
+    TimingWheel wheel;
+    synchronized (this) {
+      wheel = owner;
+    }
+    if (wheel == null) {
+      return 0;
+    }
+    synchronized (wheel.lock) {
+      return lastExecution;
+    }
+  }
+
+  /**
+   * Binds the task to {@code wheel}; the caller holds the wheel's lock.
+   */
+  synchronized void bind(TimingWheel wheel) {
+    if (state != VIRGIN || owner != null) {
+      throw new IllegalStateException("Task already scheduled or cancelled");
+    }
+    owner = wheel;
+    state = SCHEDULED;
+  }
+}
@@ -20,13 +20,26 @@ import java.nio.charset.CharsetEncoder;
 import java.util.Iterator;
 import java.util.Set;
 
+import com.example.training.nioReactor.ReactorHttpServer;
+
 /**
  * Demonstrație NIO (Java 1.4): - Non-blocking server cu Selector (eco) - ByteBuffer/CharBuffer - FileChannel: memory-mapped + file locking - Charset
  * encode/decode
+ * <p>
+ * Pentru varianta de producție (acceptor + N selectoare, buffere per conexiune, HTTP/1.1) vezi
+ * {@link ReactorHttpServer}.
  */
 public class ServerClientNioDemo {
 
   public static void main(String[] args) throws Exception {
+    // Cu argumentul "http" pornește serverul HTTP multi-reactor construit pe același model Selector
+    if (args.length > 0 && "http".equals(args[0])) {
+      String[] rest = new String[args.length - 1];
+      System.arraycopy(args, 1, rest, 0, rest.length);
+      ReactorHttpServer.main(rest);
+      return;
+    }
+
     // 1) Pornește un server non-blocking pe un fir separat
     final int port = 9093;
     Thread server = new Thread(new Runnable() {
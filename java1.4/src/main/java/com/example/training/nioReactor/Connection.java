@@ -0,0 +1,138 @@
+package com.example.training.nioReactor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.LinkedList;
+
+/**
+ * State of one client connection, owned by exactly one {@link Reactor} thread (so no locking is needed).
+ * <p>
+ * Each connection has its own read buffer and its own queue of pending response buffers. When the socket
+ * cannot take all queued bytes the connection switches its interest to OP_WRITE only: it stops reading
+ * new requests until the queue drains, so a slow client applies backpressure instead of growing memory.
+ */
+final class Connection {
+
+  /** Stop decoding pipelined requests once this many responses are waiting to be written. */
+  private static final int MAX_QUEUED_RESPONSES = 64;
+
+  private final SocketChannel channel;
+  private final SelectionKey key;
+  private final ReactorHttpServer.Handler handler;
+  private final ByteBuffer in = ByteBuffer.allocate(HttpCodec.MAX_HEAD);
+  private final LinkedList out = new LinkedList();
+  private long bodyToSkip;
+  private boolean closeAfterWrite;
+  private boolean closed;
+
+  Connection(SocketChannel channel, SelectionKey key, ReactorHttpServer.Handler handler) {
+    this.channel = channel;
+    this.key = key;
+    this.handler = handler;
+  }
+
+  void onReadable() throws IOException {
+    int read = channel.read(in);
+    if (read < 0) {
+      close();
+      return;
+    }
+    process();
+  }
+
+  void onWritable() throws IOException {
+    flush();
+    // The queue drained: requests that were held back by backpressure can be decoded now
+    if (out.isEmpty() && !closed) {
+      process();
+    }
+  }
+
+  /**
+   * Alternates decoding and writing until the buffered input is used up or the socket is full.
+   * Without the loop, pipelined requests held back by {@link #MAX_QUEUED_RESPONSES} would wait for a
+   * read event that never comes, because the client already sent everything.
+   */
+  private void process() throws IOException {
+    while (decodeBuffered()) {
+      flush();
+      if (closed || !out.isEmpty()) {
+        return;
+      }
+    }
+    flush();
+  }
+
+  /**
+   * Decodes as many complete requests as the read buffer holds and queues their responses.
+   *
+   * @return true if at least one response was queued
+   */
+  private boolean decodeBuffered() {
+    int queued = out.size();
+    in.flip();
+    try {
+      while (!closeAfterWrite && out.size() < MAX_QUEUED_RESPONSES) {
+        if (bodyToSkip > 0) {
+          int skip = (int) Math.min(bodyToSkip, in.remaining());
+          in.position(in.position() + skip);
+          bodyToSkip -= skip;
+          if (bodyToSkip > 0) {
+            break;
+          }
+        }
+        HttpCodec.Request request = HttpCodec.decode(in);
+        if (request == null) {
+          break;
+        }
+        bodyToSkip = request.getContentLength();
+        out.addLast(handler.handle(request));
+        if (!request.isKeepAlive()) {
+          closeAfterWrite = true;
+        }
+      }
+    } catch (HttpCodec.ProtocolException e) {
+      out.addLast(ReactorHttpServer.badRequest());
+      closeAfterWrite = true;
+    } catch (RuntimeException e) {
+      // A failing handler costs this connection a 500, not the whole reactor
+      System.out.println("Handler failed: " + e);
+      out.addLast(ReactorHttpServer.serverError());
+      closeAfterWrite = true;
+    } finally {
+      in.compact();
+    }
+    return out.size() > queued;
+  }
+
+  /**
+   * Writes all queued responses with one gathering write and updates the interest set.
+   */
+  private void flush() throws IOException {
+    if (!out.isEmpty()) {
+      ByteBuffer[] pending = (ByteBuffer[]) out.toArray(new ByteBuffer[out.size()]);
+      channel.write(pending);
+      while (!out.isEmpty() && !((ByteBuffer) out.getFirst()).hasRemaining()) {
+        out.removeFirst();
+      }
+    }
+    if (!out.isEmpty()) {
+      key.interestOps(SelectionKey.OP_WRITE);
+    } else if (closeAfterWrite) {
+      close();
+    } else {
+      key.interestOps(SelectionKey.OP_READ);
+    }
+  }
+
+  void close() {
+    closed = true;
+    key.cancel();
+    try {
+      channel.close();
+    } catch (IOException ignore) {
+    }
+  }
+}
@@ -0,0 +1,190 @@
+package com.example.training.nioReactor;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+
+/**
+ * Incremental HTTP/1.1 codec working directly on NIO buffers.
+ * <p>
+ * {@link #decode(ByteBuffer)} is called with whatever bytes a non-blocking read produced so far; it returns
+ * null until a complete request head (terminated by CRLF CRLF) is available, so requests split across
+ * several reads, or several pipelined requests inside one read, are both handled.
+ */
+public final class HttpCodec {
+
+  /** Largest request head we accept; a full buffer without CRLF CRLF is rejected. */
+  public static final int MAX_HEAD = 8192;
+
+  private HttpCodec() {
+  }
+
+  /**
+   * Tries to decode one request head starting at the buffer's position.
+   *
+   * @param in buffer in read mode; on success its position is moved past the head
+   * @return the request, or null if the head is not complete yet (only leading blank lines are consumed)
+   * @throws ProtocolException if the head is malformed or larger than {@link #MAX_HEAD}
+   */
+  public static Request decode(ByteBuffer in) throws ProtocolException {
+    int limit = in.limit();
+    // Skip empty lines some clients send between pipelined requests
+    int start = in.position();
+    while (start < limit && (in.get(start) == '\r' || in.get(start) == '\n')) {
+      start++;
+    }
+    in.position(start);
+    int end = -1;
+    for (int i = start; i + 3 < limit; i++) {
+      if (in.get(i) == '\r' && in.get(i + 1) == '\n' && in.get(i + 2) == '\r' && in.get(i + 3) == '\n') {
+        end = i;
+        break;
+      }
+    }
+    if (end < 0) {
+      if (limit - start >= MAX_HEAD) {
+        throw new ProtocolException("Request head exceeds " + MAX_HEAD + " bytes");
+      }
+      return null;
+    }
+
+    byte[] raw = new byte[end - start];
+    for (int i = 0; i < raw.length; i++) {
+      raw[i] = in.get(start + i);
+    }
+    in.position(end + 4);
+    return parse(latin1(raw));
+  }
+
+  private static Request parse(String head) throws ProtocolException {
+    int eol = head.indexOf("\r\n");
+    String requestLine = eol < 0 ? head : head.substring(0, eol);
+    int sp1 = requestLine.indexOf(' ');
+    int sp2 = requestLine.lastIndexOf(' ');
+    if (sp1 <= 0 || sp2 == sp1) {
+      throw new ProtocolException("Bad request line: " + requestLine);
+    }
+    Request req = new Request();
+    req.method = requestLine.substring(0, sp1);
+    req.path = requestLine.substring(sp1 + 1, sp2).trim();
+    req.version = requestLine.substring(sp2 + 1);
+    if (!req.version.startsWith("HTTP/1.")) {
+      throw new ProtocolException("Unsupported protocol: " + req.version);
+    }
+
+    req.keepAlive = "HTTP/1.1".equals(req.version);
+    int pos = eol < 0 ? head.length() : eol + 2;
+    while (pos < head.length()) {
+      int next = head.indexOf("\r\n", pos);
+      if (next < 0) {
+        next = head.length();
+      }
+      String line = head.substring(pos, next);
+      pos = next + 2;
+      int colon = line.indexOf(':');
+      if (colon <= 0) {
+        throw new ProtocolException("Bad header line: " + line);
+      }
+      String name = line.substring(0, colon).trim().toLowerCase();
+      String value = line.substring(colon + 1).trim();
+      if ("connection".equals(name)) {
+        String v = value.toLowerCase();
+        if (v.indexOf("close") >= 0) {
+          req.keepAlive = false;
+        } else if (v.indexOf("keep-alive") >= 0) {
+          req.keepAlive = true;
+        }
+      } else if ("content-length".equals(name)) {
+        try {
+          req.contentLength = Long.parseLong(value);
+        } catch (NumberFormatException e) {
+          throw new ProtocolException("Bad Content-Length: " + value);
+        }
+        if (req.contentLength < 0) {
+          throw new ProtocolException("Bad Content-Length: " + value);
+        }
+      } else if ("transfer-encoding".equals(name)) {
+        throw new ProtocolException("Chunked request bodies are not supported");
+      }
+    }
+    return req;
+  }
+
+  /**
+   * Encodes a complete response (head and body) into one read-only buffer.
+   * The result can be shared by all connections: each one writes a {@link ByteBuffer#duplicate()}.
+   */
+  public static ByteBuffer encode(int status, String reason, String contentType, byte[] body, boolean keepAlive) {
+    String head =
+        "HTTP/1.1 " + status + " " + reason + "\r\n" +
+        "Content-Type: " + contentType + "\r\n" +
+        "Content-Length: " + body.length + "\r\n" +
+        "Connection: " + (keepAlive ? "keep-alive" : "close") + "\r\n" +
+        "\r\n";
+    byte[] headBytes = ascii(head);
+    ByteBuffer buf = ByteBuffer.allocateDirect(headBytes.length + body.length);
+    buf.put(headBytes).put(body).flip();
+    return buf.asReadOnlyBuffer();
+  }
+
+  static byte[] ascii(String s) {
+    try {
+      return s.getBytes("US-ASCII");
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e.getMessage());
+    }
+  }
+
+  private static String latin1(byte[] bytes) {
+    try {
+      return new String(bytes, "ISO-8859-1");
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e.getMessage());
+    }
+  }
+
+  /**
+   * A decoded request head. Only the fields the reactor needs are extracted.
+   */
+  public static final class Request {
+
+    String method;
+    String path;
+    String version;
+    boolean keepAlive;
+    long contentLength;
+
+    public String getMethod() {
+      return method;
+    }
+
+    public String getPath() {
+      return path;
+    }
+
+    public String getVersion() {
+      return version;
+    }
+
+    public boolean isKeepAlive() {
+      return keepAlive;
+    }
+
+    public long getContentLength() {
+      return contentLength;
+    }
+
+    public String toString() {
+      return method + " " + path + " " + version;
+    }
+  }
+
+  /**
+   * The peer sent something that is not a valid HTTP/1.x request; the connection answers 400 and closes.
+   */
+  public static class ProtocolException extends Exception {
+
+    public ProtocolException(String message) {
+      super(message);
+    }
+  }
+}
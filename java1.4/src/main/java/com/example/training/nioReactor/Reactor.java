@@ -0,0 +1,111 @@
+package com.example.training.nioReactor;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.LinkedList;
+
+/**
+ * One selector thread serving a share of the connections.
+ * <p>
+ * New channels arrive from the acceptor thread through a small queue: registering a channel directly from
+ * another thread would block while this thread sits in select(), so the acceptor only enqueues and wakes
+ * the selector, and the registration happens here.
+ */
+final class Reactor implements Runnable {
+
+  private final Selector selector;
+  private final ReactorHttpServer.Handler handler;
+  private final LinkedList pending = new LinkedList();
+  private volatile boolean running = true;
+
+  Reactor(ReactorHttpServer.Handler handler) throws IOException {
+    this.selector = Selector.open();
+    this.handler = handler;
+  }
+
+  /**
+   * Hands a freshly accepted, non-blocking channel to this reactor. Called from the acceptor thread.
+   */
+  void register(SocketChannel channel) {
+    synchronized (pending) {
+      pending.addLast(channel);
+    }
+    selector.wakeup();
+  }
+
+  void stop() {
+    running = false;
+    selector.wakeup();
+  }
+
+  public void run() {
+    try {
+      while (running) {
+        selector.select();
+        registerPending();
+        for (Iterator it = selector.selectedKeys().iterator(); it.hasNext(); ) {
+          SelectionKey key = (SelectionKey) it.next();
+          it.remove();
+          Connection connection = (Connection) key.attachment();
+          try {
+            if (key.isValid() && key.isReadable()) {
+              connection.onReadable();
+            }
+            if (key.isValid() && key.isWritable()) {
+              connection.onWritable();
+            }
+          } catch (IOException e) {
+            // Peer reset the connection; only this connection is affected
+            connection.close();
+          } catch (RuntimeException e) {
+            // E.g. CancelledKeyException: drop this connection, keep serving the others
+            System.out.println("Connection failed: " + e);
+            connection.close();
+          }
+        }
+      }
+    } catch (IOException e) {
+      e.printStackTrace();
+    } finally {
+      closeAll();
+    }
+  }
+
+  private void registerPending() {
+    while (true) {
+      SocketChannel channel;
+      synchronized (pending) {
+        if (pending.isEmpty()) {
+          return;
+        }
+        channel = (SocketChannel) pending.removeFirst();
+      }
+      try {
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+        key.attach(new Connection(channel, key, handler));
+      } catch (IOException e) {
+        try {
+          channel.close();
+        } catch (IOException ignore) {
+        }
+      }
+    }
+  }
+
+  private void closeAll() {
+    for (Iterator it = selector.keys().iterator(); it.hasNext(); ) {
+      SelectionKey key = (SelectionKey) it.next();
+      try {
+        key.channel().close();
+      } catch (IOException ignore) {
+      }
+    }
+    try {
+      selector.close();
+    } catch (IOException ignore) {
+    }
+  }
+}
@@ -0,0 +1,150 @@
+package com.example.training.nioReactor;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Multi-reactor HTTP/1.1 server (Java 1.4 NIO), grown out of the echo server in
+ * {@link com.example.training.ServerClientNioDemo}.
+ * <ul>
+ *   <li>one acceptor thread blocks in accept() and deals the new channels round-robin to the reactors,</li>
+ *   <li>N {@link Reactor} threads (one per core by default), each with its own Selector,</li>
+ *   <li>per-connection read buffer and response queue, with OP_WRITE backpressure ({@link Connection}),</li>
+ *   <li>keep-alive and pipelining through the incremental {@link HttpCodec}.</li>
+ * </ul>
+ * No thread is tied to a socket, so the connection count is limited by file descriptors and memory only
+ * (about 8 KB of read buffer per connection), not by the number of threads.
+ */
+public class ReactorHttpServer {
+
+  /**
+   * Produces the response for a decoded request. Runs on a reactor thread, so it must not block.
+   * The returned buffer is written as-is: return a {@link ByteBuffer#duplicate()} of shared responses.
+   */
+  public interface Handler {
+
+    ByteBuffer handle(HttpCodec.Request request);
+  }
+
+  private static final ByteBuffer BAD_REQUEST =
+      HttpCodec.encode(400, "Bad Request", "text/plain", HttpCodec.ascii("Bad Request\n"), false);
+  private static final ByteBuffer SERVER_ERROR =
+      HttpCodec.encode(500, "Internal Server Error", "text/plain", HttpCodec.ascii("Internal Server Error\n"), false);
+
+  private final int port;
+  private final Reactor[] reactors;
+  private volatile boolean running = true;
+  private ServerSocketChannel server;
+
+  public ReactorHttpServer(int port, int reactorCount, Handler handler) throws IOException {
+    this.port = port;
+    this.reactors = new Reactor[reactorCount];
+    for (int i = 0; i < reactorCount; i++) {
+      reactors[i] = new Reactor(handler);
+    }
+  }
+
+  public static void main(String[] args) throws IOException {
+    int port = args.length > 0 ? Integer.parseInt(args[0]) : 9094;
+    int reactors = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+    new ReactorHttpServer(port, reactors, new HelloHandler()).serve();
+  }
+
+  /**
+   * Starts the reactor threads and runs the accept loop on the calling thread until {@link #stop()}.
+   */
+  public void serve() throws IOException {
+    for (int i = 0; i < reactors.length; i++) {
+      Thread t = new Thread(reactors[i], "nio-reactor-" + i);
+      t.setDaemon(true);
+      t.start();
+    }
+
+    server = ServerSocketChannel.open();
+    server.socket().setReuseAddress(true);
+    server.socket().bind(new InetSocketAddress(port), 4096);
+    System.out.println("[srv] HTTP listening on " + port + " with " + reactors.length + " reactors");
+
+    int next = 0;
+    try {
+      while (running) {
+        SocketChannel channel;
+        try {
+          channel = server.accept();
+        } catch (IOException e) {
+          if (!running) {
+            break;
+          }
+          System.out.println("[srv] accept failed: " + e.getMessage());
+          continue;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        reactors[next].register(channel);
+        next = (next + 1) % reactors.length;
+      }
+    } finally {
+      stop();
+    }
+  }
+
+  public void stop() {
+    running = false;
+    for (int i = 0; i < reactors.length; i++) {
+      reactors[i].stop();
+    }
+    if (server != null) {
+      try {
+        server.close();
+      } catch (IOException ignore) {
+      }
+    }
+  }
+
+  static ByteBuffer badRequest() {
+    return BAD_REQUEST.duplicate();
+  }
+
+  static ByteBuffer serverError() {
+    return SERVER_ERROR.duplicate();
+  }
+
+  /**
+   * Default handler: a fixed greeting on GET /, pre-encoded once and shared by all connections.
+   */
+  static final class HelloHandler implements Handler {
+
+    private final ByteBuffer okKeepAlive = ok(true);
+    private final ByteBuffer okClose = ok(false);
+    private final ByteBuffer notFoundKeepAlive = notFound(true);
+    private final ByteBuffer notFoundClose = notFound(false);
+    private final ByteBuffer notAllowedKeepAlive = notAllowed(true);
+    private final ByteBuffer notAllowedClose = notAllowed(false);
+
+    public ByteBuffer handle(HttpCodec.Request request) {
+      boolean keepAlive = request.isKeepAlive();
+      if (!"GET".equals(request.getMethod())) {
+        return (keepAlive ? notAllowedKeepAlive : notAllowedClose).duplicate();
+      }
+      if ("/".equals(request.getPath())) {
+        return (keepAlive ? okKeepAlive : okClose).duplicate();
+      }
+      return (keepAlive ? notFoundKeepAlive : notFoundClose).duplicate();
+    }
+
+    private static ByteBuffer ok(boolean keepAlive) {
+      return HttpCodec.encode(200, "OK", "text/plain", HttpCodec.ascii("Salut din reactorul NIO 1.4!\n"), keepAlive);
+    }
+
+    private static ByteBuffer notFound(boolean keepAlive) {
+      return HttpCodec.encode(404, "Not Found", "text/plain", HttpCodec.ascii("Not Found\n"), keepAlive);
+    }
+
+    private static ByteBuffer notAllowed(boolean keepAlive) {
+      return HttpCodec.encode(405, "Method Not Allowed", "text/plain", HttpCodec.ascii("Method Not Allowed\n"), keepAlive);
+    }
+  }
+}
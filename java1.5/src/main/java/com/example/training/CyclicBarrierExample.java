@@ -6,7 +6,18 @@ import java.util.concurrent.LinkedBlockingQueue;
 
 public class CyclicBarrierExample {
 
-  public static void main(String[] args) {
+  /**
+   * {@code phased [workers] [cells] [phases]} runs {@link #phased} instead.
+   */
+  public static void main(String[] args) throws InterruptedException {
+    if (args.length > 0 && "phased".equals(args[0])) {
+      int workers = args.length > 1 ? Integer.parseInt(args[1])
+          : Math.max(2, Runtime.getRuntime().availableProcessors());
+      int cells = args.length > 2 ? Integer.parseInt(args[2]) : 100000;
+      int phases = args.length > 3 ? Integer.parseInt(args[3]) : 1000;
+      phased(workers, cells, phases);
+      return;
+    }
     int participants = 3;
 
     CyclicBarrier barrier = new CyclicBarrier(
@@ -24,6 +35,39 @@ public class CyclicBarrierExample {
     }
   }
 
+  /**
+   * Heat diffusion along a rod (Jacobi iterations): every phase each cell becomes the average of itself and its two
+   * neighbours, the ends stay at 100 and 0 degrees. Runs once on the spin barrier and once on a CyclicBarrier,
+   * after a warm-up run each; small {@code cells} make the barrier cost dominate.
+   */
+  static void phased(int workers, int cells, int phases) throws InterruptedException {
+    PhasedComputeEngine.Kernel heat = new PhasedComputeEngine.Kernel() {
+      public void compute(int phase, double[] current, double[] next, int from, int to) {
+        int last = current.length - 1;
+        for (int i = from; i < to; i++) {
+          if (i == 0 || i == last) {
+            next[i] = current[i];
+          } else {
+            next[i] = (current[i - 1] + current[i] + current[i + 1]) / 3;
+          }
+        }
+      }
+    };
+    System.out.println(workers + " workers, " + cells + " cells, " + phases + " phases");
+    for (int mode = 0; mode < 2; mode++) {
+      boolean spinning = mode == 0;
+      PhasedComputeEngine engine = new PhasedComputeEngine(workers, cells, spinning);
+      engine.state()[0] = 100;
+      engine.run(heat, phases); // warm-up
+      PhasedComputeEngine.Stats stats = engine.run(heat, phases);
+      double[] rod = engine.state();
+      engine.shutdown();
+      System.out.println((spinning ? "Spin barrier:   " : "CyclicBarrier:  ") + stats);
+      System.out.println("  temperature at cells 10, 30, 100: " + Math.round(rod[Math.min(10, cells - 1)]) + " "
+          + Math.round(rod[Math.min(30, cells - 1)]) + " " + Math.round(rod[Math.min(100, cells - 1)]));
+    }
+  }
+
   static class Worker implements Runnable {
 
     private final int id;
@@ -0,0 +1,351 @@
+package com.example.training;
+
+import java.util.Arrays;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs an iterative computation over an array in phases: {@link CyclicBarrierExample} generalised to many phases
+ * over partitioned data.
+ * <ul>
+ *   <li>the array is split into one contiguous partition per worker; worker i computes partition i in every phase
+ *   and every run, on the same long-lived thread, so its slice stays in that core's cache (Java cannot pin a thread
+ *   to a core, the OS usually keeps a busy thread where it is),</li>
+ *   <li>the state is double-buffered: a phase reads {@code current} and writes {@code next}; the last worker to
+ *   arrive at the barrier swaps the two, so no worker ever reads a cell another worker is writing,</li>
+ *   <li>the barrier is a spin barrier: one atomic decrement per arrival, the waiters spin on a volatile generation
+ *   number, then yield, then park. A phase switch costs microseconds instead of the lock, condition and thread
+ *   wake-ups of a CyclicBarrier ({@code spinning = false} uses a CyclicBarrier, for comparison),</li>
+ *   <li>every phase is timed, and every worker measures how long it took to see the barrier open.</li>
+ * </ul>
+ * Java 1.5 has no Phaser (added in Java 7), hence the hand-made barrier.
+ */
+public class PhasedComputeEngine {
+
+  /**
+   * One phase on one partition: read {@code current} (neighbouring cells included), write
+   * {@code next[from..to)}.
+   */
+  public interface Kernel {
+
+    void compute(int phase, double[] current, double[] next, int from, int to);
+  }
+
+  private final boolean spinning;
+  private final Worker[] workers;
+  private final Object jobLock = new Object();
+
+  // swapped by the last worker to arrive at the barrier; the barrier publishes the swap to the others
+  private double[] current;
+  private double[] next;
+
+  // guarded by jobLock
+  private Job job;
+  private int jobSeq;
+  private boolean shutdown;
+
+  /**
+   * @param spinning true for the spin barrier, false for a CyclicBarrier
+   */
+  public PhasedComputeEngine(int workerCount, int size, boolean spinning) {
+    if (workerCount < 1 || size < workerCount) {
+      throw new IllegalArgumentException("Need 1 <= workers <= size: " + workerCount + ", " + size);
+    }
+    this.spinning = spinning;
+    this.current = new double[size];
+    this.next = new double[size];
+    this.workers = new Worker[workerCount];
+    for (int i = 0; i < workerCount; i++) {
+      workers[i] = new Worker(i, (int) ((long) size * i / workerCount), (int) ((long) size * (i + 1) / workerCount));
+      workers[i].setDaemon(true);
+      workers[i].start();
+    }
+  }
+
+  /**
+   * The state read by the next phase: fill it before {@link #run}, read the result after.
+   */
+  public double[] state() {
+    return current;
+  }
+
+  /**
+   * Runs {@code phases} phases of {@code kernel} on all workers and waits for the last one.
+   */
+  public synchronized Stats run(Kernel kernel, int phases) throws InterruptedException {
+    if (phases <= 0) {
+      return new Stats(new long[0], 0, 0, 0);
+    }
+    Job j = new Job(kernel, phases, workers.length);
+    j.barrier = spinning ? (Barrier) new SpinBarrier(workers.length, j) : new JdkBarrier(workers.length, j);
+    for (int i = 0; i < workers.length; i++) {
+      workers[i].releaseSum = 0;
+      workers[i].releaseMax = 0;
+    }
+    long start = System.nanoTime();
+    j.phaseStart = start;
+    synchronized (jobLock) {
+      if (shutdown) {
+        throw new IllegalStateException("Engine shut down.");
+      }
+      job = j;
+      jobSeq++;
+      jobLock.notifyAll();
+    }
+    j.done.await();
+    long total = System.nanoTime() - start;
+    if (j.failure != null) {
+      throw new RuntimeException("Phase " + (j.completed - 1) + " failed", j.failure);
+    }
+    long releaseSum = 0;
+    long releaseMax = 0;
+    for (int i = 0; i < workers.length; i++) {
+      releaseSum += workers[i].releaseSum;
+      releaseMax = Math.max(releaseMax, workers[i].releaseMax);
+    }
+    long waits = (long) phases * workers.length;
+    return new Stats(j.phaseNanos, total, releaseSum / waits, releaseMax);
+  }
+
+  /**
+   * Stops the workers once the current run (if any) ends.
+   */
+  public void shutdown() {
+    synchronized (jobLock) {
+      shutdown = true;
+      jobLock.notifyAll();
+    }
+  }
+
+  /**
+   * Barrier action, run by the last worker to arrive, before the others are released.
+   */
+  private void advance(Job j) {
+    long now = System.nanoTime();
+    j.phaseNanos[j.completed++] = now - j.phaseStart;
+    j.phaseStart = now;
+    double[] t = current;
+    current = next;
+    next = t;
+    j.releasedAt = now;
+  }
+
+  // ---------------------------------------------------------
+
+  public static class Stats {
+
+    private final long[] phaseNanos;
+    private final long totalNanos;
+    private final long avgReleaseNanos;
+    private final long maxReleaseNanos;
+
+    Stats(long[] phaseNanos, long totalNanos, long avgReleaseNanos, long maxReleaseNanos) {
+      this.phaseNanos = phaseNanos;
+      this.totalNanos = totalNanos;
+      this.avgReleaseNanos = avgReleaseNanos;
+      this.maxReleaseNanos = maxReleaseNanos;
+    }
+
+    /**
+     * @return the duration of every phase, from the previous barrier opening to the last arrival
+     */
+    public long[] phaseNanos() {
+      return phaseNanos.clone();
+    }
+
+    public long totalNanos() {
+      return totalNanos;
+    }
+
+    /**
+     * @return average time from the barrier opening until a waiting worker noticed it
+     */
+    public long avgReleaseNanos() {
+      return avgReleaseNanos;
+    }
+
+    public long maxReleaseNanos() {
+      return maxReleaseNanos;
+    }
+
+    public double phasesPerSecond() {
+      return totalNanos == 0 ? 0 : phaseNanos.length * 1e9 / totalNanos;
+    }
+
+    public String toString() {
+      long[] sorted = phaseNanos.clone();
+      Arrays.sort(sorted);
+      if (sorted.length == 0) {
+        return "0 phases";
+      }
+      return sorted.length + " phases in " + totalNanos / 1000000 + " ms (" + (long) phasesPerSecond() + "/s)"
+          + ", phase us: min " + sorted[0] / 1000
+          + " p50 " + sorted[sorted.length / 2] / 1000
+          + " p99 " + sorted[(int) (sorted.length * 0.99)] / 1000
+          + " max " + sorted[sorted.length - 1] / 1000
+          + ", barrier release us: avg " + avgReleaseNanos / 1000.0 + " max " + maxReleaseNanos / 1000;
+    }
+  }
+
+  private static final class Job {
+
+    final Kernel kernel;
+    final int phases;
+    final long[] phaseNanos;
+    final CountDownLatch done;
+    Barrier barrier;
+
+    // written by the barrier action only
+    int completed;
+    long phaseStart;
+    volatile long releasedAt;
+
+    volatile Throwable failure; // the last one wins if several kernels fail in the same phase
+
+    Job(Kernel kernel, int phases, int workers) {
+      this.kernel = kernel;
+      this.phases = phases;
+      this.phaseNanos = new long[phases];
+      this.done = new CountDownLatch(workers);
+    }
+  }
+
+  private final class Worker extends Thread {
+
+    private final int from;
+    private final int to;
+    // release latencies of the current run; read by run() after the job is done
+    long releaseSum;
+    long releaseMax;
+
+    Worker(int id, int from, int to) {
+      super("phased-worker-" + id);
+      this.from = from;
+      this.to = to;
+    }
+
+    public void run() {
+      int seen = 0;
+      while (true) {
+        Job j;
+        synchronized (jobLock) {
+          try {
+            while (jobSeq == seen && !shutdown) {
+              jobLock.wait();
+            }
+          } catch (InterruptedException e) {
+            return;
+          }
+          if (shutdown) {
+            return;
+          }
+          seen = jobSeq;
+          j = job;
+        }
+        runPhases(j);
+      }
+    }
+
+    /**
+     * A failing kernel still arrives at the barrier of its phase, so all workers see the failure after that
+     * barrier and stop together; nobody is left waiting for a worker that has quit.
+     */
+    private void runPhases(Job j) {
+      try {
+        for (int phase = 0; phase < j.phases; phase++) {
+          try {
+            j.kernel.compute(phase, current, next, from, to);
+          } catch (Throwable t) {
+            j.failure = t;
+          }
+          j.barrier.await();
+          long release = System.nanoTime() - j.releasedAt;
+          releaseSum += release;
+          if (release > releaseMax) {
+            releaseMax = release;
+          }
+          if (j.failure != null) {
+            break;
+          }
+        }
+      } catch (Exception e) {
+        j.failure = e; // interrupted or broken barrier: nobody interrupts the workers, so this does not happen
+      } finally {
+        j.done.countDown();
+      }
+    }
+  }
+
+  // ---------------------------------------------------------
+
+  interface Barrier {
+
+    void await() throws InterruptedException, BrokenBarrierException;
+  }
+
+  /**
+   * Generation-counting spin barrier: the last of {@code parties} arrivals runs the action, re-arms the counter and
+   * bumps the generation the others are watching.
+   */
+  private final class SpinBarrier implements Barrier {
+
+    private final int parties;
+    private final Job job;
+    private final int spins;
+    private final AtomicInteger arrivals;
+    private volatile int generation;
+
+    SpinBarrier(int parties, Job job) {
+      this.parties = parties;
+      this.job = job;
+      // Spinning only pays while every worker has a core of its own; otherwise it steals the core of the worker
+      // everybody is waiting for
+      this.spins = Runtime.getRuntime().availableProcessors() >= parties ? 20000 : 0;
+      this.arrivals = new AtomicInteger(parties);
+    }
+
+    public void await() throws InterruptedException {
+      int gen = generation;
+      if (arrivals.decrementAndGet() == 0) {
+        advance(job);
+        arrivals.set(parties); // nobody arrives for the next generation before it is opened below
+        generation = gen + 1;
+        return;
+      }
+      for (int i = 0; generation == gen; i++) {
+        if (i < spins) {
+          continue;
+        }
+        if (i < spins + 100) {
+          Thread.yield();
+        } else {
+          LockSupport.parkNanos(10000);
+          if (Thread.interrupted()) {
+            throw new InterruptedException();
+          }
+        }
+      }
+    }
+
+  }
+
+  private final class JdkBarrier implements Barrier {
+
+    private final CyclicBarrier barrier;
+
+    JdkBarrier(int parties, final Job job) {
+      this.barrier = new CyclicBarrier(parties, new Runnable() {
+        public void run() {
+          advance(job);
+        }
+      });
+    }
+
+    public void await() throws InterruptedException, BrokenBarrierException {
+      barrier.await();
+    }
+  }
+}
@@ -0,0 +1,206 @@
+package com.example.training.asyncSocket;
+
+import com.example.training.framing.FrameCodec;
+import com.example.training.framing.FrameDecoder;
+import com.example.training.framing.FrameWriter;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousChannelGroup;
+import java.nio.channels.AsynchronousServerSocketChannel;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.CompletionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fully asynchronous NIO.2 server: nothing ever blocks on a Future.
+ * <ul>
+ *   <li>accepts continuously: the accept CompletionHandler re-arms the next accept before serving the client,</li>
+ *   <li>all callbacks run on an {@link AsynchronousChannelGroup} with a fixed, tunable thread pool,</li>
+ *   <li>every connection borrows its read buffer from a {@link ByteBufferPool} and returns it on close,</li>
+ *   <li>messages use the varint length-prefixed {@link FrameCodec} framing; each frame is echoed back,
+ *   a batch of frames with one gathering write ({@link FrameWriter}).</li>
+ * </ul>
+ * A connection has at most one read or one write in flight: it reads, echoes all complete frames it got,
+ * waits for that write to finish and only then reads again. A slow reader therefore throttles its own sender.
+ * Frames larger than the read buffer are reassembled by the {@link FrameDecoder}.
+ */
+public class AsyncFramedServer {
+
+  private static final int MAX_FRAME = 16 * 1024 * 1024;
+  private static final int BATCH = 64;
+
+  private final AsynchronousChannelGroup group;
+  private final AsynchronousServerSocketChannel server;
+  private final ByteBufferPool pool;
+
+  private final AtomicInteger openConnections = new AtomicInteger();
+  private final AtomicLong frames = new AtomicLong();
+
+  public AsyncFramedServer(int port, int threads, ByteBufferPool pool) throws IOException {
+    this.group = AsynchronousChannelGroup.withFixedThreadPool(threads, new ThreadFactory() {
+      private final AtomicInteger counter = new AtomicInteger();
+
+      @Override
+      public Thread newThread(Runnable r) {
+        return new Thread(r, "async-io-" + counter.incrementAndGet());
+      }
+    });
+    this.server = AsynchronousServerSocketChannel.open(group);
+    this.server.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+    this.server.bind(new InetSocketAddress(port), 4096);
+    this.pool = pool;
+  }
+
+  public static void main(String[] args) throws Exception {
+    int port = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+    int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+    AsyncFramedServer server = new AsyncFramedServer(port, threads, new ByteBufferPool(16 * 1024, 4096));
+    server.start();
+    System.out.println("Async framed server listening on port " + port + " with " + threads + " I/O threads");
+    while (!server.group.isTerminated()) {
+      Thread.sleep(5000);
+      System.out.println(server.stats());
+    }
+  }
+
+  public void start() {
+    server.accept(null, new CompletionHandler<AsynchronousSocketChannel, Void>() {
+      @Override
+      public void completed(AsynchronousSocketChannel channel, Void attachment) {
+        // Re-arm first, so new clients are accepted while this one is being set up
+        server.accept(null, this);
+        openConnections.incrementAndGet();
+        new Connection(channel).read();
+      }
+
+      @Override
+      public void failed(Throwable exc, Void attachment) {
+        if (server.isOpen()) {
+          System.out.println("Accept failed: " + exc);
+          server.accept(null, this);
+        }
+      }
+    });
+  }
+
+  public void shutdown() throws IOException {
+    server.close();
+    group.shutdownNow();
+  }
+
+  public String stats() {
+    return "connections=" + openConnections.get() + " frames=" + frames.get()
+        + " buffersAllocated=" + pool.allocatedCount();
+  }
+
+  /**
+   * One client. The read buffer is in write mode while a read is pending and in read mode while frames are
+   * being echoed. Echoed payloads are slices of the read buffer, so it is compacted only after the batch is written.
+   */
+  private final class Connection {
+
+    private final AsynchronousSocketChannel channel;
+    private final ByteBuffer in = pool.acquire();
+    private final FrameDecoder decoder = new FrameDecoder(MAX_FRAME);
+    private final FrameWriter writer = new FrameWriter(BATCH);
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    Connection(AsynchronousSocketChannel channel) {
+      this.channel = channel;
+    }
+
+    void read() {
+      channel.read(in, this, READ_HANDLER);
+    }
+
+    void onRead(int count) {
+      if (count < 0) {
+        close();
+        return;
+      }
+      in.flip();
+      processFrames();
+    }
+
+    /**
+     * Queues every complete frame (up to one batch) for echo, then either writes or reads more.
+     */
+    void processFrames() {
+      try {
+        ByteBuffer payload;
+        while (!writer.isFull() && (payload = decoder.decode(in)) != null) {
+          writer.add(payload);
+          frames.incrementAndGet();
+        }
+      } catch (ProtocolException e) {
+        System.out.println("Closing client: " + e.getMessage());
+        close();
+        return;
+      }
+
+      if (!writer.isEmpty()) {
+        write();
+      } else {
+        in.compact();
+        read();
+      }
+    }
+
+    void write() {
+      channel.write(writer.buffers(), writer.offset(), writer.count(), 0, TimeUnit.MILLISECONDS, this, WRITE_HANDLER);
+    }
+
+    void onWrite() {
+      if (!writer.written()) {
+        write();
+        return;
+      }
+      // Frames held back because the batch was full are still in the read buffer
+      processFrames();
+    }
+
+    void close() {
+      if (!closed.compareAndSet(false, true)) {
+        return;
+      }
+      openConnections.decrementAndGet();
+      try {
+        channel.close();
+      } catch (IOException ignored) {
+        // nothing left to do
+      }
+      pool.release(in);
+    }
+  }
+
+  private static final CompletionHandler<Integer, Connection> READ_HANDLER = new CompletionHandler<Integer, Connection>() {
+    @Override
+    public void completed(Integer count, Connection connection) {
+      connection.onRead(count);
+    }
+
+    @Override
+    public void failed(Throwable exc, Connection connection) {
+      connection.close();
+    }
+  };
+
+  private static final CompletionHandler<Long, Connection> WRITE_HANDLER = new CompletionHandler<Long, Connection>() {
+    @Override
+    public void completed(Long count, Connection connection) {
+      connection.onWrite();
+    }
+
+    @Override
+    public void failed(Throwable exc, Connection connection) {
+      connection.close();
+    }
+  };
+}
@@ -6,12 +6,18 @@ import java.nio.ByteBuffer;
 import java.nio.channels.AsynchronousServerSocketChannel;
 import java.nio.channels.AsynchronousSocketChannel;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 
 public class AsyncSocketServerDemo {
 
   public static void main(String[] args) throws Exception {
+    if (args.length > 0 && "framed".equals(args[0])) {
+      // Continuous accept with CompletionHandlers, pooled buffers and length-prefixed frames
+      AsyncFramedServer.main(Arrays.copyOfRange(args, 1, args.length));
+      return;
+    }
     new AsyncSocketServerDemo().startServer();
   }
 
@@ -0,0 +1,58 @@
+package com.example.training.asyncSocket;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Recycles fixed-size direct buffers between connections.
+ * Completion handlers run on any thread of the channel group, so the free list is a lock-free queue.
+ * Direct buffers let the kernel read into and write from them without an extra copy through the heap.
+ */
+public class ByteBufferPool {
+
+  private final ConcurrentLinkedQueue<ByteBuffer> free = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger freeCount = new AtomicInteger();
+  private final AtomicInteger allocated = new AtomicInteger();
+  private final int bufferSize;
+  private final int maxRetained;
+
+  /**
+   * @param bufferSize  capacity of every buffer
+   * @param maxRetained how many released buffers are kept; extra ones are left to the GC
+   */
+  public ByteBufferPool(int bufferSize, int maxRetained) {
+    this.bufferSize = bufferSize;
+    this.maxRetained = maxRetained;
+  }
+
+  public ByteBuffer acquire() {
+    ByteBuffer buffer = free.poll();
+    if (buffer != null) {
+      freeCount.decrementAndGet();
+      return buffer;
+    }
+    allocated.incrementAndGet();
+    return ByteBuffer.allocateDirect(bufferSize);
+  }
+
+  public void release(ByteBuffer buffer) {
+    buffer.clear();
+    if (freeCount.incrementAndGet() <= maxRetained) {
+      free.offer(buffer);
+    } else {
+      freeCount.decrementAndGet();
+    }
+  }
+
+  public int bufferSize() {
+    return bufferSize;
+  }
+
+  /**
+   * @return how many buffers were ever allocated; stays flat once the pool is warm
+   */
+  public int allocatedCount() {
+    return allocated.get();
+  }
+}
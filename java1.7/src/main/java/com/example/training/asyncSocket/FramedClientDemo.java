@@ -0,0 +1,53 @@
+package com.example.training.asyncSocket;
+
+import com.example.training.framing.FrameCodec;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Blocking counterpart of {@link AsyncFramedServer}: request/response over one persistent connection.
+ * Unlike {@link AsyncSocketClientDemo} nothing depends on closing the connection to mark the end of a message,
+ * so the same socket carries every request. Requests are pipelined in batches: written back to back,
+ * flushed once, then the replies are read in order.
+ */
+public class FramedClientDemo {
+
+  private static final int MAX_FRAME = 16 * 1024 * 1024;
+
+  public static void main(String[] args) throws IOException {
+    String host = args.length > 0 ? args[0] : "localhost";
+    int port = args.length > 1 ? Integer.parseInt(args[1]) : 5000;
+    int requests = args.length > 2 ? Integer.parseInt(args[2]) : 100_000;
+    int batch = 32;
+
+    try (Socket socket = new Socket(host, port)) {
+      socket.setTcpNoDelay(true);
+      OutputStream out = new BufferedOutputStream(socket.getOutputStream(), 64 * 1024);
+      InputStream in = new BufferedInputStream(socket.getInputStream(), 64 * 1024);
+
+      long start = System.nanoTime();
+      for (int sent = 0; sent < requests; sent += batch) {
+        int n = Math.min(batch, requests - sent);
+        for (int i = 0; i < n; i++) {
+          byte[] payload = ("request " + (sent + i)).getBytes(StandardCharsets.UTF_8);
+          FrameCodec.writeFrame(out, payload, 0, payload.length);
+        }
+        out.flush();
+        for (int i = 0; i < n; i++) {
+          byte[] reply = FrameCodec.readFrame(in, MAX_FRAME);
+          if (reply == null) {
+            throw new IOException("Server closed the connection after " + (sent + i) + " replies");
+          }
+        }
+      }
+      double seconds = (System.nanoTime() - start) / 1e9;
+      System.out.printf("%d request/response pairs on one connection in %.2fs (%.0f/s)%n",
+          requests, seconds, requests / seconds);
+    }
+  }
+}
@@ -0,0 +1,703 @@
+package com.example.training.forkJoin;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bulk operations on primitive arrays and {@link List} ranges, built from {@link RecursiveAction}s.
+ * <ul>
+ *   <li>map-in-place and fill: one pass, the range is split until pieces reach the grain size,</li>
+ *   <li>prefix sums and partition: two parallel passes over fixed blocks of {@code grain} elements with a
+ *   short sequential scan of the per-block totals in between (block sums / match counts become offsets),</li>
+ *   <li>pool and grain are chosen per instance: a dedicated pool keeps bulk jobs away from other fork/join work,
+ *   a smaller grain helps uneven per-element costs, a bigger one cuts task overhead for cheap operators,</li>
+ *   <li>{@link #lastStats()} reports what the last operation did: leaf tasks, steals and what was still queued.</li>
+ * </ul>
+ * Operators run concurrently on different elements and must not depend on evaluation order. A partition
+ * predicate is evaluated exactly once per element; its results are kept for the second pass.
+ */
+public final class BulkOps {
+
+  public static final int DEFAULT_GRAIN = 1 << 14;
+
+  private final ForkJoinPool pool;
+  private final int grain;
+  private final AtomicLong leaves = new AtomicLong();
+  private volatile Stats lastStats;
+  private long stealsAtBegin;
+
+  public BulkOps(ForkJoinPool pool, int grain) {
+    if (grain < 1) {
+      throw new IllegalArgumentException("grain must be positive: " + grain);
+    }
+    this.pool = pool;
+    this.grain = grain;
+  }
+
+  public BulkOps(ForkJoinPool pool) {
+    this(pool, DEFAULT_GRAIN);
+  }
+
+  public ForkJoinPool pool() {
+    return pool;
+  }
+
+  public int grain() {
+    return grain;
+  }
+
+  // ---------------------------------------------------------
+  // Operators (Java 7: no java.util.function)
+
+  public interface IntOp {
+    int apply(int value);
+  }
+
+  public interface LongOp {
+    long apply(long value);
+  }
+
+  public interface DoubleOp {
+    double apply(double value);
+  }
+
+  public interface IntPredicate {
+    boolean test(int value);
+  }
+
+  public interface LongPredicate {
+    boolean test(long value);
+  }
+
+  public interface DoublePredicate {
+    boolean test(double value);
+  }
+
+  public interface ElementOp<T> {
+    T apply(T value);
+  }
+
+  public interface ElementPredicate<T> {
+    boolean test(T value);
+  }
+
+  // ---------------------------------------------------------
+  // Map in place
+
+  public void mapInPlace(final int[] data, final IntOp op) {
+    timed(data.length, new Leaf() {
+      @Override
+      void apply(int lo, int hi) {
+        for (int i = lo; i < hi; i++) {
+          data[i] = op.apply(data[i]);
+        }
+      }
+    });
+  }
+
+  public void mapInPlace(final long[] data, final LongOp op) {
+    timed(data.length, new Leaf() {
+      @Override
+      void apply(int lo, int hi) {
+        for (int i = lo; i < hi; i++) {
+          data[i] = op.apply(data[i]);
+        }
+      }
+    });
+  }
+
+  public void mapInPlace(final double[] data, final DoubleOp op) {
+    timed(data.length, new Leaf() {
+      @Override
+      void apply(int lo, int hi) {
+        for (int i = lo; i < hi; i++) {
+          data[i] = op.apply(data[i]);
+        }
+      }
+    });
+  }
+
+  /**
+   * Replaces every element of {@code list[from, to)} by {@code op.apply(element)}.
+   * The list must support concurrent {@code set} on distinct indexes, as ArrayList and array-backed lists do.
+   */
+  public <T> void mapInPlace(final List<T> list, final int from, int to, final ElementOp<T> op) {
+    checkRandomAccess(list);
+    timed(to - from, new Leaf() {
+      @Override
+      void apply(int lo, int hi) {
+        for (int i = from + lo; i < from + hi; i++) {
+          list.set(i, op.apply(list.get(i)));
+        }
+      }
+    });
+  }
+
+  // ---------------------------------------------------------
+  // Fill
+
+  public void fill(final int[] data, final int value) {
+    timed(data.length, new Leaf() {
+      @Override
+      void apply(int lo, int hi) {
+        Arrays.fill(data, lo, hi, value);
+      }
+    });
+  }
+
+  public void fill(final long[] data, final long value) {
+    timed(data.length, new Leaf() {
+      @Override
+      void apply(int lo, int hi) {
+        Arrays.fill(data, lo, hi, value);
+      }
+    });
+  }
+
+  public void fill(final double[] data, final double value) {
+    timed(data.length, new Leaf() {
+      @Override
+      void apply(int lo, int hi) {
+        Arrays.fill(data, lo, hi, value);
+      }
+    });
+  }
+
+  public <T> void fill(final List<T> list, final int from, int to, final T value) {
+    checkRandomAccess(list);
+    timed(to - from, new Leaf() {
+      @Override
+      void apply(int lo, int hi) {
+        for (int i = from + lo; i < from + hi; i++) {
+          list.set(i, value);
+        }
+      }
+    });
+  }
+
+  // ---------------------------------------------------------
+  // Prefix sums (inclusive)
+
+  /**
+   * In place: {@code data[i] = data[0] + ... + data[i]}.
+   */
+  public void prefixSum(long[] data) {
+    long begin = begin();
+    scan(data);
+    finish(begin);
+  }
+
+  /**
+   * @return {@code out[i] = in[0] + ... + in[i]}, accumulated in long so large int arrays do not overflow
+   */
+  public long[] prefixSum(final int[] in) {
+    long begin = begin();
+    final long[] out = new long[in.length];
+    run(in.length, new Leaf() {
+      @Override
+      void apply(int lo, int hi) {
+        for (int i = lo; i < hi; i++) {
+          out[i] = in[i];
+        }
+      }
+    });
+    scan(out);
+    finish(begin);
+    return out;
+  }
+
+  private void scan(final long[] data) {
+    final int n = data.length;
+    final int blocks = blocks(n);
+    final long[] offsets = new long[blocks];
+    // Pass 1: local scan of every block, remembering the block total
+    runBlocks(blocks, new Leaf() {
+      @Override
+      void apply(int lo, int hi) {
+        for (int b = lo; b < hi; b++) {
+          int start = b * grain;
+          int end = blockEnd(start, n);
+          long sum = 0;
+          for (int i = start; i < end; i++) {
+            sum += data[i];
+            data[i] = sum;
+          }
+          offsets[b] = sum;
+        }
+      }
+    });
+    exclusiveScan(offsets);
+    // Pass 2: shift every block by the total of the blocks before it
+    runBlocks(blocks, new Leaf() {
+      @Override
+      void apply(int lo, int hi) {
+        for (int b = Math.max(lo, 1); b < hi; b++) {
+          int start = b * grain;
+          int end = blockEnd(start, n);
+          long offset = offsets[b];
+          for (int i = start; i < end; i++) {
+            data[i] += offset;
+          }
+        }
+      }
+    });
+  }
+
+  public void prefixSum(final double[] data) {
+    long begin = begin();
+    final int n = data.length;
+    final int blocks = blocks(n);
+    final double[] offsets = new double[blocks];
+    runBlocks(blocks, new Leaf() {
+      @Override
+      void apply(int lo, int hi) {
+        for (int b = lo; b < hi; b++) {
+          int start = b * grain;
+          int end = blockEnd(start, n);
+          double sum = 0;
+          for (int i = start; i < end; i++) {
+            sum += data[i];
+            data[i] = sum;
+          }
+          offsets[b] = sum;
+        }
+      }
+    });
+    double running = 0;
+    for (int b = 0; b < blocks; b++) {
+      double total = offsets[b];
+      offsets[b] = running;
+      running += total;
+    }
+    runBlocks(blocks, new Leaf() {
+      @Override
+      void apply(int lo, int hi) {
+        for (int b = Math.max(lo, 1); b < hi; b++) {
+          int start = b * grain;
+          int end = blockEnd(start, n);
+          double offset = offsets[b];
+          for (int i = start; i < end; i++) {
+            data[i] += offset;
+          }
+        }
+      }
+    });
+    finish(begin);
+  }
+
+  // ---------------------------------------------------------
+  // Partition (stable)
+
+  /**
+   * Stable in-place partition: the matching elements first, then the others, each group in original order.
+   *
+   * @return the number of matching elements, now at the start of the array
+   */
+  public int partition(final int[] data, final IntPredicate predicate) {
+    long begin = begin();
+    final int n = data.length;
+    final int blocks = blocks(n);
+    final long[] matches = new long[blocks];
+    // Pass 1 results, one bitset per block, so the predicate runs once per element and both passes agree
+    final long[][] hits = new long[blocks][];
+    runBlocks(blocks, new Leaf() {
+      @Override
+      void apply(int lo, int hi) {
+        for (int b = lo; b < hi; b++) {
+          int start = b * grain;
+          int end = blockEnd(start, n);
+          long[] bits = new long[(end - start + 63) >>> 6];
+          int count = 0;
+          for (int i = start; i < end; i++) {
+            if (predicate.test(data[i])) {
+              bits[(i - start) >>> 6] |= 1L << (i - start);
+              count++;
+            }
+          }
+          matches[b] = count;
+          hits[b] = bits;
+        }
+      }
+    });
+    final int total = (int) exclusiveScan(matches);
+    final int[] out = new int[n];
+    runBlocks(blocks, new Leaf() {
+      @Override
+      void apply(int lo, int hi) {
+        for (int b = lo; b < hi; b++) {
+          int start = b * grain;
+          int end = blockEnd(start, n);
+          long[] bits = hits[b];
+          int yes = (int) matches[b];
+          // Non-matching elements of earlier blocks = elements before this block - matches before it
+          int no = total + start - yes;
+          for (int i = start; i < end; i++) {
+            int v = data[i];
+            if ((bits[(i - start) >>> 6] & (1L << (i - start))) != 0) {
+              out[yes++] = v;
+            } else {
+              out[no++] = v;
+            }
+          }
+        }
+      }
+    });
+    run(n, new Leaf() {
+      @Override
+      void apply(int lo, int hi) {
+        System.arraycopy(out, lo, data, lo, hi - lo);
+      }
+    });
+    finish(begin);
+    return total;
+  }
+
+  /**
+   * Stable in-place partition, see {@link #partition(int[], IntPredicate)}.
+   *
+   * @return the number of matching elements, now at the start of the array
+   */
+  public int partition(final long[] data, final LongPredicate predicate) {
+    long begin = begin();
+    final int n = data.length;
+    final int blocks = blocks(n);
+    final long[] matches = new long[blocks];
+    // Pass 1 results, one bitset per block, so the predicate runs once per element and both passes agree
+    final long[][] hits = new long[blocks][];
+    runBlocks(blocks, new Leaf() {
+      @Override
+      void apply(int lo, int hi) {
+        for (int b = lo; b < hi; b++) {
+          int start = b * grain;
+          int end = blockEnd(start, n);
+          long[] bits = new long[(end - start + 63) >>> 6];
+          int count = 0;
+          for (int i = start; i < end; i++) {
+            if (predicate.test(data[i])) {
+              bits[(i - start) >>> 6] |= 1L << (i - start);
+              count++;
+            }
+          }
+          matches[b] = count;
+          hits[b] = bits;
+        }
+      }
+    });
+    final int total = (int) exclusiveScan(matches);
+    final long[] out = new long[n];
+    runBlocks(blocks, new Leaf() {
+      @Override
+      void apply(int lo, int hi) {
+        for (int b = lo; b < hi; b++) {
+          int start = b * grain;
+          int end = blockEnd(start, n);
+          long[] bits = hits[b];
+          int yes = (int) matches[b];
+          int no = total + start - yes;
+          for (int i = start; i < end; i++) {
+            long v = data[i];
+            if ((bits[(i - start) >>> 6] & (1L << (i - start))) != 0) {
+              out[yes++] = v;
+            } else {
+              out[no++] = v;
+            }
+          }
+        }
+      }
+    });
+    run(n, new Leaf() {
+      @Override
+      void apply(int lo, int hi) {
+        System.arraycopy(out, lo, data, lo, hi - lo);
+      }
+    });
+    finish(begin);
+    return total;
+  }
+
+  /**
+   * Stable in-place partition, see {@link #partition(int[], IntPredicate)}.
+   *
+   * @return the number of matching elements, now at the start of the array
+   */
+  public int partition(final double[] data, final DoublePredicate predicate) {
+    long begin = begin();
+    final int n = data.length;
+    final int blocks = blocks(n);
+    final long[] matches = new long[blocks];
+    // Pass 1 results, one bitset per block, so the predicate runs once per element and both passes agree
+    final long[][] hits = new long[blocks][];
+    runBlocks(blocks, new Leaf() {
+      @Override
+      void apply(int lo, int hi) {
+        for (int b = lo; b < hi; b++) {
+          int start = b * grain;
+          int end = blockEnd(start, n);
+          long[] bits = new long[(end - start + 63) >>> 6];
+          int count = 0;
+          for (int i = start; i < end; i++) {
+            if (predicate.test(data[i])) {
+              bits[(i - start) >>> 6] |= 1L << (i - start);
+              count++;
+            }
+          }
+          matches[b] = count;
+          hits[b] = bits;
+        }
+      }
+    });
+    final int total = (int) exclusiveScan(matches);
+    final double[] out = new double[n];
+    runBlocks(blocks, new Leaf() {
+      @Override
+      void apply(int lo, int hi) {
+        for (int b = lo; b < hi; b++) {
+          int start = b * grain;
+          int end = blockEnd(start, n);
+          long[] bits = hits[b];
+          int yes = (int) matches[b];
+          int no = total + start - yes;
+          for (int i = start; i < end; i++) {
+            double v = data[i];
+            if ((bits[(i - start) >>> 6] & (1L << (i - start))) != 0) {
+              out[yes++] = v;
+            } else {
+              out[no++] = v;
+            }
+          }
+        }
+      }
+    });
+    run(n, new Leaf() {
+      @Override
+      void apply(int lo, int hi) {
+        System.arraycopy(out, lo, data, lo, hi - lo);
+      }
+    });
+    finish(begin);
+    return total;
+  }
+
+  /**
+   * Stable in-place partition of {@code list[from, to)}.
+   *
+   * @return the number of matching elements, now at {@code from .. from + result}
+   */
+  public <T> int partition(final List<T> list, final int from, int to, final ElementPredicate<? super T> predicate) {
+    checkRandomAccess(list);
+    long begin = begin();
+    final int n = to - from;
+    final int blocks = blocks(n);
+    final long[] matches = new long[blocks];
+    // Pass 1 results, one bitset per block, so the predicate runs once per element and both passes agree
+    final long[][] hits = new long[blocks][];
+    final Object[] out = new Object[n];
+    runBlocks(blocks, new Leaf() {
+      @Override
+      void apply(int lo, int hi) {
+        for (int b = lo; b < hi; b++) {
+          int start = b * grain;
+          int end = blockEnd(start, n);
+          long[] bits = new long[(end - start + 63) >>> 6];
+          int count = 0;
+          for (int i = start; i < end; i++) {
+            if (predicate.test(list.get(from + i))) {
+              bits[(i - start) >>> 6] |= 1L << (i - start);
+              count++;
+            }
+          }
+          matches[b] = count;
+          hits[b] = bits;
+        }
+      }
+    });
+    final int total = (int) exclusiveScan(matches);
+    runBlocks(blocks, new Leaf() {
+      @Override
+      void apply(int lo, int hi) {
+        for (int b = lo; b < hi; b++) {
+          int start = b * grain;
+          int end = blockEnd(start, n);
+          long[] bits = hits[b];
+          int yes = (int) matches[b];
+          int no = total + start - yes;
+          for (int i = start; i < end; i++) {
+            T v = list.get(from + i);
+            if ((bits[(i - start) >>> 6] & (1L << (i - start))) != 0) {
+              out[yes++] = v;
+            } else {
+              out[no++] = v;
+            }
+          }
+        }
+      }
+    });
+    run(n, new Leaf() {
+      @Override
+      @SuppressWarnings("unchecked")
+      void apply(int lo, int hi) {
+        for (int i = lo; i < hi; i++) {
+          list.set(from + i, (T) out[i]);
+        }
+      }
+    });
+    finish(begin);
+    return total;
+  }
+
+  // ---------------------------------------------------------
+  // Statistics
+
+  /**
+   * What the pool did during one bulk operation.
+   */
+  public static final class Stats {
+
+    public final long leafTasks;
+    public final long steals;
+    public final long queuedAfter;
+    public final int parallelism;
+    public final long nanos;
+
+    Stats(long leafTasks, long steals, long queuedAfter, int parallelism, long nanos) {
+      this.leafTasks = leafTasks;
+      this.steals = steals;
+      this.queuedAfter = queuedAfter;
+      this.parallelism = parallelism;
+      this.nanos = nanos;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%.3f ms, %d leaf tasks, %d steals, %d still queued, parallelism %d",
+          nanos / 1e6, leafTasks, steals, queuedAfter, parallelism);
+    }
+  }
+
+  /**
+   * @return statistics of the last completed operation (all passes of multi-pass operations), or null.
+   * Meaningful when one operation at a time runs on this instance and its pool.
+   */
+  public Stats lastStats() {
+    return lastStats;
+  }
+
+  // ---------------------------------------------------------
+  // Infrastructure
+
+  /**
+   * The sequential body of an operation over {@code [lo, hi)}.
+   */
+  abstract static class Leaf {
+    abstract void apply(int lo, int hi);
+  }
+
+  private void run(int length, Leaf leaf) {
+    execute(length, grain, leaf);
+  }
+
+  /**
+   * A single-pass operation: one run with statistics around it.
+   */
+  private void timed(int length, Leaf leaf) {
+    long begin = begin();
+    run(length, leaf);
+    finish(begin);
+  }
+
+  /**
+   * @return the start time, passed back to {@link #finish(long)}
+   */
+  private long begin() {
+    leaves.set(0);
+    stealsAtBegin = pool.getStealCount();
+    return System.nanoTime();
+  }
+
+  private void finish(long begin) {
+    long nanos = System.nanoTime() - begin;
+    lastStats = new Stats(leaves.get(), pool.getStealCount() - stealsAtBegin, pool.getQueuedTaskCount(),
+        pool.getParallelism(), nanos);
+  }
+
+  /**
+   * Runs a per-block pass: the index space is blocks, and one leaf handles a few of them.
+   */
+  private void runBlocks(int blocks, Leaf leaf) {
+    execute(blocks, 1, leaf);
+  }
+
+  private void execute(int length, int leafSize, Leaf leaf) {
+    if (length > 0) {
+      pool.invoke(new RangeAction(leaf, 0, length, leafSize));
+    }
+  }
+
+  private int blocks(int n) {
+    return (int) ((n + (long) grain - 1) / grain);
+  }
+
+  /**
+   * @return the end of the block starting at {@code start}; {@code start + grain} could overflow near
+   * Integer.MAX_VALUE
+   */
+  private int blockEnd(int start, int n) {
+    return start + Math.min(grain, n - start);
+  }
+
+  /**
+   * Replaces every value by the sum of the values before it.
+   *
+   * @return the total
+   */
+  private static long exclusiveScan(long[] values) {
+    long running = 0;
+    for (int i = 0; i < values.length; i++) {
+      long v = values[i];
+      values[i] = running;
+      running += v;
+    }
+    return running;
+  }
+
+  private static void checkRandomAccess(List<?> list) {
+    if (!(list instanceof RandomAccess)) {
+      throw new IllegalArgumentException("Bulk list operations need a RandomAccess list, got "
+          + list.getClass().getName());
+    }
+  }
+
+  /**
+   * Splits {@code [lo, hi)} in halves down to {@code leafSize}; both halves go through invokeAll so the
+   * current worker keeps one and the other can be stolen.
+   */
+  private final class RangeAction extends RecursiveAction {
+
+    private final Leaf leaf;
+    private final int lo;
+    private final int hi;
+    private final int leafSize;
+
+    RangeAction(Leaf leaf, int lo, int hi, int leafSize) {
+      this.leaf = leaf;
+      this.lo = lo;
+      this.hi = hi;
+      this.leafSize = leafSize;
+    }
+
+    @Override
+    protected void compute() {
+      if (hi - lo <= leafSize) {
+        leaves.incrementAndGet();
+        leaf.apply(lo, hi);
+        return;
+      }
+      int mid = (lo + hi) >>> 1;
+      invokeAll(new RangeAction(leaf, lo, mid, leafSize), new RangeAction(leaf, mid, hi, leafSize));
+    }
+  }
+}
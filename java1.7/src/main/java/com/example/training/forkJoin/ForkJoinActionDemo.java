@@ -1,16 +1,100 @@
 package com.example.training.forkJoin;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.RecursiveAction;
 
 public class ForkJoinActionDemo {
 
   public static void main(String[] args) {
+    if (args.length > 0 && "bulk".equals(args[0])) {
+      bulk(args.length > 1 ? Integer.parseInt(args[1]) : 16_000_000);
+      return;
+    }
     ForkJoinPool pool = new ForkJoinPool(); // not AutoCloseable
     pool.invoke(new PrintAction(0, 10));
     pool.shutdown();
   }
 
+  /**
+   * Runs the {@link BulkOps} operations with a few grain sizes on a default-sized and a 2-thread pool and
+   * prints timing and work-stealing statistics for each.
+   */
+  private static void bulk(int size) {
+    int[] ints = new int[size];
+    long[] longs = new long[size];
+    ForkJoinPool[] pools = {new ForkJoinPool(), new ForkJoinPool(2)};
+    int[] grains = {1 << 10, BulkOps.DEFAULT_GRAIN, 1 << 18};
+
+    for (ForkJoinPool pool : pools) {
+      for (int grain : grains) {
+        BulkOps ops = new BulkOps(pool, grain);
+        System.out.println("--- pool parallelism " + pool.getParallelism() + ", grain " + grain);
+
+        ops.fill(ints, 1);
+        System.out.println("fill           " + ops.lastStats());
+
+        ops.mapInPlace(ints, new BulkOps.IntOp() {
+          @Override
+          public int apply(int value) {
+            return value * 3 + 1;
+          }
+        });
+        System.out.println("map            " + ops.lastStats());
+
+        long[] sums = ops.prefixSum(ints);
+        System.out.println("prefix int[]   " + ops.lastStats() + " | last = " + sums[size - 1]);
+
+        ops.fill(longs, 2);
+        ops.prefixSum(longs);
+        System.out.println("prefix long[]  " + ops.lastStats() + " | last = " + longs[size - 1]);
+
+        for (int i = 0; i < size; i++) {
+          ints[i] = i;
+        }
+        ops.mapInPlace(ints, new BulkOps.IntOp() {
+          @Override
+          public int apply(int value) {
+            return value * 0x9E3779B9; // scramble, so about half the values are even
+          }
+        });
+        int even = ops.partition(ints, new BulkOps.IntPredicate() {
+          @Override
+          public boolean test(int value) {
+            return (value & 1) == 0;
+          }
+        });
+        System.out.println("partition      " + ops.lastStats() + " | even = " + even);
+      }
+    }
+
+    // List ranges work the same way (RandomAccess lists only)
+    List<String> names = new ArrayList<>();
+    for (int i = 0; i < 100_000; i++) {
+      names.add("item-" + i);
+    }
+    BulkOps ops = new BulkOps(pools[0], 4096);
+    ops.mapInPlace(names, 0, names.size(), new BulkOps.ElementOp<String>() {
+      @Override
+      public String apply(String value) {
+        return value.toUpperCase();
+      }
+    });
+    int matching = ops.partition(names, 0, names.size(), new BulkOps.ElementPredicate<String>() {
+      @Override
+      public boolean test(String value) {
+        return value.endsWith("7");
+      }
+    });
+    System.out.println("list partition " + ops.lastStats() + " | " + matching + " first: " + names.get(0)
+        + ", then: " + names.get(matching));
+
+    for (ForkJoinPool pool : pools) {
+      pool.shutdown();
+    }
+  }
+
   // ---------------------------------------------------------
 
   static class PrintAction extends RecursiveAction {
@@ -6,13 +6,18 @@ import java.util.concurrent.RecursiveTask;
 public class ForkJoinTaskDemo {
 
   public static void main(String[] args) {
+    if (args.length > 0 && "bench".equals(args[0])) {
+      ParallelReduceBenchmark.main(new String[0]);
+      return;
+    }
+
     ForkJoinPool pool = new ForkJoinPool();
     int[] numbers = new int[1_000_000];
     for (int i = 0; i < numbers.length; i++) {
       numbers[i] = i + 1;
     }
 
-    int sum = 0;
+    long sum = 0;
     long startTime = System.currentTimeMillis();
     for (int number : numbers) {
       sum += number;
@@ -21,37 +26,49 @@ public class ForkJoinTaskDemo {
     System.out.println("Duration of sum via one thread: " + (endTime - startTime));
 
     startTime = System.currentTimeMillis();
-    int result = pool.invoke(new SumTask(numbers, 0, numbers.length));
+    long result = pool.invoke(new SumTask(numbers, 0, numbers.length, SumTask.THRESHOLD));
     endTime = System.currentTimeMillis();
     System.out.println("Duration of sum via recursion: " + (endTime - startTime));
 
+    startTime = System.currentTimeMillis();
+    long reduced = ParallelReduce.sum(pool, numbers);
+    endTime = System.currentTimeMillis();
+    System.out.println("Duration of sum via ParallelReduce: " + (endTime - startTime));
+
     pool.shutdown();
 
+    // 1 + 2 + ... + 1_000_000 = 500_000_500_000: does not fit in an int any more
     System.out.println("Sum1: " + sum);
     System.out.println("Sum2: " + result);
+    System.out.println("Sum3: " + reduced);
   }
 
   // ---------------------------------------------------------
 
-  static class SumTask extends RecursiveTask<Integer> {
+  static class SumTask extends RecursiveTask<Long> {
+
+    /** Below this many elements a plain loop is cheaper than creating two more tasks. */
+    static final int THRESHOLD = 10_000;
 
     private final int[] data;
     private final int start;
     private final int end;
+    private final int threshold;
 
-    SumTask(int[] data, int start, int end) {
+    SumTask(int[] data, int start, int end, int threshold) {
       this.data = data;
       this.start = start;
       this.end = end;
+      this.threshold = threshold;
     }
 
     @Override
-    protected Integer compute() {
+    protected Long compute() {
       int length = end - start;
 
       // Small task → compute directly
-      if (length <= 3) {
-        int sum = 0;
+      if (length <= threshold) {
+        long sum = 0;
         for (int i = start; i < end; i++) {
           sum += data[i];
         }
@@ -61,12 +78,14 @@ public class ForkJoinTaskDemo {
       // Split
       int mid = start + length / 2;
 
-      SumTask left = new SumTask(data, start, mid);
-      SumTask right = new SumTask(data, mid, end);
+      SumTask left = new SumTask(data, start, mid, threshold);
+      SumTask right = new SumTask(data, mid, end, threshold);
 
       left.fork();
 
-      return left.join() + right.compute();
+      // Compute the right half in this thread first; joining first would leave it idle until left is done
+      long rightSum = right.compute();
+      return left.join() + rightSum;
     }
   }
 }
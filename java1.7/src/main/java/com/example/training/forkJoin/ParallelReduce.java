@@ -0,0 +1,280 @@
+package com.example.training.forkJoin;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Parallel reduce over primitive arrays (int[], long[], double[]) with primitive accumulators.
+ * <ul>
+ *   <li>no boxing: partial results live in a {@code long}/{@code double} field of the task instead of a
+ *   {@code RecursiveTask<Integer>} result, and int elements are accumulated into a {@code long}, so large
+ *   inputs do not overflow,</li>
+ *   <li>adaptive split: a task keeps halving its range only while its own queue has no more than
+ *   {@link #SURPLUS} unstolen tasks ({@link java.util.concurrent.ForkJoinTask#getSurplusQueuedTaskCount()}) and
+ *   the range is above a size floor derived from array length and parallelism. Idle workers steal the big
+ *   halves early; once everyone is busy the rest of a range runs as one tight sequential loop,</li>
+ *   <li>each task forks its right halves in a loop and reduces the left part itself; forked tasks that
+ *   were not stolen are taken back ({@code tryUnfork}) and run inline.</li>
+ * </ul>
+ * The operator must be associative and {@code identity} must be neutral for it; elements are combined in
+ * array order, but floating point sums may still differ from a sequential loop in the last bits.
+ */
+public final class ParallelReduce {
+
+  /** More queued tasks than this means thieves have enough to take: stop splitting. */
+  static final int SURPLUS = 3;
+  /** Never split below this many elements: the fork/join overhead would exceed the loop itself. */
+  static final int MIN_GRAIN = 1 << 13;
+
+  private ParallelReduce() {
+  }
+
+  /**
+   * Reduction operator over long values, also used for int[] elements (widened to long).
+   */
+  public interface LongReducer {
+    long combine(long acc, long value);
+  }
+
+  public interface DoubleReducer {
+    double combine(double acc, double value);
+  }
+
+  public static final LongReducer SUM = new LongReducer() {
+    @Override
+    public long combine(long acc, long value) {
+      return acc + value;
+    }
+  };
+
+  public static final LongReducer MIN = new LongReducer() {
+    @Override
+    public long combine(long acc, long value) {
+      return Math.min(acc, value);
+    }
+  };
+
+  public static final LongReducer MAX = new LongReducer() {
+    @Override
+    public long combine(long acc, long value) {
+      return Math.max(acc, value);
+    }
+  };
+
+  public static final DoubleReducer DOUBLE_SUM = new DoubleReducer() {
+    @Override
+    public double combine(double acc, double value) {
+      return acc + value;
+    }
+  };
+
+  public static final DoubleReducer DOUBLE_MIN = new DoubleReducer() {
+    @Override
+    public double combine(double acc, double value) {
+      return Math.min(acc, value);
+    }
+  };
+
+  public static final DoubleReducer DOUBLE_MAX = new DoubleReducer() {
+    @Override
+    public double combine(double acc, double value) {
+      return Math.max(acc, value);
+    }
+  };
+
+  // ---------------------------------------------------------
+
+  public static long reduce(ForkJoinPool pool, int[] data, long identity, LongReducer op) {
+    IntReduceTask task = new IntReduceTask(data, 0, data.length, threshold(data.length, pool), identity, op);
+    pool.invoke(task);
+    return task.result;
+  }
+
+  public static long reduce(ForkJoinPool pool, long[] data, long identity, LongReducer op) {
+    LongReduceTask task = new LongReduceTask(data, 0, data.length, threshold(data.length, pool), identity, op);
+    pool.invoke(task);
+    return task.result;
+  }
+
+  public static double reduce(ForkJoinPool pool, double[] data, double identity, DoubleReducer op) {
+    DoubleReduceTask task = new DoubleReduceTask(data, 0, data.length, threshold(data.length, pool), identity, op);
+    pool.invoke(task);
+    return task.result;
+  }
+
+  public static long sum(ForkJoinPool pool, int[] data) {
+    return reduce(pool, data, 0L, SUM);
+  }
+
+  public static long sum(ForkJoinPool pool, long[] data) {
+    return reduce(pool, data, 0L, SUM);
+  }
+
+  public static double sum(ForkJoinPool pool, double[] data) {
+    return reduce(pool, data, 0.0, DOUBLE_SUM);
+  }
+
+  /**
+   * Size floor for splitting: about 8 leaves per worker, but never fewer than {@link #MIN_GRAIN} elements.
+   * Small arrays therefore run as a single sequential task.
+   */
+  static int threshold(int length, ForkJoinPool pool) {
+    return Math.max(MIN_GRAIN, length / (pool.getParallelism() << 3));
+  }
+
+  // ---------------------------------------------------------
+
+  static final class IntReduceTask extends RecursiveAction {
+
+    private final int[] data;
+    private final int start;
+    private final int end;
+    private final int threshold;
+    private final long identity;
+    private final LongReducer op;
+    private IntReduceTask next; // forked siblings, most recent first
+    long result;
+
+    IntReduceTask(int[] data, int start, int end, int threshold, long identity, LongReducer op) {
+      this.data = data;
+      this.start = start;
+      this.end = end;
+      this.threshold = threshold;
+      this.identity = identity;
+      this.op = op;
+    }
+
+    @Override
+    protected void compute() {
+      int lo = start;
+      int hi = end;
+      IntReduceTask forked = null;
+      while (hi - lo > threshold && getSurplusQueuedTaskCount() <= SURPLUS) {
+        int mid = (lo + hi) >>> 1;
+        IntReduceTask right = new IntReduceTask(data, mid, hi, threshold, identity, op);
+        right.next = forked;
+        forked = right;
+        right.fork();
+        hi = mid;
+      }
+
+      long acc = identity;
+      for (int i = lo; i < hi; i++) {
+        acc = op.combine(acc, data[i]);
+      }
+      // The most recently forked task is the range right after ours, so this keeps array order
+      while (forked != null) {
+        if (forked.tryUnfork()) {
+          forked.compute();
+        } else {
+          forked.join();
+        }
+        acc = op.combine(acc, forked.result);
+        forked = forked.next;
+      }
+      result = acc;
+    }
+  }
+
+  static final class LongReduceTask extends RecursiveAction {
+
+    private final long[] data;
+    private final int start;
+    private final int end;
+    private final int threshold;
+    private final long identity;
+    private final LongReducer op;
+    private LongReduceTask next;
+    long result;
+
+    LongReduceTask(long[] data, int start, int end, int threshold, long identity, LongReducer op) {
+      this.data = data;
+      this.start = start;
+      this.end = end;
+      this.threshold = threshold;
+      this.identity = identity;
+      this.op = op;
+    }
+
+    @Override
+    protected void compute() {
+      int lo = start;
+      int hi = end;
+      LongReduceTask forked = null;
+      while (hi - lo > threshold && getSurplusQueuedTaskCount() <= SURPLUS) {
+        int mid = (lo + hi) >>> 1;
+        LongReduceTask right = new LongReduceTask(data, mid, hi, threshold, identity, op);
+        right.next = forked;
+        forked = right;
+        right.fork();
+        hi = mid;
+      }
+
+      long acc = identity;
+      for (int i = lo; i < hi; i++) {
+        acc = op.combine(acc, data[i]);
+      }
+      while (forked != null) {
+        if (forked.tryUnfork()) {
+          forked.compute();
+        } else {
+          forked.join();
+        }
+        acc = op.combine(acc, forked.result);
+        forked = forked.next;
+      }
+      result = acc;
+    }
+  }
+
+  static final class DoubleReduceTask extends RecursiveAction {
+
+    private final double[] data;
+    private final int start;
+    private final int end;
+    private final int threshold;
+    private final double identity;
+    private final DoubleReducer op;
+    private DoubleReduceTask next;
+    double result;
+
+    DoubleReduceTask(double[] data, int start, int end, int threshold, double identity, DoubleReducer op) {
+      this.data = data;
+      this.start = start;
+      this.end = end;
+      this.threshold = threshold;
+      this.identity = identity;
+      this.op = op;
+    }
+
+    @Override
+    protected void compute() {
+      int lo = start;
+      int hi = end;
+      DoubleReduceTask forked = null;
+      while (hi - lo > threshold && getSurplusQueuedTaskCount() <= SURPLUS) {
+        int mid = (lo + hi) >>> 1;
+        DoubleReduceTask right = new DoubleReduceTask(data, mid, hi, threshold, identity, op);
+        right.next = forked;
+        forked = right;
+        right.fork();
+        hi = mid;
+      }
+
+      double acc = identity;
+      for (int i = lo; i < hi; i++) {
+        acc = op.combine(acc, data[i]);
+      }
+      while (forked != null) {
+        if (forked.tryUnfork()) {
+          forked.compute();
+        } else {
+          forked.join();
+        }
+        acc = op.combine(acc, forked.result);
+        forked = forked.next;
+      }
+      result = acc;
+    }
+  }
+}
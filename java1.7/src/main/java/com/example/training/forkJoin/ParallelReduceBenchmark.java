@@ -0,0 +1,125 @@
+package com.example.training.forkJoin;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Compares the sequential loop, {@link ForkJoinTaskDemo.SumTask} (with the original split-down-to-3 threshold
+ * and with a fixed threshold) and {@link ParallelReduce} for int[], long[] and double[] sums.
+ * <p>
+ * Every variant is warmed up first, then the best of several runs is reported, so JIT compilation and
+ * one-off page faults do not dominate. {@code Arrays.stream(...).parallel()} needs Java 8; the stream side of
+ * this comparison, with the same sizes, warm-up and runs, is {@code streams.ParallelSumBenchmark} in the java1.8
+ * module.
+ */
+public class ParallelReduceBenchmark {
+
+  private static final int WARMUP = 5;
+  private static final int RUNS = 10;
+
+  public static void main(String[] args) {
+    int size = args.length > 0 ? Integer.parseInt(args[0]) : 20_000_000;
+    ForkJoinPool pool = new ForkJoinPool();
+    System.out.println("Elements: " + size + ", parallelism: " + pool.getParallelism()
+        + ", ParallelReduce size floor: " + ParallelReduce.threshold(size, pool));
+
+    final int[] ints = new int[size];
+    final long[] longs = new long[size];
+    final double[] doubles = new double[size];
+    for (int i = 0; i < size; i++) {
+      ints[i] = i + 1;
+      longs[i] = i + 1L;
+      doubles[i] = (i + 1) * 0.5;
+    }
+
+    final ForkJoinPool p = pool;
+    report("int[]    sequential loop", new Bench() {
+      @Override
+      public double run() {
+        long sum = 0;
+        for (int i = 0; i < ints.length; i++) {
+          sum += ints[i];
+        }
+        return sum;
+      }
+    });
+    // The original task granularity: millions of tiny tasks; only on small inputs, it is far too slow otherwise
+    if (size <= 2_000_000) {
+      report("int[]    SumTask(threshold 3)", new Bench() {
+        @Override
+        public double run() {
+          return p.invoke(new ForkJoinTaskDemo.SumTask(ints, 0, ints.length, 3));
+        }
+      });
+    }
+    report("int[]    SumTask(threshold " + ForkJoinTaskDemo.SumTask.THRESHOLD + ")", new Bench() {
+      @Override
+      public double run() {
+        return p.invoke(new ForkJoinTaskDemo.SumTask(ints, 0, ints.length, ForkJoinTaskDemo.SumTask.THRESHOLD));
+      }
+    });
+    report("int[]    ParallelReduce", new Bench() {
+      @Override
+      public double run() {
+        return ParallelReduce.sum(p, ints);
+      }
+    });
+    report("long[]   sequential loop", new Bench() {
+      @Override
+      public double run() {
+        long sum = 0;
+        for (int i = 0; i < longs.length; i++) {
+          sum += longs[i];
+        }
+        return sum;
+      }
+    });
+    report("long[]   ParallelReduce", new Bench() {
+      @Override
+      public double run() {
+        return ParallelReduce.sum(p, longs);
+      }
+    });
+    report("long[]   ParallelReduce max", new Bench() {
+      @Override
+      public double run() {
+        return ParallelReduce.reduce(p, longs, Long.MIN_VALUE, ParallelReduce.MAX);
+      }
+    });
+    report("double[] sequential loop", new Bench() {
+      @Override
+      public double run() {
+        double sum = 0;
+        for (int i = 0; i < doubles.length; i++) {
+          sum += doubles[i];
+        }
+        return sum;
+      }
+    });
+    report("double[] ParallelReduce", new Bench() {
+      @Override
+      public double run() {
+        return ParallelReduce.sum(p, doubles);
+      }
+    });
+
+    pool.shutdown();
+  }
+
+  private interface Bench {
+    double run();
+  }
+
+  private static void report(String name, Bench bench) {
+    double result = 0;
+    for (int i = 0; i < WARMUP; i++) {
+      result = bench.run();
+    }
+    long best = Long.MAX_VALUE;
+    for (int i = 0; i < RUNS; i++) {
+      long t0 = System.nanoTime();
+      result = bench.run();
+      best = Math.min(best, System.nanoTime() - t0);
+    }
+    System.out.printf("%-34s best %8.3f ms   result %.1f%n", name, best / 1e6, result);
+  }
+}
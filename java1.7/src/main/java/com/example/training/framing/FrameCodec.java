@@ -0,0 +1,132 @@
+package com.example.training.framing;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+
+/**
+ * Length-prefixed framing: every message is an unsigned LEB128 varint length followed by that many payload bytes.
+ * <p>
+ * A varint costs 1 byte for payloads up to 127 bytes and 2 bytes up to 16 KB, instead of a fixed 4-byte header,
+ * and it lets request/response traffic share one persistent connection instead of relying on
+ * {@code shutdownOutput()} or on "one read == one message" to find where a message ends.
+ * <ul>
+ *   <li>non-blocking / async channels: {@link FrameDecoder} (partial-read reassembly) and {@link FrameWriter}
+ *   (batched gathering writes),</li>
+ *   <li>blocking sockets: {@link #writeFrame(OutputStream, byte[], int, int)} and {@link #readFrame(InputStream, int)}.</li>
+ * </ul>
+ */
+public final class FrameCodec {
+
+  /** A 32-bit length never needs more than 5 varint bytes. */
+  public static final int MAX_HEADER = 5;
+
+  private FrameCodec() {
+  }
+
+  public static int headerLength(int length) {
+    int bytes = 1;
+    while ((length & ~0x7F) != 0) {
+      length >>>= 7;
+      bytes++;
+    }
+    return bytes;
+  }
+
+  public static void putVarInt(ByteBuffer out, int value) {
+    while ((value & ~0x7F) != 0) {
+      out.put((byte) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    out.put((byte) value);
+  }
+
+  /**
+   * Reads a varint at the buffer's position without moving it.
+   *
+   * @return the value and its encoded size packed as {@code (size << 32) | value}, or -1 if the buffer ends first
+   * @throws ProtocolException if the varint is longer than {@link #MAX_HEADER} bytes
+   */
+  static long peekVarInt(ByteBuffer in) throws ProtocolException {
+    int value = 0;
+    int pos = in.position();
+    for (int i = 0; i < MAX_HEADER; i++) {
+      if (pos + i >= in.limit()) {
+        return -1;
+      }
+      byte b = in.get(pos + i);
+      if (i == MAX_HEADER - 1 && (b & 0x78) != 0) {
+        // Bits 4-6 of the 5th byte would be shifted out of the int, bit 3 makes it negative
+        throw new ProtocolException("Frame length varint overflows an int");
+      }
+      value |= (b & 0x7F) << (7 * i);
+      if (b >= 0) {
+        if (value < 0) {
+          throw new ProtocolException("Negative frame length");
+        }
+        return ((long) (i + 1) << 32) | value;
+      }
+    }
+    throw new ProtocolException("Frame length varint longer than " + MAX_HEADER + " bytes");
+  }
+
+  // ------------------------ blocking streams ------------------------
+
+  /**
+   * Writes one frame. Wrap the socket stream in a BufferedOutputStream and flush once per batch of frames.
+   */
+  public static void writeFrame(OutputStream out, byte[] payload, int offset, int length) throws IOException {
+    int value = length;
+    while ((value & ~0x7F) != 0) {
+      out.write((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    out.write(value);
+    out.write(payload, offset, length);
+  }
+
+  /**
+   * Reads one frame from a blocking stream.
+   *
+   * @return the payload, or null if the stream ended cleanly between two frames
+   * @throws ProtocolException if the declared length exceeds {@code maxLength}
+   */
+  public static byte[] readFrame(InputStream in, int maxLength) throws IOException {
+    int length = 0;
+    for (int i = 0; ; i++) {
+      int b = in.read();
+      if (b < 0) {
+        if (i == 0) {
+          return null;
+        }
+        throw new EOFException("Stream ended inside a frame header");
+      }
+      if (i == MAX_HEADER) {
+        throw new ProtocolException("Frame length varint longer than " + MAX_HEADER + " bytes");
+      }
+      if (i == MAX_HEADER - 1 && (b & 0x78) != 0) {
+        throw new ProtocolException("Frame length varint overflows an int");
+      }
+      length |= (b & 0x7F) << (7 * i);
+      if ((b & 0x80) == 0) {
+        break;
+      }
+    }
+    if (length < 0 || length > maxLength) {
+      throw new ProtocolException("Frame of " + length + " bytes exceeds " + maxLength);
+    }
+    byte[] payload = new byte[length];
+    int read = 0;
+    while (read < length) {
+      int n = in.read(payload, read, length - read);
+      if (n < 0) {
+        throw new EOFException("Stream ended inside a frame payload");
+      }
+      read += n;
+    }
+    return payload;
+  }
+}
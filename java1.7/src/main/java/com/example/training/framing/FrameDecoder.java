@@ -0,0 +1,81 @@
+package com.example.training.framing;
+
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+
+/**
+ * Incremental decoder for {@link FrameCodec} frames, one instance per connection.
+ * <p>
+ * Call {@link #decode(ByteBuffer)} on the read buffer (in read mode) until it returns null, then compact the
+ * buffer and read more. Frames that fit in the read buffer are returned as slices of it: no copy, but the slice
+ * is only valid until the buffer is compacted or refilled. A frame bigger than the whole read buffer is
+ * reassembled across reads into a dedicated buffer, up to {@code maxFrameLength}.
+ */
+public final class FrameDecoder {
+
+  private final int maxFrameLength;
+  private ByteBuffer assembly;
+
+  public FrameDecoder(int maxFrameLength) {
+    this.maxFrameLength = maxFrameLength;
+  }
+
+  /**
+   * @param in read buffer in read mode; consumed bytes are skipped
+   * @return the next payload (position 0 .. limit = length), or null when more bytes are needed
+   * @throws ProtocolException on a malformed header or a frame above the maximum length
+   */
+  public ByteBuffer decode(ByteBuffer in) throws ProtocolException {
+    if (assembly != null) {
+      return continueAssembly(in);
+    }
+    long header = FrameCodec.peekVarInt(in);
+    if (header < 0) {
+      return null;
+    }
+    int headerLength = (int) (header >>> 32);
+    int length = (int) header;
+    if (length > maxFrameLength) {
+      throw new ProtocolException("Frame of " + length + " bytes exceeds " + maxFrameLength);
+    }
+
+    if (in.remaining() >= headerLength + length) {
+      // Fast path: the whole frame is already in the read buffer
+      int start = in.position() + headerLength;
+      ByteBuffer payload = in.duplicate();
+      payload.position(start).limit(start + length);
+      in.position(start + length);
+      return payload.slice();
+    }
+    if (headerLength + length <= in.capacity()) {
+      // It will fit once the caller compacts and reads again
+      return null;
+    }
+    // Larger than the read buffer: collect it piecewise
+    in.position(in.position() + headerLength);
+    assembly = ByteBuffer.allocate(length);
+    return continueAssembly(in);
+  }
+
+  private ByteBuffer continueAssembly(ByteBuffer in) {
+    int n = Math.min(in.remaining(), assembly.remaining());
+    ByteBuffer chunk = in.duplicate();
+    chunk.limit(chunk.position() + n);
+    assembly.put(chunk);
+    in.position(in.position() + n);
+    if (assembly.hasRemaining()) {
+      return null;
+    }
+    ByteBuffer payload = assembly;
+    assembly = null;
+    payload.flip();
+    return payload;
+  }
+
+  /**
+   * @return true while a large frame is only partially received
+   */
+  public boolean isAssembling() {
+    return assembly != null;
+  }
+}
@@ -0,0 +1,123 @@
+package com.example.training.framing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+
+/**
+ * Batches outgoing frames and writes them with one gathering {@code write(ByteBuffer[])}, one instance per connection.
+ * <p>
+ * Headers are encoded into one preallocated buffer and payloads are referenced, not copied, so a batch of
+ * N frames costs one system call and no allocation. Payload buffers must stay untouched until the batch is written.
+ * <ul>
+ *   <li>blocking channels: {@link #writeFully(GatheringByteChannel)},</li>
+ *   <li>non-blocking channels: {@link #writeTo(GatheringByteChannel)} until it returns true, waiting for OP_WRITE
+ *   in between,</li>
+ *   <li>AsynchronousSocketChannel: pass {@link #buffers()}, {@link #offset()} and {@link #count()} to its
+ *   gathering write and call {@link #written()} from the completion handler.</li>
+ * </ul>
+ */
+public final class FrameWriter {
+
+  private final int maxFrames;
+  private final ByteBuffer headers;
+  private final ByteBuffer[] buffers;
+  private int count;
+  private int offset;
+
+  /**
+   * @param maxFrames how many frames one batch may hold
+   */
+  public FrameWriter(int maxFrames) {
+    this.maxFrames = maxFrames;
+    this.headers = ByteBuffer.allocateDirect(maxFrames * FrameCodec.MAX_HEADER);
+    this.buffers = new ByteBuffer[maxFrames * 2];
+  }
+
+  /**
+   * Appends a frame to the current batch.
+   *
+   * @return false if the batch is full or already being written; flush and retry
+   */
+  public boolean add(ByteBuffer payload) {
+    if (isFull() || offset > 0) {
+      return false;
+    }
+    int start = headers.position();
+    FrameCodec.putVarInt(headers, payload.remaining());
+    ByteBuffer header = headers.duplicate();
+    header.position(start).limit(headers.position());
+    buffers[count++] = header.slice();
+    buffers[count++] = payload;
+    return true;
+  }
+
+  public boolean isFull() {
+    return count == maxFrames * 2;
+  }
+
+  public boolean isEmpty() {
+    return count == 0;
+  }
+
+  public ByteBuffer[] buffers() {
+    return buffers;
+  }
+
+  /**
+   * @return index of the first buffer that still has bytes to write
+   */
+  public int offset() {
+    return offset;
+  }
+
+  /**
+   * @return number of buffers from {@link #offset()} that still have to be written
+   */
+  public int count() {
+    return count - offset;
+  }
+
+  /**
+   * Call after a (possibly partial) gathering write.
+   *
+   * @return true if the whole batch is written; the writer is then reset and ready for the next batch
+   */
+  public boolean written() {
+    while (offset < count && !buffers[offset].hasRemaining()) {
+      offset++;
+    }
+    if (offset < count) {
+      return false;
+    }
+    for (int i = 0; i < count; i++) {
+      buffers[i] = null;
+    }
+    count = 0;
+    offset = 0;
+    headers.clear();
+    return true;
+  }
+
+  /**
+   * One gathering write, suitable for non-blocking channels.
+   *
+   * @return true if the whole batch went out
+   */
+  public boolean writeTo(GatheringByteChannel channel) throws IOException {
+    if (count > 0) {
+      channel.write(buffers, offset, count - offset);
+    }
+    return written();
+  }
+
+  /**
+   * Writes the whole batch to a blocking channel.
+   */
+  public void writeFully(GatheringByteChannel channel) throws IOException {
+    boolean done = false;
+    while (!done) {
+      done = writeTo(channel);
+    }
+  }
+}
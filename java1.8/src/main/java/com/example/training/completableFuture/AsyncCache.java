@@ -0,0 +1,146 @@
+package com.example.training.completableFuture;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Cache of {@link CompletableFuture}s that also coalesces concurrent loads.
+ * <ul>
+ *   <li>the first caller for a key starts the load; everyone asking for that key while it is in flight gets the
+ *   same future (one backend call instead of thousands),</li>
+ *   <li>a successful value stays for {@code ttlMillis} after it completed; a failed load is dropped at once so
+ *   the next caller retries,</li>
+ *   <li>size bound: when there are more than {@code maxSize} keys, the oldest inserted entries are evicted (FIFO),</li>
+ *   <li>{@code ttlMillis = 0} keeps nothing after completion: pure request coalescing.</li>
+ * </ul>
+ */
+final class AsyncCache<K, V> {
+
+  private final ConcurrentHashMap<K, Entry<K, V>> map = new ConcurrentHashMap<>();
+  private final ConcurrentLinkedQueue<Entry<K, V>> insertionOrder = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger queued = new AtomicInteger();
+  private final long ttlNanos;
+  private final int maxSize;
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder coalesced = new LongAdder();
+  private final LongAdder loads = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  AsyncCache(long ttlMillis, int maxSize) {
+    this.ttlNanos = ttlMillis * 1_000_000L;
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * @param loader starts the asynchronous load; called at most once per key at a time
+   */
+  CompletableFuture<V> get(K key, Function<? super K, ? extends CompletableFuture<V>> loader) {
+    while (true) {
+      long now = System.nanoTime();
+      Entry<K, V> current = map.get(key);
+      if (current != null) {
+        if (!current.future.isDone()) {
+          coalesced.increment();
+          return current.future;
+        }
+        if (!current.isExpired(now)) {
+          hits.increment();
+          return current.future;
+        }
+      }
+
+      Entry<K, V> fresh = new Entry<>(key);
+      boolean installed = current == null ? map.putIfAbsent(key, fresh) == null : map.replace(key, current, fresh);
+      if (!installed) {
+        continue; // somebody else installed an entry first: use theirs
+      }
+      loads.increment();
+      insertionOrder.offer(fresh);
+      queued.incrementAndGet();
+      evictIfNeeded();
+      start(fresh, loader);
+      return fresh.future;
+    }
+  }
+
+  private void start(Entry<K, V> entry, Function<? super K, ? extends CompletableFuture<V>> loader) {
+    CompletableFuture<V> load;
+    try {
+      load = loader.apply(entry.key);
+    } catch (RuntimeException e) {
+      load = new CompletableFuture<>();
+      load.completeExceptionally(e);
+    }
+    load.whenComplete((value, error) -> {
+      if (error != null) {
+        map.remove(entry.key, entry);
+        entry.future.completeExceptionally(error);
+      } else {
+        entry.expiresAt = System.nanoTime() + ttlNanos;
+        if (ttlNanos == 0) {
+          map.remove(entry.key, entry);
+        }
+        entry.future.complete(value);
+      }
+    });
+  }
+
+  /**
+   * Evicts in insertion order while the map is too big, and drops queue entries whose key was since reloaded
+   * or removed, so the queue stays within twice the maximum size.
+   */
+  private void evictIfNeeded() {
+    while (queued.get() > 2 * maxSize || map.size() > maxSize) {
+      Entry<K, V> oldest = insertionOrder.poll();
+      if (oldest == null) {
+        return;
+      }
+      queued.decrementAndGet();
+      if (map.get(oldest.key) != oldest) {
+        continue; // stale: replaced or removed already
+      }
+      if (map.size() > maxSize) {
+        if (map.remove(oldest.key, oldest)) {
+          evictions.increment();
+        }
+      } else {
+        // Still live and there is room: keep it, at the back
+        insertionOrder.offer(oldest);
+        queued.incrementAndGet();
+      }
+    }
+  }
+
+  void invalidate(K key) {
+    map.remove(key);
+  }
+
+  int size() {
+    return map.size();
+  }
+
+  String stats() {
+    return "loads=" + loads.sum() + " hits=" + hits.sum() + " coalesced=" + coalesced.sum()
+        + " evictions=" + evictions.sum() + " size=" + map.size();
+  }
+
+  private static final class Entry<K, V> {
+
+    final K key;
+    final CompletableFuture<V> future = new CompletableFuture<>();
+    volatile long expiresAt;
+
+    Entry(K key) {
+      this.key = key;
+    }
+
+    boolean isExpired(long now) {
+      return now - expiresAt >= 0;
+    }
+  }
+}
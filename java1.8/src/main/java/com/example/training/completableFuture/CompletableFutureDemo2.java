@@ -1,13 +1,17 @@
 package com.example.training.completableFuture;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Use join() inside chains, get() at boundaries.
@@ -27,6 +31,10 @@ import java.util.concurrent.TimeUnit;
 public class CompletableFutureDemo2 {
 
   public static void main(String[] args) throws ExecutionException, InterruptedException {
+    if (args.length > 0 && args[0].equals("load")) {
+      loadTest(args.length > 1 ? Integer.parseInt(args[1]) : 500, args.length > 2 ? Integer.parseInt(args[2]) : 5_000);
+      return;
+    }
     ExecutorService executor = Executors.newFixedThreadPool(4);
 
     try {
@@ -71,6 +79,71 @@ public class CompletableFutureDemo2 {
     }
   }
 
+  /**
+   * Fires {@code requests} dashboard requests for random users through a {@link DashboardAggregator}, about one
+   * per millisecond, while 3% of the backend calls stall for 2 s. Prints the latency percentiles, the cache
+   * counters and how many backend calls were really made.
+   */
+  private static void loadTest(int users, int requests) {
+    AtomicInteger userCalls = new AtomicInteger();
+    AtomicInteger orderCalls = new AtomicInteger();
+    AtomicInteger recommendationCalls = new AtomicInteger();
+    long[] latencies = new long[requests];
+    List<CompletableFuture<Dashboard>> pending = new ArrayList<>(requests);
+
+    System.out.println("Users: " + users + ", requests: " + requests + ", virtual threads: "
+        + DashboardAggregator.usesVirtualThreads());
+    try (DashboardAggregator aggregator = new DashboardAggregator(
+        id -> {
+          userCalls.incrementAndGet();
+          stallSometimes();
+          return UserService.fetchUser(id);
+        },
+        user -> {
+          orderCalls.incrementAndGet();
+          stallSometimes();
+          return OrderService.fetchOrders(user);
+        },
+        id -> {
+          recommendationCalls.incrementAndGet();
+          stallSometimes();
+          return RecommendationService.fetchRecommendations(id);
+        })) {
+      long start = System.nanoTime();
+      for (int i = 0; i < requests; i++) {
+        int index = i;
+        long t0 = System.nanoTime();
+        pending.add(aggregator.dashboard(ThreadLocalRandom.current().nextInt(users))
+            .whenComplete((dashboard, error) -> latencies[index] = System.nanoTime() - t0));
+        if (i % 10 == 9) {
+          sleep(10);
+        }
+      }
+      long failed = pending.stream().map(f -> f.handle((dashboard, error) -> error)).map(CompletableFuture::join)
+          .filter(Objects::nonNull).count();
+      long elapsed = System.nanoTime() - start;
+
+      Arrays.sort(latencies);
+      System.out.printf("Done in %d ms, %d failed%n", TimeUnit.NANOSECONDS.toMillis(elapsed), failed);
+      System.out.printf("Latency p50=%d ms p90=%d ms p99=%d ms max=%d ms%n",
+          percentile(latencies, 50), percentile(latencies, 90), percentile(latencies, 99),
+          TimeUnit.NANOSECONDS.toMillis(latencies[requests - 1]));
+      System.out.println(aggregator.stats());
+      System.out.printf("Backend calls: users=%d orders=%d recommendations=%d (without the aggregator: %d each)%n",
+          userCalls.get(), orderCalls.get(), recommendationCalls.get(), requests);
+    }
+  }
+
+  private static void stallSometimes() {
+    if (ThreadLocalRandom.current().nextInt(100) < 3) {
+      sleep(2_000); // a slow replica or a long GC pause
+    }
+  }
+
+  private static long percentile(long[] sorted, int p) {
+    return TimeUnit.NANOSECONDS.toMillis(sorted[Math.min(sorted.length - 1, sorted.length * p / 100)]);
+  }
+
   // ----------------------------------------------------------------------
   // Mock domain classes and services
   // ----------------------------------------------------------------------
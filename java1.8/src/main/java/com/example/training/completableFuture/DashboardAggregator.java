@@ -0,0 +1,120 @@
+package com.example.training.completableFuture;
+
+import com.example.training.completableFuture.CompletableFutureDemo2.Dashboard;
+import com.example.training.completableFuture.CompletableFutureDemo2.Order;
+import com.example.training.completableFuture.CompletableFutureDemo2.User;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ * Builds dashboards under load, instead of calling the three services again for every request.
+ * <ul>
+ *   <li>concurrent requests for the same user share one in-flight dashboard future,</li>
+ *   <li>users, orders and recommendations are cached per user with a TTL and a maximum size,</li>
+ *   <li>every service has its own timeout, hedge delay and attempt budget ({@link ServicePolicy}),</li>
+ *   <li>recommendations are optional: when they fail or time out the dashboard is built with an empty list,</li>
+ *   <li>the blocking service calls run on virtual threads when the JVM has them (Java 21+), otherwise on a cached
+ *   pool of daemon threads, so no request ever waits for a free thread the way it does with a fixed pool of 4.</li>
+ * </ul>
+ */
+final class DashboardAggregator implements AutoCloseable {
+
+  private final IntFunction<User> fetchUser;
+  private final Function<User, List<Order>> fetchOrders;
+  private final IntFunction<List<String>> fetchRecommendations;
+
+  private final ExecutorService executor = newBlockingExecutor();
+  private final ScheduledThreadPoolExecutor scheduler = newScheduler();
+
+  private final ServicePolicy userPolicy = new ServicePolicy("users", 1_000, 450, 3, executor, scheduler);
+  private final ServicePolicy orderPolicy = new ServicePolicy("orders", 1_200, 600, 3, executor, scheduler);
+  private final ServicePolicy recommendationPolicy = new ServicePolicy("recommendations", 500, 350, 2, executor, scheduler);
+
+  private final AsyncCache<Integer, User> users = new AsyncCache<>(30_000, 10_000);
+  private final AsyncCache<Integer, List<Order>> orders = new AsyncCache<>(5_000, 10_000);
+  private final AsyncCache<Integer, List<String>> recommendations = new AsyncCache<>(10_000, 10_000);
+  // TTL 0: only coalesces, the parts carry the caching
+  private final AsyncCache<Integer, Dashboard> dashboards = new AsyncCache<>(0, 10_000);
+
+  DashboardAggregator(IntFunction<User> fetchUser, Function<User, List<Order>> fetchOrders,
+                      IntFunction<List<String>> fetchRecommendations) {
+    this.fetchUser = fetchUser;
+    this.fetchOrders = fetchOrders;
+    this.fetchRecommendations = fetchRecommendations;
+  }
+
+  CompletableFuture<Dashboard> dashboard(int userId) {
+    return dashboards.get(userId, this::build);
+  }
+
+  private CompletableFuture<Dashboard> build(int userId) {
+    CompletableFuture<User> user =
+        users.get(userId, id -> userPolicy.call(() -> fetchUser.apply(id)));
+    // Orders depend on the user; recommendations start at once, in parallel
+    CompletableFuture<List<Order>> userOrders = user.thenCompose(u ->
+        orders.get(userId, id -> orderPolicy.call(() -> fetchOrders.apply(u))));
+    CompletableFuture<List<String>> recs =
+        recommendations.get(userId, id -> recommendationPolicy.call(() -> fetchRecommendations.apply(id)))
+            .exceptionally(ex -> Collections.<String>emptyList());
+
+    return user.thenCombine(userOrders, (u, o) -> new Dashboard(u, o, null))
+        .thenCombine(recs, (partial, r) -> new Dashboard(partial.user, partial.orders, r));
+  }
+
+  String stats() {
+    return "dashboards " + dashboards.stats() + "\n"
+        + "users      " + users.stats() + "\n"
+        + "orders     " + orders.stats() + "\n"
+        + "recs       " + recommendations.stats() + "\n"
+        + userPolicy.stats() + ", " + orderPolicy.stats() + ", " + recommendationPolicy.stats();
+  }
+
+  @Override
+  public void close() {
+    scheduler.shutdownNow();
+    executor.shutdown();
+  }
+
+  /**
+   * {@code Executors.newVirtualThreadPerTaskExecutor()} looked up reflectively, because this module is compiled
+   * for Java 8.
+   */
+  private static ExecutorService newBlockingExecutor() {
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException e) {
+      AtomicInteger counter = new AtomicInteger();
+      return Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "dashboard-io-" + counter.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+      });
+    }
+  }
+
+  private static ScheduledThreadPoolExecutor newScheduler() {
+    ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, r -> {
+      Thread t = new Thread(r, "dashboard-timers");
+      t.setDaemon(true);
+      return t;
+    });
+    scheduler.setRemoveOnCancelPolicy(true);
+    return scheduler;
+  }
+
+  static boolean usesVirtualThreads() {
+    try {
+      Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return true;
+    } catch (NoSuchMethodException e) {
+      return false;
+    }
+  }
+}
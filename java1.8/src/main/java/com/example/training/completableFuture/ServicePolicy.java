@@ -0,0 +1,102 @@
+package com.example.training.completableFuture;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * How one downstream service is called: an overall timeout, hedging and retries.
+ * <ul>
+ *   <li>hedge: if the first attempt has not answered after {@code hedgeAfterMillis} (set it near the service's
+ *   p95), a second identical attempt starts; whichever answers first wins. This cuts the tail caused by one slow
+ *   replica or a GC pause at the cost of a few percent extra calls,</li>
+ *   <li>retry: a failed attempt starts another one at once, as long as attempts and time are left,</li>
+ *   <li>timeout: the result fails with a {@link TimeoutException} after {@code timeoutMillis}, whatever the
+ *   attempts are doing (Java 8 has no {@code orTimeout}, so a scheduler completes it).</li>
+ * </ul>
+ * Attempts still running when the result is settled are ignored, not interrupted.
+ */
+final class ServicePolicy {
+
+  private final String name;
+  private final long timeoutMillis;
+  private final long hedgeAfterMillis;
+  private final int maxAttempts;
+  private final Executor executor;
+  private final ScheduledExecutorService scheduler;
+
+  private final AtomicInteger calls = new AtomicInteger();
+  private final AtomicInteger attempts = new AtomicInteger();
+  private final AtomicInteger timeouts = new AtomicInteger();
+
+  /**
+   * @param hedgeAfterMillis 0 disables hedging
+   * @param maxAttempts      attempts per call, hedges and retries included
+   */
+  ServicePolicy(String name, long timeoutMillis, long hedgeAfterMillis, int maxAttempts,
+                Executor executor, ScheduledExecutorService scheduler) {
+    this.name = name;
+    this.timeoutMillis = timeoutMillis;
+    this.hedgeAfterMillis = hedgeAfterMillis;
+    this.maxAttempts = maxAttempts;
+    this.executor = executor;
+    this.scheduler = scheduler;
+  }
+
+  <T> CompletableFuture<T> call(Supplier<T> blockingCall) {
+    calls.incrementAndGet();
+    CompletableFuture<T> result = new CompletableFuture<>();
+    AtomicInteger started = new AtomicInteger();
+    AtomicInteger failed = new AtomicInteger();
+
+    attempt(blockingCall, result, started, failed);
+
+    ScheduledFuture<?> timeout = scheduler.schedule(() -> {
+      if (result.completeExceptionally(new TimeoutException(name + " did not answer within " + timeoutMillis + " ms"))) {
+        timeouts.incrementAndGet();
+      }
+    }, timeoutMillis, TimeUnit.MILLISECONDS);
+    ScheduledFuture<?> hedge = hedgeAfterMillis <= 0 ? null : scheduler.schedule(() -> {
+      if (!result.isDone()) {
+        attempt(blockingCall, result, started, failed);
+      }
+    }, hedgeAfterMillis, TimeUnit.MILLISECONDS);
+
+    result.whenComplete((value, error) -> {
+      timeout.cancel(false);
+      if (hedge != null) {
+        hedge.cancel(false);
+      }
+    });
+    return result;
+  }
+
+  private <T> void attempt(Supplier<T> blockingCall, CompletableFuture<T> result,
+                           AtomicInteger started, AtomicInteger failed) {
+    if (started.incrementAndGet() > maxAttempts) {
+      return;
+    }
+    attempts.incrementAndGet();
+    CompletableFuture.supplyAsync(blockingCall, executor).whenComplete((value, error) -> {
+      if (error == null) {
+        result.complete(value);
+        return;
+      }
+      int failures = failed.incrementAndGet();
+      if (failures >= maxAttempts) {
+        result.completeExceptionally(error); // every attempt failed
+      } else if (!result.isDone()) {
+        attempt(blockingCall, result, started, failed); // retry right away, if attempts are left
+      }
+    });
+  }
+
+  String stats() {
+    return name + ": calls=" + calls.get() + " attempts=" + attempts.get() + " timeouts=" + timeouts.get();
+  }
+}
@@ -0,0 +1,332 @@
+package com.example.training.streams;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+
+/**
+ * Fan-out stage for blocking calls, the replacement for {@code list.parallelStream().map(blockingCall)}.
+ * <ul>
+ *   <li>calls run on a dedicated pool (never the common pool), so CPU-bound parallel streams keep their workers,</li>
+ *   <li>each call is wrapped in {@link ForkJoinPool#managedBlock}: the pool adds a compensating thread while a
+ *   worker is blocked, so a handful of core threads can have many calls in flight (Java 8 has no virtual threads),</li>
+ *   <li>at most {@code concurrency} calls are in flight: the caller waits for a free slot before submitting more,</li>
+ *   <li>every call has its own timeout: the result fails with a {@link TimeoutException} and the blocked thread is
+ *   interrupted,</li>
+ *   <li>results come back in input order.</li>
+ * </ul>
+ * Usage: {@code urls.stream().collect(stage.toList())} or {@code stage.map(urls)}; {@link #mapToOutcomes} keeps
+ * going after failures and reports them per element.
+ */
+public final class BlockingStage<T, R> {
+
+  /**
+   * A blocking call such as an HTTP request or a JDBC query.
+   */
+  @FunctionalInterface
+  public interface BlockingCall<T, R> {
+    R call(T input) throws Exception;
+  }
+
+  private static final ForkJoinPool DEFAULT_POOL = new ForkJoinPool(
+      Runtime.getRuntime().availableProcessors(), new NamedThreadFactory("blocking-stage-"), null, true);
+
+  private static final ScheduledExecutorService TIMEOUTS = newTimeoutScheduler();
+
+  private final BlockingCall<? super T, ? extends R> call;
+  private final int concurrency;
+  private final long timeoutNanos;
+  private final ForkJoinPool pool;
+
+  private BlockingStage(BlockingCall<? super T, ? extends R> call, int concurrency, long timeoutNanos, ForkJoinPool pool) {
+    this.call = call;
+    this.concurrency = concurrency;
+    this.timeoutNanos = timeoutNanos;
+    this.pool = pool;
+  }
+
+  /**
+   * A stage with 16 calls in flight, no timeout and the shared blocking pool.
+   */
+  public static <T, R> BlockingStage<T, R> of(BlockingCall<? super T, ? extends R> call) {
+    return new BlockingStage<>(call, 16, 0, DEFAULT_POOL);
+  }
+
+  public BlockingStage<T, R> concurrency(int maxInFlight) {
+    if (maxInFlight < 1) {
+      throw new IllegalArgumentException("concurrency must be positive: " + maxInFlight);
+    }
+    return new BlockingStage<>(call, maxInFlight, timeoutNanos, pool);
+  }
+
+  /**
+   * @param timeout per call; 0 disables it
+   */
+  public BlockingStage<T, R> timeout(long timeout, TimeUnit unit) {
+    return new BlockingStage<>(call, concurrency, unit.toNanos(timeout), pool);
+  }
+
+  /**
+   * Runs the calls on another pool, for example one per downstream service so they cannot starve each other.
+   * Must not be {@link ForkJoinPool#commonPool()}.
+   */
+  public BlockingStage<T, R> pool(ForkJoinPool pool) {
+    if (pool == ForkJoinPool.commonPool()) {
+      throw new IllegalArgumentException("Blocking calls do not belong on the common pool");
+    }
+    return new BlockingStage<>(call, concurrency, timeoutNanos, pool);
+  }
+
+  // ---------------------------------------------------------
+
+  /**
+   * @return the results in input order
+   * @throws CompletionException wrapping the first failure (by input order), a TimeoutException for timeouts
+   */
+  public List<R> map(Collection<? extends T> inputs) {
+    List<CompletableFuture<R>> futures = submitAll(inputs);
+    List<R> results = new ArrayList<>(futures.size());
+    for (CompletableFuture<R> f : futures) {
+      results.add(f.join());
+    }
+    return results;
+  }
+
+  /**
+   * Like {@link #map} but never throws: every element gets its value or its failure.
+   */
+  public List<Outcome<R>> mapToOutcomes(Collection<? extends T> inputs) {
+    List<CompletableFuture<R>> futures = submitAll(inputs);
+    List<Outcome<R>> results = new ArrayList<>(futures.size());
+    for (CompletableFuture<R> f : futures) {
+      try {
+        results.add(Outcome.success(f.get()));
+      } catch (ExecutionException e) {
+        results.add(Outcome.<R>failure(e.getCause()));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        results.add(Outcome.<R>failure(e));
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Terminal collector: {@code stream.collect(stage.toList())}. The stream only gathers the inputs; the calls
+   * run in this stage, so the stream itself can stay sequential.
+   */
+  public Collector<T, ?, List<R>> toList() {
+    return Collectors.collectingAndThen(Collectors.<T>toList(), this::map);
+  }
+
+  /**
+   * Submits every call, waiting for a free slot whenever {@code concurrency} calls are in flight.
+   */
+  private List<CompletableFuture<R>> submitAll(Collection<? extends T> inputs) {
+    Semaphore slots = new Semaphore(concurrency);
+    List<CompletableFuture<R>> futures = new ArrayList<>(inputs.size());
+    for (T input : inputs) {
+      acquire(slots);
+      futures.add(submit(input, slots));
+    }
+    return futures;
+  }
+
+  private CompletableFuture<R> submit(T input, Semaphore slots) {
+    CompletableFuture<R> result = new CompletableFuture<>();
+    CallTask task = new CallTask(input, result, slots);
+    pool.execute(task);
+    if (timeoutNanos > 0) {
+      ScheduledFuture<?> timer = TIMEOUTS.schedule(task::timeOut, timeoutNanos, TimeUnit.NANOSECONDS);
+      result.whenComplete((value, error) -> timer.cancel(false));
+    }
+    return result;
+  }
+
+  /**
+   * Waits for a slot; if the caller is itself a fork/join worker, the wait is a managed block too.
+   */
+  private static void acquire(Semaphore slots) {
+    if (slots.tryAcquire()) {
+      return;
+    }
+    try {
+      ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+        private boolean acquired;
+
+        @Override
+        public boolean block() throws InterruptedException {
+          if (!acquired) {
+            slots.acquire();
+            acquired = true;
+          }
+          return true;
+        }
+
+        @Override
+        public boolean isReleasable() {
+          return acquired || (acquired = slots.tryAcquire());
+        }
+      });
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CompletionException(e);
+    }
+  }
+
+  /**
+   * One call. The runner field and the interrupt on timeout are guarded by the task's monitor, so a late
+   * timeout never interrupts a thread that has already moved on to another task.
+   */
+  private final class CallTask implements Runnable, ForkJoinPool.ManagedBlocker {
+
+    private final T input;
+    private final CompletableFuture<R> result;
+    private final Semaphore slots;
+    private Thread runner;
+    private boolean done;
+
+    CallTask(T input, CompletableFuture<R> result, Semaphore slots) {
+      this.input = input;
+      this.result = result;
+      this.slots = slots;
+    }
+
+    @Override
+    public void run() {
+      synchronized (this) {
+        if (result.isDone()) {
+          slots.release(); // timed out while still queued
+          return;
+        }
+        runner = Thread.currentThread();
+      }
+      try {
+        ForkJoinPool.managedBlock(this);
+      } catch (InterruptedException e) {
+        result.completeExceptionally(e);
+      } finally {
+        synchronized (this) {
+          runner = null;
+        }
+        Thread.interrupted(); // do not leak a timeout interrupt into the next task on this worker
+        slots.release();
+      }
+    }
+
+    @Override
+    public boolean block() {
+      try {
+        result.complete(call.call(input));
+      } catch (Throwable e) {
+        result.completeExceptionally(e);
+      }
+      done = true;
+      return true;
+    }
+
+    @Override
+    public boolean isReleasable() {
+      return done;
+    }
+
+    void timeOut() {
+      if (result.completeExceptionally(new TimeoutException("Call for " + input + " exceeded "
+          + TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + " ms"))) {
+        synchronized (this) {
+          if (runner != null) {
+            runner.interrupt();
+          }
+        }
+      }
+    }
+  }
+
+  // ---------------------------------------------------------
+
+  /**
+   * The value or the failure of one call.
+   */
+  public static final class Outcome<R> {
+
+    private final R value;
+    private final Throwable error;
+
+    private Outcome(R value, Throwable error) {
+      this.value = value;
+      this.error = error;
+    }
+
+    static <R> Outcome<R> success(R value) {
+      return new Outcome<>(value, null);
+    }
+
+    static <R> Outcome<R> failure(Throwable error) {
+      return new Outcome<>(null, error);
+    }
+
+    public boolean isSuccess() {
+      return error == null;
+    }
+
+    public R value() {
+      return value;
+    }
+
+    public Throwable error() {
+      return error;
+    }
+
+    public <U> U fold(Function<? super R, ? extends U> onValue, Function<? super Throwable, ? extends U> onError) {
+      return error == null ? onValue.apply(value) : onError.apply(error);
+    }
+
+    @Override
+    public String toString() {
+      return error == null ? String.valueOf(value) : "failed: " + error;
+    }
+  }
+
+  private static ScheduledExecutorService newTimeoutScheduler() {
+    ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, r -> {
+      Thread t = new Thread(r, "blocking-stage-timeouts");
+      t.setDaemon(true);
+      return t;
+    });
+    scheduler.setRemoveOnCancelPolicy(true);
+    return scheduler;
+  }
+
+  private static final class NamedThreadFactory implements ForkJoinPool.ForkJoinWorkerThreadFactory {
+
+    private final String prefix;
+    private final AtomicInteger counter = new AtomicInteger();
+
+    NamedThreadFactory(String prefix) {
+      this.prefix = prefix;
+    }
+
+    @Override
+    public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+      ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+      thread.setName(prefix + counter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
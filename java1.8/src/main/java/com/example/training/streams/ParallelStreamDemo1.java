@@ -1,5 +1,6 @@
 package com.example.training.streams;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
@@ -7,6 +8,12 @@ import java.util.stream.IntStream;
 public class ParallelStreamDemo1 {
 
   public static void main(String[] args) {
+    if (args.length > 0 && "primitive".equals(args[0])) {
+      // Same workload on int[], IntStream, a balanced Spliterator and a fork/join kernel: no boxing
+      PrimitivePipelines.main(Arrays.copyOfRange(args, 1, args.length));
+      return;
+    }
+
     List<Integer> numbers = IntStream.rangeClosed(1, 20_000_000)
         .boxed()
         .collect(Collectors.toList());
@@ -31,7 +38,7 @@ public class ParallelStreamDemo1 {
     System.out.println("Normal stream time: " + time + " ms");
   }
 
-  private static int heavyCompute(int n) {
+  static int heavyCompute(int n) {
     // artificial CPU work
     int r = n;
     for (int i = 0; i < 100; i++) {
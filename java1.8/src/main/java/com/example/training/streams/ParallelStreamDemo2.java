@@ -2,12 +2,19 @@ package com.example.training.streams;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
 
 public class ParallelStreamDemo2 {
 
   public static void main(String[] args) {
+    if (args.length > 0 && "stage".equals(args[0])) {
+      stage();
+      return;
+    }
 
     List<String> urls = Arrays.asList(
         "https://example.com/a",
@@ -32,10 +39,56 @@ public class ParallelStreamDemo2 {
     System.out.println("Parallel stream BLOCKING time: " + time + " ms");
   }
 
+  /**
+   * The same kind of fan-out through {@link BlockingStage}: 32 slow calls, 8 in flight, 1.5 s timeout each,
+   * while a CPU-bound parallel stream runs on the common pool at the same time and is not slowed down.
+   */
+  private static void stage() {
+    List<String> urls = IntStream.range(0, 32)
+        .mapToObj(i -> "https://example.com/" + i)
+        .collect(Collectors.toList());
+
+    BlockingStage<String, String> fetch = BlockingStage.<String, String>of(url -> {
+      // simulating slow I/O; one endpoint hangs
+      sleep(url.endsWith("/13") ? 5_000 : 1_000);
+      if (Thread.currentThread().isInterrupted()) {
+        throw new InterruptedException("cancelled");
+      }
+      return "Response from " + url;
+    }).concurrency(8).timeout(1_500, TimeUnit.MILLISECONDS);
+
+    CompletableFuture<Long> cpuWork = CompletableFuture.supplyAsync(() -> {
+      long t0 = System.currentTimeMillis();
+      long sum = LongStream.range(0, 200_000_000L).parallel().map(v -> v ^ (v >>> 7)).sum();
+      System.out.println("CPU-bound parallel stream on the common pool took "
+          + (System.currentTimeMillis() - t0) + " ms (" + sum + ")");
+      return sum;
+    });
+
+    long start = System.currentTimeMillis();
+    List<BlockingStage.Outcome<String>> results = fetch.mapToOutcomes(urls);
+    long time = System.currentTimeMillis() - start;
+
+    for (int i = 0; i < results.size(); i += 8) {
+      System.out.println(urls.get(i) + " -> " + results.get(i));
+    }
+    System.out.println(urls.get(13) + " -> " + results.get(13));
+    long failed = results.stream().filter(r -> !r.isSuccess()).count();
+    System.out.println("BlockingStage time: " + time + " ms for " + urls.size() + " calls, 8 in flight, "
+        + failed + " failed");
+
+    // Drop-in form for a stream pipeline
+    List<String> upper = urls.subList(0, 4).stream()
+        .collect(BlockingStage.<String, String>of(String::toUpperCase).toList());
+    System.out.println(upper);
+    cpuWork.join();
+  }
+
   private static void sleep(long ms) {
     try {
       TimeUnit.MILLISECONDS.sleep(ms);
     } catch (InterruptedException ignored) {
+      Thread.currentThread().interrupt();
     }
   }
 }
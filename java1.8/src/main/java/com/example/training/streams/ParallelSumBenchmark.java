@@ -0,0 +1,76 @@
+package com.example.training.streams;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.DoubleSupplier;
+
+/**
+ * The stream side of the java1.7 {@code ParallelReduceBenchmark}: the same int[], long[] and double[] sums, the
+ * same sizes, warm-up and best-of-N, through {@code Arrays.stream(...).parallel()} in the common pool.
+ * <p>
+ * The int[] is widened with {@code asLongStream()} before summing, like the long accumulator of
+ * {@code ParallelReduce}; {@code IntStream.sum()} would overflow. {@code DoubleStream.sum()} uses compensated
+ * (Kahan) summation, so its result can differ from the plain loop in the last digits.
+ */
+public class ParallelSumBenchmark {
+
+  private static final int WARMUP = 5;
+  private static final int RUNS = 10;
+
+  public static void main(String[] args) {
+    int size = args.length > 0 ? Integer.parseInt(args[0]) : 20_000_000;
+    System.out.println("Elements: " + size + ", common pool parallelism: " + ForkJoinPool.getCommonPoolParallelism());
+
+    int[] ints = new int[size];
+    long[] longs = new long[size];
+    double[] doubles = new double[size];
+    for (int i = 0; i < size; i++) {
+      ints[i] = i + 1;
+      longs[i] = i + 1L;
+      doubles[i] = (i + 1) * 0.5;
+    }
+
+    report("int[]    sequential loop", () -> {
+      long sum = 0;
+      for (int v : ints) {
+        sum += v;
+      }
+      return sum;
+    });
+    report("int[]    stream", () -> Arrays.stream(ints).asLongStream().sum());
+    report("int[]    parallel stream", () -> Arrays.stream(ints).parallel().asLongStream().sum());
+    report("long[]   sequential loop", () -> {
+      long sum = 0;
+      for (long v : longs) {
+        sum += v;
+      }
+      return sum;
+    });
+    report("long[]   stream", () -> Arrays.stream(longs).sum());
+    report("long[]   parallel stream", () -> Arrays.stream(longs).parallel().sum());
+    report("long[]   parallel stream max", () -> Arrays.stream(longs).parallel().max().orElse(Long.MIN_VALUE));
+    report("double[] sequential loop", () -> {
+      double sum = 0;
+      for (double v : doubles) {
+        sum += v;
+      }
+      return sum;
+    });
+    report("double[] stream", () -> Arrays.stream(doubles).sum());
+    report("double[] parallel stream", () -> Arrays.stream(doubles).parallel().sum());
+  }
+
+  private static void report(String name, DoubleSupplier bench) {
+    double result = 0;
+    for (int i = 0; i < WARMUP; i++) {
+      result = bench.getAsDouble();
+    }
+    long best = Long.MAX_VALUE;
+    for (int i = 0; i < RUNS; i++) {
+      long t0 = System.nanoTime();
+      result = bench.getAsDouble();
+      best = Math.min(best, System.nanoTime() - t0);
+    }
+    System.out.printf("%-34s best %8.3f ms   result %.1f%n", name, best / 1e6, result);
+  }
+}
@@ -0,0 +1,256 @@
+package com.example.training.streams;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.function.IntUnaryOperator;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * The {@link ParallelStreamDemo1} workload (heavyCompute, then count the multiples of 3) on primitive paths:
+ * <ul>
+ *   <li>boxed {@code List<Integer>}: the original, for reference,</li>
+ *   <li>{@code int[]} through {@code Arrays.stream(array).parallel()},</li>
+ *   <li>{@code IntStream.range(...).parallel()}: no array at all,</li>
+ *   <li>{@link BalancedRangeSpliterator}: always splits at the exact middle and stops at a minimum chunk,</li>
+ *   <li>{@link CountKernel}: a chunked fork/join kernel without streams (one leaf per chunk, counts in long fields).</li>
+ * </ul>
+ * Every variant reports elements per second, bytes allocated (all live threads, via
+ * {@code com.sun.management.ThreadMXBean}) and GC collections, so the cost of boxing is visible next to the time.
+ */
+public class PrimitivePipelines {
+
+  private static final int RUNS = 3;
+
+  public static void main(String[] args) {
+    int n = args.length > 0 ? Integer.parseInt(args[0]) : 20_000_000;
+    IntUnaryOperator work = ParallelStreamDemo1::heavyCompute;
+    System.out.println("Elements: " + n + ", common pool parallelism: " + ForkJoinPool.getCommonPoolParallelism());
+
+    long t0 = System.nanoTime();
+    long allocated0 = allocatedBytes();
+    List<Integer> boxed = IntStream.rangeClosed(1, n).boxed().collect(Collectors.toList());
+    System.out.printf("Building List<Integer>: %.0f ms, %.1f MB allocated%n",
+        (System.nanoTime() - t0) / 1e6, (allocatedBytes() - allocated0) / 1e6);
+
+    int[] array = IntStream.rangeClosed(1, n).toArray();
+
+    run("boxed List parallelStream", n, () -> boxed.parallelStream()
+        .map(ParallelStreamDemo1::heavyCompute)
+        .filter(v -> v % 3 == 0)
+        .count());
+    run("int[] Arrays.stream parallel", n, () -> Arrays.stream(array).parallel()
+        .map(work)
+        .filter(v -> v % 3 == 0)
+        .count());
+    run("IntStream.range parallel", n, () -> IntStream.rangeClosed(1, n).parallel()
+        .map(work)
+        .filter(v -> v % 3 == 0)
+        .count());
+    run("balanced Spliterator", n, () -> StreamSupport.intStream(new BalancedRangeSpliterator(1, n + 1, 1 << 14), true)
+        .map(work)
+        .filter(v -> v % 3 == 0)
+        .count());
+    run("chunked fork/join kernel", n, () -> CountKernel.count(array, work, ForkJoinPool.commonPool()));
+    run("sequential int[] loop", n, () -> {
+      long count = 0;
+      for (int value : array) {
+        if (work.applyAsInt(value) % 3 == 0) {
+          count++;
+        }
+      }
+      return count;
+    });
+  }
+
+  private static void run(String name, int n, LongSupplier pipeline) {
+    pipeline.getAsLong(); // warm-up
+    long bestNanos = Long.MAX_VALUE;
+    long allocated = 0;
+    long gcs = 0;
+    long result = 0;
+    for (int i = 0; i < RUNS; i++) {
+      long gc0 = gcCount();
+      long allocated0 = allocatedBytes();
+      long t0 = System.nanoTime();
+      result = pipeline.getAsLong();
+      long nanos = System.nanoTime() - t0;
+      if (nanos < bestNanos) {
+        bestNanos = nanos;
+        allocated = allocatedBytes() - allocated0;
+        gcs = gcCount() - gc0;
+      }
+    }
+    double seconds = bestNanos / 1e9;
+    System.out.printf("%-30s %8.0f ms  %7.1f M elem/s  %8.1f MB allocated (%7.1f MB/s)  %d GCs  count=%d%n",
+        name, bestNanos / 1e6, n / seconds / 1e6, allocated / 1e6, allocated / 1e6 / seconds, gcs, result);
+  }
+
+  /**
+   * Sum of bytes allocated by all live threads. Includes the common pool workers, which outlive every run.
+   */
+  private static long allocatedBytes() {
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+      return 0;
+    }
+    com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) threads;
+    long sum = 0;
+    for (long bytes : hotspot.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+      if (bytes > 0) {
+        sum += bytes;
+      }
+    }
+    return sum;
+  }
+
+  private static long gcCount() {
+    long count = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      count += Math.max(0, gc.getCollectionCount());
+    }
+    return count;
+  }
+
+  // ---------------------------------------------------------
+
+  /**
+   * Spliterator over the int range [from, to) that always splits at the exact middle and refuses to split
+   * below {@code minChunk}. Every split is SIZED and SUBSIZED, so the stream framework knows each half's size
+   * and can pre-size results; equal halves keep the work-stealing tree balanced.
+   */
+  static final class BalancedRangeSpliterator implements Spliterator.OfInt {
+
+    private int from;
+    private final int to;
+    private final int minChunk;
+
+    BalancedRangeSpliterator(int from, int to, int minChunk) {
+      this.from = from;
+      this.to = to;
+      this.minChunk = minChunk;
+    }
+
+    @Override
+    public OfInt trySplit() {
+      int size = to - from;
+      if (size < 2 * minChunk) {
+        return null;
+      }
+      int mid = from + (size >>> 1);
+      BalancedRangeSpliterator prefix = new BalancedRangeSpliterator(from, mid, minChunk);
+      from = mid;
+      return prefix;
+    }
+
+    @Override
+    public boolean tryAdvance(IntConsumer action) {
+      if (from >= to) {
+        return false;
+      }
+      action.accept(from++);
+      return true;
+    }
+
+    @Override
+    public void forEachRemaining(IntConsumer action) {
+      // One tight loop per chunk instead of a tryAdvance call per element
+      int hi = to;
+      for (int i = from; i < hi; i++) {
+        action.accept(i);
+      }
+      from = hi;
+    }
+
+    @Override
+    public long estimateSize() {
+      return to - from;
+    }
+
+    @Override
+    public int characteristics() {
+      return ORDERED | SIZED | SUBSIZED | IMMUTABLE | NONNULL | DISTINCT | SORTED;
+    }
+
+    @Override
+    public Comparator<? super Integer> getComparator() {
+      return null; // natural order
+    }
+  }
+
+  // ---------------------------------------------------------
+
+  /**
+   * Counts the elements whose mapped value is a multiple of 3, without streams: the array is cut into about
+   * 4 chunks per worker, each leaf is a plain loop, and results are summed in {@code onCompletion}
+   * (CountedCompleter: no thread ever blocks in join).
+   */
+  static final class CountKernel extends CountedCompleter<Long> {
+
+    private final int[] data;
+    private final IntUnaryOperator work;
+    private final int lo;
+    private final int hi;
+    private final int chunk;
+    private CountKernel left;
+    private CountKernel right;
+    private long count;
+
+    private CountKernel(CountKernel parent, int[] data, IntUnaryOperator work, int lo, int hi, int chunk) {
+      super(parent);
+      this.data = data;
+      this.work = work;
+      this.lo = lo;
+      this.hi = hi;
+      this.chunk = chunk;
+    }
+
+    static long count(int[] data, IntUnaryOperator work, ForkJoinPool pool) {
+      int chunk = Math.max(1 << 12, data.length / (pool.getParallelism() * 4));
+      return pool.invoke(new CountKernel(null, data, work, 0, data.length, chunk));
+    }
+
+    @Override
+    public void compute() {
+      if (hi - lo > chunk) {
+        int mid = (lo + hi) >>> 1;
+        left = new CountKernel(this, data, work, lo, mid, chunk);
+        right = new CountKernel(this, data, work, mid, hi, chunk);
+        setPendingCount(1);
+        right.fork();
+        left.compute(); // completes this task via tryComplete once both halves are done
+        return;
+      }
+      long c = 0;
+      for (int i = lo; i < hi; i++) {
+        if (work.applyAsInt(data[i]) % 3 == 0) {
+          c++;
+        }
+      }
+      count = c;
+      tryComplete();
+    }
+
+    @Override
+    public void onCompletion(CountedCompleter<?> caller) {
+      if (left != null) {
+        count = left.count + right.count;
+      }
+    }
+
+    @Override
+    public Long getRawResult() {
+      return count;
+    }
+  }
+}
@@ -34,7 +34,9 @@ import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.LinkedTransferQueue;
 import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * @noinspection FieldCanBeLocal, StringOperationCanBeSimplified
@@ -167,6 +169,8 @@ public class JavaDataTypes {
     SynchronousQueue();
     ConcurrentLinkedQueue();
     LinkedTransferQueue();
+    MpmcRingBuffer();
+    ShardedDelayQueue();
 
   }
 
@@ -566,6 +570,132 @@ public class JavaDataTypes {
     consumer.join();
   }
 
+  private void MpmcRingBuffer() throws InterruptedException {
+    // MpmcRingBuffer – inel prealocat, fără lock-uri (vezi QueueHandoffBenchmark pentru comparație)
+    MpmcRingBuffer<Integer> ring = new MpmcRingBuffer<>(1024, WaitStrategy.YIELD);
+    int perProducer = 100_000;
+    AtomicLong consumedSum = new AtomicLong();
+    Thread[] threads = new Thread[4];
+    for (int p = 0; p < 2; p++) {
+      threads[p] = new Thread(() -> {
+        try {
+          for (int v = 1; v <= perProducer; v++) {
+            ring.put(v);
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      });
+    }
+    for (int c = 2; c < 4; c++) {
+      threads[c] = new Thread(() -> {
+        try {
+          for (int n = 0; n < perProducer; n++) {
+            consumedSum.addAndGet(ring.take());
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      });
+    }
+    for (Thread t : threads) {
+      t.start();
+    }
+    for (Thread t : threads) {
+      t.join();
+    }
+    long expected = 2L * perProducer * (perProducer + 1) / 2;
+    System.out.println("MpmcRingBuffer 2 producers / 2 consumers: sum=" + consumedSum.get() + " expected=" + expected);
+  }
+
+  private void ShardedDelayQueue() throws InterruptedException {
+    // ShardedDelayQueue – inserare fără lock, expirare în bloc; comparație cu DelayQueue pe 1M taskuri
+    int producers = 4;
+    int perProducer = 250_000;
+    int maxDelayMillis = 500;
+
+    DelayQueue<DelayedTask> jdk = new DelayQueue<>();
+    long jdkInsert = fill(producers, perProducer, maxDelayMillis,
+        (name, delay) -> jdk.add(new DelayedTask(name, delay)));
+    long[] jdkDrain = drainAll(producers * perProducer, batch -> {
+      int n = jdk.drainTo(batch, 4096);
+      if (n == 0) {
+        DelayedTask next = jdk.poll(10, TimeUnit.MILLISECONDS); // drainTo never waits
+        if (next != null) {
+          batch.add(next);
+          n = 1;
+        }
+      }
+      return n;
+    });
+
+    ShardedDelayQueue<String> sharded = new ShardedDelayQueue<>();
+    long shardedInsert = fill(producers, perProducer, maxDelayMillis,
+        (name, delay) -> sharded.add(name, delay, TimeUnit.MILLISECONDS));
+    long[] shardedDrain = drainAll(producers * perProducer,
+        batch -> sharded.awaitExpired(batch::add, 4096, 10, TimeUnit.MILLISECONDS));
+
+    System.out.println("DelayQueue        insert " + jdkInsert + " ms, drained " + jdkDrain[0] + " in " + jdkDrain[1]
+        + " ms");
+    System.out.println("ShardedDelayQueue insert " + shardedInsert + " ms, drained " + shardedDrain[0] + " in "
+        + shardedDrain[1] + " ms");
+  }
+
+  interface DelayedInsert {
+
+    void add(String name, long delayMillis);
+  }
+
+  interface BatchDrain {
+
+    int drain(List<Object> batch) throws InterruptedException;
+  }
+
+  /**
+   * @return milliseconds until all producers finished inserting
+   */
+  private static long fill(int producers, int perProducer, int maxDelayMillis, DelayedInsert queue)
+      throws InterruptedException {
+    Thread[] threads = new Thread[producers];
+    long start = System.nanoTime();
+    for (int p = 0; p < producers; p++) {
+      String prefix = "p" + p + "-";
+      threads[p] = new Thread(() -> {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int n = 0; n < perProducer; n++) {
+          queue.add(prefix + n, random.nextInt(maxDelayMillis));
+        }
+      });
+      threads[p].start();
+    }
+    for (Thread t : threads) {
+      t.join();
+    }
+    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+  }
+
+  /**
+   * The calling thread reaps expired items in batches until {@code expected} came out or a second passed with
+   * nothing new; {@code queue} waits up to 10 ms when nothing has expired.
+   *
+   * @return {drained, milliseconds}
+   */
+  private static long[] drainAll(int expected, BatchDrain queue) throws InterruptedException {
+    List<Object> batch = new ArrayList<>(4096);
+    long drained = 0;
+    long start = System.nanoTime();
+    long lastProgress = start;
+    while (drained < expected && System.nanoTime() - lastProgress < TimeUnit.SECONDS.toNanos(1)) {
+      int n = queue.drain(batch);
+      batch.clear();
+      if (n > 0) {
+        drained += n;
+        lastProgress = System.nanoTime();
+      }
+    }
+    return new long[]{drained, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)};
+  }
+
   enum Level {
     LOW, MEDIUM, HIGH
   }
@@ -617,28 +747,23 @@ public class JavaDataTypes {
 
   static class DelayedTask implements Delayed {
 
-    private final long endTime;
+    private final long deadline; // System.nanoTime(): wall-clock changes do not move it
     private final String name;
 
     DelayedTask(String name, long delayMillis) {
       this.name = name;
-      this.endTime = System.currentTimeMillis() + delayMillis;
+      this.deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis);
     }
 
     public long getDelay(TimeUnit unit) {
-      long diff = endTime - System.currentTimeMillis();
-      return unit.convert(diff, TimeUnit.MILLISECONDS);
+      return unit.convert(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
     }
 
     public int compareTo(Delayed other) {
-      DelayedTask o = (DelayedTask) other;
-      if (this.endTime == o.endTime) {
-        return 0;
-      } else if (this.endTime < o.endTime) {
-        return -1;
-      } else {
-        return 1;
+      if (other instanceof DelayedTask) {
+        return Long.signum(deadline - ((DelayedTask) other).deadline); // nanoTime values compare by difference
       }
+      return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
     }
 
     @Override
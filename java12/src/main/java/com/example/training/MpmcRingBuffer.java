@@ -0,0 +1,221 @@
+package com.example.training;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Collection;
+import java.util.function.Consumer;
+
+/**
+ * Bounded multi-producer multi-consumer queue on a pre-allocated ring (Dmitry Vyukov's design).
+ * <ul>
+ *   <li>every slot has a sequence number: {@code seq == pos} means free for the producer of position
+ *   {@code pos}, {@code seq == pos + 1} means filled for the consumer of {@code pos},</li>
+ *   <li>a producer claims a position with one CAS on {@code tail}, writes the element and publishes it with a
+ *   release store of the sequence; consumers mirror that on {@code head}. No locks, no node per element,</li>
+ *   <li>{@code head} and {@code tail} sit on their own cache lines, so producers and consumers do not
+ *   invalidate each other's counter on every operation,</li>
+ *   <li>{@link #drainTo} claims a whole run of filled slots with a single CAS,</li>
+ *   <li>{@link #put} and {@link #take} wait with a pluggable {@link WaitStrategy} instead of a lock and
+ *   condition.</li>
+ * </ul>
+ * Null elements are not allowed. Capacity is rounded up to a power of two.
+ */
+public final class MpmcRingBuffer<E> extends MpmcRingBufferHeadPadding {
+
+  private static final VarHandle HEAD;
+  private static final VarHandle TAIL;
+  private static final VarHandle SEQUENCE = MethodHandles.arrayElementVarHandle(long[].class);
+  private static final VarHandle ELEMENT = MethodHandles.arrayElementVarHandle(Object[].class);
+
+  static {
+    try {
+      MethodHandles.Lookup lookup = MethodHandles.lookup();
+      HEAD = lookup.findVarHandle(MpmcRingBufferHead.class, "head", long.class);
+      TAIL = lookup.findVarHandle(MpmcRingBufferTail.class, "tail", long.class);
+    } catch (ReflectiveOperationException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  private final Object[] elements;
+  private final long[] sequences;
+  private final int mask;
+  private final WaitStrategy waitStrategy;
+
+  public MpmcRingBuffer(int capacity) {
+    this(capacity, WaitStrategy.YIELD);
+  }
+
+  public MpmcRingBuffer(int capacity, WaitStrategy waitStrategy) {
+    if (capacity < 2 || capacity > (1 << 30)) {
+      throw new IllegalArgumentException("capacity must be in [2, 2^30]: " + capacity);
+    }
+    int size = Integer.highestOneBit(capacity - 1) << 1;
+    this.elements = new Object[size];
+    this.sequences = new long[size];
+    this.mask = size - 1;
+    this.waitStrategy = waitStrategy;
+    for (int i = 0; i < size; i++) {
+      sequences[i] = i;
+    }
+  }
+
+  /**
+   * @return false if the ring is full
+   */
+  public boolean offer(E e) {
+    if (e == null) {
+      throw new NullPointerException();
+    }
+    long pos = (long) TAIL.getOpaque(this);
+    while (true) {
+      int index = (int) pos & mask;
+      long seq = (long) SEQUENCE.getAcquire(sequences, index);
+      long diff = seq - pos;
+      if (diff == 0) {
+        if (TAIL.weakCompareAndSet(this, pos, pos + 1)) {
+          ELEMENT.set(elements, index, e);
+          SEQUENCE.setRelease(sequences, index, pos + 1);
+          return true;
+        }
+        pos = (long) TAIL.getOpaque(this);
+      } else if (diff < 0) {
+        return false; // the slot still holds the element from one lap ago
+      } else {
+        pos = (long) TAIL.getOpaque(this); // another producer took this position
+      }
+    }
+  }
+
+  /**
+   * @return the oldest element, or null if the ring is empty
+   */
+  public E poll() {
+    long pos = (long) HEAD.getOpaque(this);
+    while (true) {
+      int index = (int) pos & mask;
+      long seq = (long) SEQUENCE.getAcquire(sequences, index);
+      long diff = seq - (pos + 1);
+      if (diff == 0) {
+        if (HEAD.weakCompareAndSet(this, pos, pos + 1)) {
+          return consume(index, pos);
+        }
+        pos = (long) HEAD.getOpaque(this);
+      } else if (diff < 0) {
+        return null;
+      } else {
+        pos = (long) HEAD.getOpaque(this);
+      }
+    }
+  }
+
+  public void put(E e) throws InterruptedException {
+    for (int attempt = 0; !offer(e); attempt++) {
+      if (Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+      waitStrategy.idle(attempt);
+    }
+  }
+
+  public E take() throws InterruptedException {
+    E e;
+    for (int attempt = 0; (e = poll()) == null; attempt++) {
+      if (Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+      waitStrategy.idle(attempt);
+    }
+    return e;
+  }
+
+  /**
+   * Takes up to {@code max} elements in one go: finds the run of filled slots after {@code head}, claims it
+   * with one CAS and hands the elements to {@code sink} in order.
+   *
+   * @return how many elements were taken
+   */
+  public int drain(Consumer<? super E> sink, int max) {
+    while (true) {
+      long pos = (long) HEAD.getOpaque(this);
+      int ready = 0;
+      while (ready < max && (long) SEQUENCE.getAcquire(sequences, (int) (pos + ready) & mask) == pos + ready + 1) {
+        ready++;
+      }
+      if (ready == 0) {
+        return 0;
+      }
+      if (HEAD.compareAndSet(this, pos, pos + ready)) {
+        for (int i = 0; i < ready; i++) {
+          sink.accept(consume((int) (pos + i) & mask, pos + i));
+        }
+        return ready;
+      }
+    }
+  }
+
+  public int drainTo(Collection<? super E> target, int max) {
+    return drain(target::add, max);
+  }
+
+  public int drainTo(Collection<? super E> target) {
+    return drain(target::add, Integer.MAX_VALUE);
+  }
+
+  @SuppressWarnings("unchecked")
+  private E consume(int index, long pos) {
+    E e = (E) ELEMENT.get(elements, index);
+    ELEMENT.set(elements, index, null);
+    SEQUENCE.setRelease(sequences, index, pos + mask + 1); // free for the producer one lap later
+    return e;
+  }
+
+  /**
+   * @return an estimate; exact only when no other thread is using the ring
+   */
+  public int size() {
+    while (true) {
+      long head = (long) HEAD.getVolatile(this);
+      long tail = (long) TAIL.getVolatile(this);
+      if (head == (long) HEAD.getVolatile(this)) {
+        return (int) Math.max(0, Math.min(tail - head, capacity()));
+      }
+    }
+  }
+
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  public int capacity() {
+    return mask + 1;
+  }
+}
+
+// Field layout: superclass fields come first, so the padding keeps head and tail 128 bytes apart (two cache
+// lines, because of the adjacent-line prefetcher) and away from the ring's other fields.
+
+abstract class MpmcRingBufferPadding {
+
+  long p00, p01, p02, p03, p04, p05, p06, p07, p08, p09, p10, p11, p12, p13, p14, p15;
+}
+
+abstract class MpmcRingBufferTail extends MpmcRingBufferPadding {
+
+  volatile long tail;
+}
+
+abstract class MpmcRingBufferTailPadding extends MpmcRingBufferTail {
+
+  long p20, p21, p22, p23, p24, p25, p26, p27, p28, p29, p30, p31, p32, p33, p34, p35;
+}
+
+abstract class MpmcRingBufferHead extends MpmcRingBufferTailPadding {
+
+  volatile long head;
+}
+
+abstract class MpmcRingBufferHeadPadding extends MpmcRingBufferHead {
+
+  long p40, p41, p42, p43, p44, p45, p46, p47, p48, p49, p50, p51, p52, p53, p54, p55;
+}
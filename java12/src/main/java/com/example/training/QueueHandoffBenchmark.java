@@ -0,0 +1,215 @@
+package com.example.training;
+
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.LinkedTransferQueue;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Hand-off throughput of {@link MpmcRingBuffer} against the JDK queues used in {@link JavaDataTypes}: one producer
+ * thread and one consumer thread per group, non-blocking offer/poll so no thread can hang at the end of an
+ * iteration. Read the {@code offered} and {@code polled} counters (successful operations per microsecond), not
+ * the group score, which also counts the failed attempts on a full or empty queue.
+ * <p>
+ * {@code handoff} polls one element at a time, {@code batched} drains up to 64 per call.
+ * More producers and consumers: {@code java -jar java12-1.0.0-bench.jar QueueHandoffBenchmark -tg 2,2}.
+ * ArrayBlockingQueue, LinkedBlockingQueue and the ring are bounded to 1024 elements; LinkedTransferQueue has no
+ * bound, so a producer that outruns its consumer just grows it.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Group)
+public class QueueHandoffBenchmark {
+
+  private static final Integer TOKEN = 42;
+  private static final int CAPACITY = 1024;
+  private static final int BATCH = 64;
+
+  @Param({"ring", "abq", "lbq", "ltq"})
+  public String queue;
+
+  private Handoff handoff;
+
+  @Setup(Level.Iteration)
+  public void setUp() {
+    switch (queue) {
+      case "ring":
+        handoff = new RingHandoff(new MpmcRingBuffer<>(CAPACITY));
+        break;
+      case "abq":
+        handoff = new JdkHandoff(new ArrayBlockingQueue<>(CAPACITY));
+        break;
+      case "lbq":
+        handoff = new JdkHandoff(new LinkedBlockingQueue<>(CAPACITY));
+        break;
+      case "ltq":
+        handoff = new JdkHandoff(new LinkedTransferQueue<>());
+        break;
+      default:
+        throw new IllegalArgumentException(queue);
+    }
+  }
+
+  @Benchmark
+  @Group("handoff")
+  @GroupThreads(1)
+  public void offer(ProducerCounters counters) {
+    produce(counters);
+  }
+
+  @Benchmark
+  @Group("handoff")
+  @GroupThreads(1)
+  public void poll(ConsumerCounters counters, Blackhole bh) {
+    Integer e = handoff.poll();
+    if (e == null) {
+      counters.pollEmpty++;
+      Thread.onSpinWait();
+    } else {
+      counters.polled++;
+      bh.consume(e);
+    }
+  }
+
+  @Benchmark
+  @Group("batched")
+  @GroupThreads(1)
+  public void batchOffer(ProducerCounters counters) {
+    produce(counters);
+  }
+
+  @Benchmark
+  @Group("batched")
+  @GroupThreads(1)
+  public void drain(ConsumerCounters counters, Sink sink, Blackhole bh) {
+    int n = handoff.drainTo(sink.batch, BATCH);
+    if (n == 0) {
+      counters.pollEmpty++;
+      Thread.onSpinWait();
+    } else {
+      counters.polled += n;
+      bh.consume(sink.batch);
+      sink.batch.clear();
+    }
+  }
+
+  private void produce(ProducerCounters counters) {
+    if (handoff.offer(TOKEN)) {
+      counters.offered++;
+    } else {
+      counters.offerFailed++;
+      Thread.onSpinWait();
+    }
+  }
+
+  // ---------------------------------------------------------
+
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  @State(Scope.Thread)
+  public static class ProducerCounters {
+
+    public long offered;
+    public long offerFailed;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      offered = 0;
+      offerFailed = 0;
+    }
+  }
+
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  @State(Scope.Thread)
+  public static class ConsumerCounters {
+
+    public long polled;
+    public long pollEmpty;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      polled = 0;
+      pollEmpty = 0;
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Sink {
+
+    final ArrayList<Integer> batch = new ArrayList<>(BATCH);
+  }
+
+  /**
+   * The three operations the benchmark needs, so every queue runs the same benchmark code.
+   */
+  interface Handoff {
+
+    boolean offer(Integer e);
+
+    Integer poll();
+
+    int drainTo(ArrayList<Integer> target, int max);
+  }
+
+  static final class RingHandoff implements Handoff {
+
+    private final MpmcRingBuffer<Integer> ring;
+
+    RingHandoff(MpmcRingBuffer<Integer> ring) {
+      this.ring = ring;
+    }
+
+    public boolean offer(Integer e) {
+      return ring.offer(e);
+    }
+
+    public Integer poll() {
+      return ring.poll();
+    }
+
+    public int drainTo(ArrayList<Integer> target, int max) {
+      return ring.drainTo(target, max);
+    }
+  }
+
+  static final class JdkHandoff implements Handoff {
+
+    private final BlockingQueue<Integer> queue;
+
+    JdkHandoff(BlockingQueue<Integer> queue) {
+      this.queue = queue;
+    }
+
+    public boolean offer(Integer e) {
+      return queue.offer(e);
+    }
+
+    public Integer poll() {
+      return queue.poll();
+    }
+
+    public int drainTo(ArrayList<Integer> target, int max) {
+      return queue.drainTo(target, max);
+    }
+  }
+}
@@ -0,0 +1,332 @@
+package com.example.training;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Delay queue for millions of pending items (retries, TTLs), the replacement for {@code DelayQueue<DelayedTask>}.
+ * <ul>
+ *   <li>deadlines are {@link System#nanoTime()} values kept next to the items; nothing calls {@code getDelay} or
+ *   {@code compareTo} on the items, and wall-clock changes do not move deadlines,</li>
+ *   <li>insertion is lock-free: a producer pushes onto the inbox (a Treiber stack) of the shard picked by its
+ *   thread, so producers on different shards never touch the same memory,</li>
+ *   <li>each shard keeps its items in a binary heap of primitive deadlines; consumers move the inbox into the heap
+ *   while they hold that shard's lock, so the heap work happens on the consumer side, in bulk,</li>
+ *   <li>{@link #drainExpired} takes every expired item of every shard in one pass,</li>
+ *   <li>a producer takes a lock only when a consumer is waiting and the new deadline is earlier than the one the
+ *   consumer sleeps until.</li>
+ * </ul>
+ * Expired items come out in deadline order within a shard, but only roughly in deadline order across shards.
+ * Null items are not allowed.
+ */
+public final class ShardedDelayQueue<E> {
+
+  private final Shard<E>[] shards;
+  private final int mask;
+  private final LongAdder size = new LongAdder();
+
+  // Wake-up protocol for consumers blocked in take/awaitExpired
+  private final ReentrantLock waitLock = new ReentrantLock();
+  private final Condition changed = waitLock.newCondition();
+  private volatile int waiters;
+  private volatile boolean scanning;
+  private volatile long wakeAt;
+
+  public ShardedDelayQueue() {
+    this(Runtime.getRuntime().availableProcessors() * 2);
+  }
+
+  @SuppressWarnings("unchecked")
+  public ShardedDelayQueue(int shardCount) {
+    int n = Integer.highestOneBit(Math.max(1, shardCount - 1)) << 1;
+    shards = (Shard<E>[]) new Shard<?>[n];
+    for (int i = 0; i < n; i++) {
+      shards[i] = new Shard<>();
+    }
+    mask = n - 1;
+  }
+
+  public void add(E item, long delay, TimeUnit unit) {
+    addAt(item, System.nanoTime() + unit.toNanos(delay));
+  }
+
+  /**
+   * @param deadline a {@link System#nanoTime()} value
+   */
+  public void addAt(E item, long deadline) {
+    if (item == null) {
+      throw new NullPointerException();
+    }
+    shardOfCurrentThread().push(new Node<>(item, deadline));
+    size.increment();
+    if (waiters > 0 && (scanning || deadline - wakeAt < 0)) {
+      waitLock.lock();
+      try {
+        changed.signalAll();
+      } finally {
+        waitLock.unlock();
+      }
+    }
+  }
+
+  /**
+   * @return an expired item, or null if none has expired
+   */
+  public E poll() {
+    Object[] holder = new Object[1];
+    drain(e -> holder[0] = e, 1, System.nanoTime(), false);
+    @SuppressWarnings("unchecked")
+    E e = (E) holder[0];
+    return e;
+  }
+
+  /**
+   * Hands every item that has expired by now, up to {@code max}, to {@code sink}. Shards that another consumer is
+   * draining at this moment are skipped rather than waited for.
+   *
+   * @return how many items were drained
+   */
+  public int drainExpired(Consumer<? super E> sink, int max) {
+    return drain(sink, max, System.nanoTime(), false);
+  }
+
+  /**
+   * Waits until an item expires.
+   */
+  public E take() throws InterruptedException {
+    Object[] holder = new Object[1];
+    awaitExpired(e -> holder[0] = e, 1, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    @SuppressWarnings("unchecked")
+    E e = (E) holder[0];
+    return e;
+  }
+
+  /**
+   * Waits until at least one item expired, or the timeout passed, then drains like {@link #drainExpired}.
+   *
+   * @return how many items were drained; 0 on timeout
+   */
+  public int awaitExpired(Consumer<? super E> sink, int max, long timeout, TimeUnit unit) throws InterruptedException {
+    long timeoutNanos = unit.toNanos(timeout);
+    long start = System.nanoTime();
+    waitLock.lockInterruptibly();
+    waiters++;
+    try {
+      while (true) {
+        scanning = true; // every insert signals until wakeAt is known
+        long now = System.nanoTime();
+        int drained = drain(sink, max, now, true);
+        if (drained > 0) {
+          return drained;
+        }
+        long next = earliestDeadline();
+        long remaining = timeoutNanos == Long.MAX_VALUE ? Long.MAX_VALUE : timeoutNanos - (now - start);
+        if (remaining <= 0) {
+          return 0;
+        }
+        long wait = next == Long.MAX_VALUE ? remaining : Math.min(remaining, next - now);
+        wakeAt = now + Math.min(wait, Long.MAX_VALUE / 2);
+        scanning = false;
+        if (wait > 0) {
+          changed.awaitNanos(wait);
+        }
+      }
+    } finally {
+      scanning = false;
+      waiters--;
+      if (waiters > 0) {
+        // wakeAt may be this waiter's, earlier than when the others wake up, and producers only signal for
+        // deadlines before it: make the others recompute and publish their own
+        changed.signalAll();
+      }
+      waitLock.unlock();
+    }
+  }
+
+  /**
+   * @return the number of pending items, expired or not
+   */
+  public int size() {
+    return (int) Math.min(Integer.MAX_VALUE, size.sum());
+  }
+
+  // ---------------------------------------------------------
+
+  private int drain(Consumer<? super E> sink, int max, long now, boolean waitForShards) {
+    int drained = 0;
+    int first = (int) (Thread.currentThread().getId() & mask); // consumers start on different shards
+    for (int i = 0; i <= mask && drained < max; i++) {
+      Shard<E> shard = shards[(first + i) & mask];
+      if (!shard.mayHaveExpired(now)) {
+        continue;
+      }
+      if (waitForShards) {
+        shard.lock.lock();
+      } else if (!shard.lock.tryLock()) {
+        continue;
+      }
+      try {
+        drained += shard.drainExpired(sink, max - drained, now);
+      } finally {
+        shard.lock.unlock();
+      }
+    }
+    if (drained > 0) {
+      size.add(-drained);
+    }
+    return drained;
+  }
+
+  /**
+   * @return the earliest deadline over all shards, Long.MAX_VALUE if they are empty
+   */
+  private long earliestDeadline() {
+    long earliest = Long.MAX_VALUE;
+    boolean any = false;
+    for (Shard<E> shard : shards) {
+      shard.lock.lock();
+      try {
+        shard.absorbInbox();
+        if (shard.heapSize > 0 && (!any || shard.deadlines[0] - earliest < 0)) {
+          earliest = shard.deadlines[0];
+          any = true;
+        }
+      } finally {
+        shard.lock.unlock();
+      }
+    }
+    return any ? earliest : Long.MAX_VALUE;
+  }
+
+  private Shard<E> shardOfCurrentThread() {
+    long id = Thread.currentThread().getId();
+    return shards[(int) ((id * 0x9E3779B97F4A7C15L) >>> 40) & mask];
+  }
+
+  // ---------------------------------------------------------
+
+  private static final class Node<E> {
+
+    final E item;
+    final long deadline;
+    Node<E> next;
+
+    Node(E item, long deadline) {
+      this.item = item;
+      this.deadline = deadline;
+    }
+  }
+
+  private static final class Shard<E> {
+
+    final AtomicReference<Node<E>> inbox = new AtomicReference<>();
+    final ReentrantLock lock = new ReentrantLock();
+
+    // Min-heap on deadline, guarded by lock
+    long[] deadlines = new long[16];
+    Object[] items = new Object[16];
+    int heapSize;
+    // Deadline at the top of the heap when the lock was last released; read without the lock as a hint
+    volatile long head;
+    volatile boolean headValid;
+
+    void push(Node<E> node) {
+      Node<E> top;
+      do {
+        top = inbox.get();
+        node.next = top;
+      } while (!inbox.compareAndSet(top, node));
+    }
+
+    /**
+     * Cheap check without the lock: false only when the inbox is empty and the heap's earliest deadline is still
+     * in the future.
+     */
+    boolean mayHaveExpired(long now) {
+      return inbox.get() != null || (headValid && head - now <= 0);
+    }
+
+    void absorbInbox() {
+      Node<E> node = inbox.getAndSet(null);
+      while (node != null) {
+        offer(node.deadline, node.item);
+        node = node.next;
+      }
+      publishHead();
+    }
+
+    int drainExpired(Consumer<? super E> sink, int max, long now) {
+      absorbInbox();
+      int drained = 0;
+      while (drained < max && heapSize > 0 && deadlines[0] - now <= 0) {
+        @SuppressWarnings("unchecked")
+        E item = (E) items[0];
+        removeTop();
+        sink.accept(item);
+        drained++;
+      }
+      publishHead();
+      return drained;
+    }
+
+    private void publishHead() {
+      if (heapSize > 0) {
+        head = deadlines[0];
+        headValid = true;
+      } else {
+        headValid = false;
+      }
+    }
+
+    private void offer(long deadline, Object item) {
+      if (heapSize == deadlines.length) {
+        deadlines = Arrays.copyOf(deadlines, heapSize * 2);
+        items = Arrays.copyOf(items, heapSize * 2);
+      }
+      int i = heapSize++;
+      while (i > 0) {
+        int parent = (i - 1) >>> 1;
+        if (deadlines[parent] - deadline <= 0) {
+          break;
+        }
+        deadlines[i] = deadlines[parent];
+        items[i] = items[parent];
+        i = parent;
+      }
+      deadlines[i] = deadline;
+      items[i] = item;
+    }
+
+    private void removeTop() {
+      int last = --heapSize;
+      long deadline = deadlines[last];
+      Object item = items[last];
+      items[last] = null;
+      if (last == 0) {
+        return;
+      }
+      int i = 0;
+      int half = last >>> 1;
+      while (i < half) {
+        int child = 2 * i + 1;
+        int right = child + 1;
+        if (right < last && deadlines[right] - deadlines[child] < 0) {
+          child = right;
+        }
+        if (deadline - deadlines[child] <= 0) {
+          break;
+        }
+        deadlines[i] = deadlines[child];
+        items[i] = items[child];
+        i = child;
+      }
+      deadlines[i] = deadline;
+      items[i] = item;
+    }
+  }
+}
@@ -0,0 +1,44 @@
+package com.example.training;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * What a thread does while {@link MpmcRingBuffer#put} finds the ring full or {@link MpmcRingBuffer#take} finds it
+ * empty. {@code idle} is called with 0, 1, 2... for consecutive failed attempts and may escalate with the count.
+ * Nobody is ever signalled: producers and consumers never pay for a wake-up, waiters poll.
+ */
+@FunctionalInterface
+public interface WaitStrategy {
+
+  /**
+   * Busy spin: lowest hand-off latency, burns a whole core per waiting thread.
+   */
+  WaitStrategy SPIN = attempt -> Thread.onSpinWait();
+
+  /**
+   * Spin briefly, then give the core to other threads between attempts.
+   */
+  WaitStrategy YIELD = attempt -> {
+    if (attempt < 100) {
+      Thread.onSpinWait();
+    } else {
+      Thread.yield();
+    }
+  };
+
+  /**
+   * Spin, yield, then sleep with a growing park (up to 1 ms): almost no CPU when idle, up to 1 ms extra latency
+   * after a quiet period.
+   */
+  WaitStrategy PARK = attempt -> {
+    if (attempt < 100) {
+      Thread.onSpinWait();
+    } else if (attempt < 200) {
+      Thread.yield();
+    } else {
+      LockSupport.parkNanos(Math.min(1_000_000L, 1_000L << Math.min(10, (attempt - 200) / 16)));
+    }
+  };
+
+  void idle(int attempt);
+}
@@ -20,6 +20,11 @@ import java.util.concurrent.TimeUnit;
 public class EchoClientBench13 {
 
   public static void main(String[] args) throws Exception {
+    if (args.length > 0 && args[0].startsWith("--")) {
+      // --connections=, --size=, --rate=, ... : configurable load with latency percentiles
+      EchoLoadGenerator13.main(args);
+      return;
+    }
     String host = args.length > 0 ? args[0] : "127.0.0.1";
     int port = args.length > 1 ? Integer.parseInt(args[1]) : 5050;
     int clients = 10;
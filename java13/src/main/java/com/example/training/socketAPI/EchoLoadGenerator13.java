@@ -0,0 +1,176 @@
+package com.example.training.socketAPI;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Load generator for the echo servers ({@link EchoServer13}, {@link NioEchoServer13}, or any TCP echo service).
+ * <br>Each connection sends {@code size}-byte messages and waits for the full echo before the next one.</br>
+ * <br>With {@code --rate} > 0 the test is open-loop: every connection follows a fixed send schedule and latency
+ * is measured from the <i>intended</i> send time, so a stalled server shows up in the percentiles instead of
+ * silently lowering the offered load (coordinated omission). With {@code --rate=0} it is closed-loop, as fast
+ * as possible.</br>
+ * <br>Messages sent during {@code --warmup} are not recorded. The run ends after {@code --duration}, or earlier
+ * once every connection has sent {@code --messages} messages (0 = no limit).</br>
+ * <br>{@code --threads=virtual} runs one virtual thread per connection (needs a Java 21+ runtime; this module
+ * compiles for 13, so the executor is looked up reflectively).</br>
+ * <br>Example: {@code EchoClientBench13 --connections=1000 --size=128 --rate=50000 --warmup=5 --duration=30}</br>
+ */
+public class EchoLoadGenerator13 {
+
+  public static void main(String[] args) throws Exception {
+    Options o = Options.parse(args);
+    System.out.printf("Load: host=%s port=%d connections=%d size=%dB messages/conn=%s rate=%s warmup=%ds duration=%ds threads=%s%n",
+        o.host, o.port, o.connections, o.size, o.messages == 0 ? "unlimited" : o.messages,
+        o.rate == 0 ? "closed-loop" : o.rate + " msg/s", o.warmupSeconds, o.durationSeconds, o.threads);
+
+    long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(200);
+    long warmupEnd = start + TimeUnit.SECONDS.toNanos(o.warmupSeconds);
+    long end = warmupEnd + TimeUnit.SECONDS.toNanos(o.durationSeconds);
+    // Interval between two messages of one connection; connections are staggered to avoid synchronized bursts
+    long interval = o.rate == 0 ? 0 : (long) (1e9 * o.connections / o.rate);
+
+    ExecutorService pool = newExecutor(o.threads);
+    List<Future<Result>> futures = new ArrayList<>();
+    for (int c = 0; c < o.connections; c++) {
+      long firstSend = start + (interval == 0 ? 0 : interval * c / o.connections);
+      futures.add(pool.submit(() -> runConnection(o, firstSend, interval, warmupEnd, end)));
+    }
+
+    LatencyHistogram total = new LatencyHistogram();
+    long messages = 0;
+    long errors = 0;
+    for (Future<Result> f : futures) {
+      Result r = f.get();
+      total.add(r.histogram);
+      messages += r.histogram.getTotalCount();
+      errors += r.errors;
+    }
+    pool.shutdown();
+
+    double seconds = (Math.min(System.nanoTime(), end) - warmupEnd) / 1e9;
+    double mb = 2.0 * messages * o.size / (1024.0 * 1024.0); // request + echo
+    System.out.printf("Measured %.1fs: %.0f msg/s, %.2f MB/s, errors=%d%n", seconds, messages / seconds, mb / seconds, errors);
+    total.printSummary(System.out, "Latency");
+  }
+
+  private static Result runConnection(Options o, long firstSend, long interval, long warmupEnd, long end) {
+    Result result = new Result();
+    byte[] payload = new byte[o.size];
+    Arrays.fill(payload, (byte) 'x');
+    byte[] echo = new byte[o.size];
+
+    try (Socket s = new Socket(o.host, o.port)) {
+      s.setTcpNoDelay(true);
+      InputStream in = s.getInputStream();
+      OutputStream out = s.getOutputStream();
+
+      long intended = firstSend;
+      for (long sent = 0; o.messages == 0 || sent < o.messages; sent++) {
+        if (interval > 0) {
+          long wait = intended - System.nanoTime();
+          if (wait > 0) {
+            LockSupport.parkNanos(wait);
+          }
+        } else {
+          intended = System.nanoTime();
+        }
+        if (intended >= end) {
+          break;
+        }
+
+        out.write(payload);
+        readFully(in, echo);
+        long latency = System.nanoTime() - intended;
+        if (intended >= warmupEnd) {
+          result.histogram.record(latency);
+        }
+        intended += interval;
+      }
+    } catch (IOException e) {
+      result.errors++;
+    }
+    return result;
+  }
+
+  private static void readFully(InputStream in, byte[] buf) throws IOException {
+    int read = 0;
+    while (read < buf.length) {
+      int n = in.read(buf, read, buf.length - read);
+      if (n < 0) {
+        throw new EOFException("server closed");
+      }
+      read += n;
+    }
+  }
+
+  private static ExecutorService newExecutor(String threads) {
+    if (threads.equals("platform")) {
+      return Executors.newCachedThreadPool();
+    }
+    if (!threads.equals("virtual")) {
+      throw new IllegalArgumentException("--threads must be platform or virtual: " + threads);
+    }
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+      throw new IllegalStateException("Virtual threads need a Java 21+ runtime, running on " + Runtime.version(), e);
+    }
+  }
+
+  private static final class Result {
+
+    final LatencyHistogram histogram = new LatencyHistogram();
+    long errors;
+  }
+
+  static final class Options {
+
+    String host = "127.0.0.1";
+    int port = 5050;
+    int connections = 100;
+    int size = 64;
+    long messages = 0;
+    long rate = 0;
+    int warmupSeconds = 2;
+    int durationSeconds = 10;
+    String threads = "platform";
+
+    static Options parse(String[] args) {
+      Options o = new Options();
+      for (String arg : args) {
+        int eq = arg.indexOf('=');
+        if (!arg.startsWith("--") || eq < 0) {
+          throw new IllegalArgumentException("Expected --name=value, got " + arg);
+        }
+        String name = arg.substring(2, eq);
+        String value = arg.substring(eq + 1);
+        switch (name) {
+          case "host": o.host = value; break;
+          case "port": o.port = Integer.parseInt(value); break;
+          case "connections": o.connections = Integer.parseInt(value); break;
+          case "size": o.size = Integer.parseInt(value); break;
+          case "messages": o.messages = Long.parseLong(value); break;
+          case "rate": o.rate = Long.parseLong(value); break;
+          case "warmup": o.warmupSeconds = Integer.parseInt(value); break;
+          case "duration": o.durationSeconds = Integer.parseInt(value); break;
+          case "threads": o.threads = value; break;
+          default: throw new IllegalArgumentException("Unknown option --" + name);
+        }
+      }
+      return o;
+    }
+  }
+}
@@ -15,6 +15,11 @@ import java.util.concurrent.Executors;
 public class EchoServer13 {
 
   public static void main(String[] args) throws Exception {
+    if (args.length > 1 && args[1].equals("nio")) {
+      // Selector-based engine: not limited to `workers` concurrent clients
+      NioEchoServer13.main(args);
+      return;
+    }
     int port = args.length > 0 ? Integer.parseInt(args[0]) : 5050;
     int workers = Math.max(2, Runtime.getRuntime().availableProcessors());
 
@@ -0,0 +1,108 @@
+package com.example.training.socketAPI;
+
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Log-linear latency histogram in the spirit of HdrHistogram, with a fixed footprint (about 18 KB).
+ * <br>Values below 128 ns are counted exactly; above that every power of two is split into 64 sub-buckets,
+ * so any recorded value is reported with less than 1.6% error, from nanoseconds up to about 18 minutes.</br>
+ * <br>Recording is a shift and an array increment, with no allocation. Instances are not thread-safe:
+ * give each load thread its own histogram and {@link #add(LatencyHistogram)} them at the end.</br>
+ */
+public final class LatencyHistogram {
+
+  private static final int LINEAR = 128;
+  private static final int SUB_BUCKETS = 64;
+  private static final int MAX_SHIFT = 34; // largest tracked value is about 2^40 ns
+  private static final int SIZE = LINEAR + MAX_SHIFT * SUB_BUCKETS;
+
+  private final long[] counts = new long[SIZE];
+  private long totalCount;
+  private long max;
+  private double sum;
+
+  public void record(long nanos) {
+    if (nanos < 0) {
+      nanos = 0;
+    }
+    counts[indexOf(nanos)]++;
+    totalCount++;
+    sum += nanos;
+    if (nanos > max) {
+      max = nanos;
+    }
+  }
+
+  public void add(LatencyHistogram other) {
+    for (int i = 0; i < SIZE; i++) {
+      counts[i] += other.counts[i];
+    }
+    totalCount += other.totalCount;
+    sum += other.sum;
+    max = Math.max(max, other.max);
+  }
+
+  public long getTotalCount() {
+    return totalCount;
+  }
+
+  public long getMax() {
+    return max;
+  }
+
+  public double getMean() {
+    return totalCount == 0 ? 0 : sum / totalCount;
+  }
+
+  /**
+   * @param percentile between 0 and 100, e.g. 99.9
+   * @return the highest value that could have been recorded into the bucket holding that percentile, in ns
+   */
+  public long getValueAtPercentile(double percentile) {
+    if (totalCount == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * totalCount));
+    long seen = 0;
+    for (int i = 0; i < SIZE; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return Math.min(highestValueAt(i), max);
+      }
+    }
+    return max;
+  }
+
+  static int indexOf(long value) {
+    if (value < LINEAR) {
+      return (int) value;
+    }
+    int shift = 63 - Long.numberOfLeadingZeros(value) - 6; // value >>> shift lands in [64, 128)
+    if (shift > MAX_SHIFT) {
+      return SIZE - 1;
+    }
+    return LINEAR + (shift - 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+  }
+
+  static long highestValueAt(int index) {
+    if (index < LINEAR) {
+      return index;
+    }
+    int k = index - LINEAR;
+    int shift = k / SUB_BUCKETS + 1;
+    long sub = k % SUB_BUCKETS + SUB_BUCKETS;
+    return ((sub + 1) << shift) - 1;
+  }
+
+  public void printSummary(PrintStream out, String title) {
+    out.printf("%s: count=%d mean=%.1fus p50=%.1fus p90=%.1fus p99=%.1fus p99.9=%.1fus max=%.1fus%n",
+        title, totalCount, getMean() / 1_000.0,
+        micros(getValueAtPercentile(50)), micros(getValueAtPercentile(90)),
+        micros(getValueAtPercentile(99)), micros(getValueAtPercentile(99.9)), micros(max));
+  }
+
+  private static double micros(long nanos) {
+    return nanos / (double) TimeUnit.MICROSECONDS.toNanos(1);
+  }
+}
@@ -0,0 +1,213 @@
+package com.example.training.socketAPI;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Non-blocking alternative to {@link EchoServer13}.
+ * <br>EchoServer13 parks one pool thread per connection, so only {@code workers} clients are served at a time,
+ * and it copies every received chunk into a ByteArrayOutputStream just to print it.</br>
+ * <br>Here one acceptor deals connections round-robin to a few selector threads. Bytes are read into a direct
+ * buffer and written back from that same buffer: no per-message copy, no per-message allocation.</br>
+ * <br>Buffers come from a per-reactor pool and are held only while a connection has unsent data, so idle
+ * connections cost a socket and a SelectionKey, not a buffer. Tens of thousands of clients fit easily.</br>
+ * <br>When a client reads slower than it writes, the pending buffer stays attached and the key switches to
+ * OP_WRITE only, which stops reading from that client (backpressure) until the echo is flushed.</br>
+ * <br>Run: {@code EchoServer13 5050 nio} or directly; {@code -Decho.log=true} logs connections and byte counts.</br>
+ */
+public class NioEchoServer13 {
+
+  private static final boolean LOG = Boolean.getBoolean("echo.log");
+  private static final int BUFFER_SIZE = Integer.getInteger("echo.bufferSize", 16 * 1024);
+  private static final int BUFFERS_PER_REACTOR = Integer.getInteger("echo.pooledBuffers", 1024);
+
+  public static void main(String[] args) throws IOException {
+    int port = args.length > 0 ? Integer.parseInt(args[0]) : 5050;
+    int reactorCount = Math.max(1, Runtime.getRuntime().availableProcessors());
+
+    Reactor[] reactors = new Reactor[reactorCount];
+    for (int i = 0; i < reactorCount; i++) {
+      reactors[i] = new Reactor();
+      Thread t = new Thread(reactors[i], "echo-reactor-" + i);
+      t.setDaemon(true);
+      t.start();
+    }
+
+    System.out.println("Starting NIO echo server on port " + port + " with " + reactorCount + " selector threads");
+    try (ServerSocketChannel server = ServerSocketChannel.open()) {
+      server.bind(new InetSocketAddress(port), 4096);
+      int next = 0;
+      while (true) {
+        SocketChannel channel = server.accept();
+        channel.configureBlocking(false);
+        reactors[next].register(channel);
+        next = (next + 1) % reactorCount;
+      }
+    }
+  }
+
+  /**
+   * Fixed set of direct buffers sliced from one allocation. Used by a single reactor thread only, so no locking.
+   * When empty it allocates extra buffers; only {@link #BUFFERS_PER_REACTOR} are kept on release.
+   */
+  static final class BufferPool {
+
+    private final ArrayDeque<ByteBuffer> free = new ArrayDeque<>();
+    private final int bufferSize;
+    private final int capacity;
+
+    BufferPool(int bufferSize, int capacity) {
+      this.bufferSize = bufferSize;
+      this.capacity = capacity;
+      ByteBuffer slab = ByteBuffer.allocateDirect(bufferSize * capacity);
+      for (int i = 0; i < capacity; i++) {
+        slab.limit((i + 1) * bufferSize).position(i * bufferSize);
+        free.push(slab.slice());
+      }
+    }
+
+    ByteBuffer acquire() {
+      ByteBuffer buf = free.poll();
+      return buf != null ? buf : ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    void release(ByteBuffer buf) {
+      if (free.size() < capacity) {
+        buf.clear();
+        free.push(buf);
+      }
+    }
+  }
+
+  static final class Reactor implements Runnable {
+
+    private final Selector selector;
+    private final Queue<SocketChannel> pending = new ConcurrentLinkedQueue<>();
+    private final BufferPool pool = new BufferPool(BUFFER_SIZE, BUFFERS_PER_REACTOR);
+
+    Reactor() throws IOException {
+      this.selector = Selector.open();
+    }
+
+    void register(SocketChannel channel) {
+      pending.add(channel);
+      selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+      try {
+        while (true) {
+          selector.select();
+          SocketChannel channel;
+          while ((channel = pending.poll()) != null) {
+            try {
+              channel.register(selector, SelectionKey.OP_READ, new Connection());
+            } catch (IOException | RuntimeException e) {
+              // E.g. ClosedChannelException: the client left before it was registered; drop only that channel
+              closeQuietly(channel);
+              continue;
+            }
+            if (LOG) {
+              System.out.println("Server:> New client connected on port " + channel.socket().getPort());
+            }
+          }
+          Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+          while (it.hasNext()) {
+            SelectionKey key = it.next();
+            it.remove();
+            try {
+              if (key.isReadable()) {
+                onReadable(key);
+              } else if (key.isWritable()) {
+                onWritable(key);
+              }
+            } catch (IOException e) {
+              close(key);
+            } catch (RuntimeException e) {
+              // E.g. CancelledKeyException: drop this connection, keep serving the others
+              System.out.println("Server:> Connection failed: " + e);
+              close(key);
+            }
+          }
+        }
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+    }
+
+    private void onReadable(SelectionKey key) throws IOException {
+      SocketChannel channel = (SocketChannel) key.channel();
+      Connection conn = (Connection) key.attachment();
+      ByteBuffer buf = pool.acquire();
+      int n = channel.read(buf);
+      if (n < 0) {
+        pool.release(buf);
+        close(key);
+        return;
+      }
+      conn.bytes += n;
+      buf.flip();
+      channel.write(buf);
+      if (buf.hasRemaining()) {
+        // Socket send buffer is full: keep the bytes and stop reading until they are flushed
+        conn.pending = buf;
+        key.interestOps(SelectionKey.OP_WRITE);
+      } else {
+        pool.release(buf);
+      }
+    }
+
+    private void onWritable(SelectionKey key) throws IOException {
+      SocketChannel channel = (SocketChannel) key.channel();
+      Connection conn = (Connection) key.attachment();
+      channel.write(conn.pending);
+      if (!conn.pending.hasRemaining()) {
+        pool.release(conn.pending);
+        conn.pending = null;
+        key.interestOps(SelectionKey.OP_READ);
+      }
+    }
+
+    private void close(SelectionKey key) {
+      Connection conn = (Connection) key.attachment();
+      if (conn.pending != null) {
+        pool.release(conn.pending);
+        conn.pending = null;
+      }
+      if (LOG) {
+        System.out.println("Server:> Client on port " + ((SocketChannel) key.channel()).socket().getPort()
+            + " closed after echoing " + conn.bytes + " bytes");
+      }
+      key.cancel();
+      closeQuietly(key.channel());
+    }
+
+    private static void closeQuietly(Channel channel) {
+      try {
+        channel.close();
+      } catch (IOException ignored) {
+        // already gone
+      }
+    }
+  }
+
+  /**
+   * Per-connection state: the buffer waiting to be written (null when idle) and a byte counter for logging.
+   */
+  static final class Connection {
+
+    ByteBuffer pending;
+    long bytes;
+  }
+}
@@ -3,16 +3,25 @@ package com.example.training;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
+import java.util.Arrays;
 
 /**
  * Sends and receives a UDP packet locally using the classic DatagramSocket API
  * (exactly the API that got reimplemented in JDK 15)
+ * <p>
+ * {@code DatagramSocketExample ingest [port] [workers] [seconds] [receive-only]} runs the high-rate
+ * {@link com.example.training.udp.UdpIngestServer} pipeline instead.
  */
 public class DatagramSocketExample {
 
     private static final int PORT = 9999;
 
     public static void main(String[] args) throws Exception {
+        if (args.length > 0 && "ingest".equals(args[0])) {
+            com.example.training.udp.UdpIngestServer.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
         Thread receiver = new Thread(DatagramSocketExample::runReceiver);
         receiver.start();
 
@@ -0,0 +1,17 @@
+package com.example.training.udp;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Processes ingested datagrams on a worker thread. Every worker gets its own instance, so implementations
+ * may keep unsynchronized state.
+ */
+@FunctionalInterface
+public interface PacketHandler {
+
+    /**
+     * @param packet the datagram payload (position 0 .. limit = length); it points into ring memory that is
+     *               reused as soon as the call returns, so copy whatever must outlive it
+     */
+    void onPacket(ByteBuffer packet);
+}
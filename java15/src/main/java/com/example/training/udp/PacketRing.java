@@ -0,0 +1,102 @@
+package com.example.training.udp;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single-producer / single-consumer ring of pre-allocated packet slots.
+ * <p>
+ * All slots are slices of one direct slab, so the receiver thread reads datagrams straight into ring memory
+ * and nothing is allocated per packet. The producer claims slots and fills them, then publishes a whole batch
+ * with one ordered store of {@code tail}; the consumer drains everything published so far and hands the slots
+ * back with one ordered store of {@code head}. No locks, and only two shared counters per batch.
+ */
+final class PacketRing {
+
+    private final ByteBuffer[] slots;
+    private final int mask;
+
+    /** Next slot the consumer will read, written by the consumer only. */
+    private final AtomicLong head = new AtomicLong();
+    /** One past the last slot visible to the consumer, written by the producer only. */
+    private final AtomicLong tail = new AtomicLong();
+
+    // Producer-local state: next slot to fill and the last head value it saw
+    private long claimed;
+    private long cachedHead;
+
+    /**
+     * @param capacity number of slots, rounded up to a power of two
+     * @param slotSize largest datagram a slot can hold; longer ones are truncated by the channel
+     */
+    PacketRing(int capacity, int slotSize) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.slots = new ByteBuffer[size];
+        this.mask = size - 1;
+        ByteBuffer slab = ByteBuffer.allocateDirect(size * slotSize);
+        for (int i = 0; i < size; i++) {
+            slab.limit((i + 1) * slotSize).position(i * slotSize);
+            slots[i] = slab.slice();
+        }
+    }
+
+    int capacity() {
+        return slots.length;
+    }
+
+    // ------------------------ producer side ------------------------
+
+    /**
+     * @return a cleared slot to receive into, or null if the consumer has not caught up (the ring is full)
+     */
+    ByteBuffer claim() {
+        if (claimed - cachedHead >= slots.length) {
+            cachedHead = head.get();
+            if (claimed - cachedHead >= slots.length) {
+                return null;
+            }
+        }
+        ByteBuffer slot = slots[(int) claimed & mask];
+        slot.clear();
+        return slot;
+    }
+
+    /**
+     * Keeps the slot returned by the last {@link #claim()}; it becomes visible at the next {@link #publish()}.
+     */
+    void commit() {
+        slots[(int) claimed & mask].flip();
+        claimed++;
+    }
+
+    /**
+     * Makes every committed slot visible to the consumer.
+     */
+    void publish() {
+        if (tail.get() != claimed) {
+            tail.lazySet(claimed);
+        }
+    }
+
+    // ------------------------ consumer side ------------------------
+
+    /**
+     * Hands every published packet to the handler, then frees the slots in one step.
+     *
+     * @return number of packets handled
+     */
+    int drain(PacketHandler handler) {
+        long from = head.get();
+        long to = tail.get();
+        if (from == to) {
+            return 0;
+        }
+        for (long i = from; i < to; i++) {
+            ByteBuffer slot = slots[(int) i & mask];
+            // The handler may move position/limit; they are reset when the slot is claimed again
+            handler.onPacket(slot);
+        }
+        head.lazySet(to);
+        return (int) (to - from);
+    }
+}
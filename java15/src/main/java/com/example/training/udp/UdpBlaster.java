@@ -0,0 +1,67 @@
+package com.example.training.udp;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Load source for {@link UdpIngestServer}: a few threads sending fixed-size datagrams as fast as they can.
+ * Each thread uses a connected channel and one reused buffer, so the sender itself allocates nothing per packet.
+ */
+public class UdpBlaster {
+
+    private final InetSocketAddress target;
+    private final Thread[] threads;
+    private final int payloadSize;
+    private final LongAdder sent = new LongAdder();
+    private volatile boolean running = true;
+
+    public UdpBlaster(InetSocketAddress target, int threads, int payloadSize) {
+        this.target = target;
+        this.payloadSize = Math.max(Long.BYTES, payloadSize);
+        this.threads = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            this.threads[i] = new Thread(this::sendLoop, "udp-blaster-" + i);
+        }
+    }
+
+    public void start() {
+        for (Thread thread : threads) {
+            thread.start();
+        }
+    }
+
+    public void stop() throws InterruptedException {
+        running = false;
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    public long sent() {
+        return sent.sum();
+    }
+
+    private void sendLoop() {
+        ByteBuffer packet = ByteBuffer.allocateDirect(payloadSize);
+        long sequence = 0;
+        try (DatagramChannel channel = DatagramChannel.open()) {
+            channel.connect(target);
+            while (running) {
+                packet.clear();
+                packet.putLong(0, sequence++);
+                channel.write(packet);
+                if ((sequence & 1023) == 0) {
+                    sent.add(1024);
+                }
+            }
+        } catch (IOException e) {
+            if (running) {
+                e.printStackTrace();
+            }
+        }
+        sent.add(sequence & 1023);
+    }
+}
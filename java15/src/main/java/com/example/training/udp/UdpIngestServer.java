@@ -0,0 +1,287 @@
+package com.example.training.udp;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * High-rate UDP ingestion: one receiver thread on a non-blocking {@link DatagramChannel}, N worker threads.
+ * <ul>
+ *   <li>every worker owns a {@link PacketRing} of pre-allocated direct slots; the receiver reads datagrams
+ *   straight into the slots, so there is no per-packet allocation and no copy between socket and worker,</li>
+ *   <li>the receiver drains the socket in batches and publishes each batch to one ring with a single ordered
+ *   store, then moves on to the next ring (round-robin per batch, lock-free hand-off),</li>
+ *   <li>when every ring is full the datagram is still read (into a scratch buffer) and counted as dropped,
+ *   so an overloaded pipeline sheds load visibly instead of letting the kernel drop silently,</li>
+ *   <li>counters: received packets/bytes, application drops, processed packets per worker.</li>
+ * </ul>
+ * Drops inside the kernel (socket receive buffer overflow) are not visible from Java; a large SO_RCVBUF
+ * ({@code -Dudp.rcvbuf}, also check {@code net.core.rmem_max} on Linux) absorbs bursts before the receiver catches up.
+ */
+public class UdpIngestServer {
+
+    private static final int DEFAULT_PORT = 9999;
+
+    private final DatagramChannel channel;
+    private final Selector selector;
+    private final PacketRing[] rings;
+    private final Worker[] workers;
+    private final int batchSize;
+    private final ByteBuffer scratch;
+    private final Thread receiverThread;
+
+    private volatile boolean running = true;
+    private volatile boolean workersRunning = true;
+
+    // Written by the receiver thread only, once per batch
+    private volatile long received;
+    private volatile long receivedBytes;
+    private volatile long dropped;
+
+    /**
+     * @param port       UDP port to bind
+     * @param workers    number of worker threads, each with its own ring
+     * @param ringSize   slots per ring
+     * @param slotSize   largest datagram accepted; longer ones are truncated
+     * @param batchSize  packets read from the socket before publishing to a ring
+     * @param handlers   creates one handler per worker
+     */
+    public UdpIngestServer(int port, int workers, int ringSize, int slotSize, int batchSize,
+                           Supplier<? extends PacketHandler> handlers) throws IOException {
+        this.channel = DatagramChannel.open();
+        this.channel.setOption(StandardSocketOptions.SO_RCVBUF, Integer.getInteger("udp.rcvbuf", 8 * 1024 * 1024));
+        this.channel.bind(new InetSocketAddress(port));
+        this.channel.configureBlocking(false);
+        this.selector = Selector.open();
+        this.channel.register(selector, SelectionKey.OP_READ);
+
+        this.batchSize = batchSize;
+        this.scratch = ByteBuffer.allocateDirect(slotSize);
+        this.rings = new PacketRing[workers];
+        this.workers = new Worker[workers];
+        for (int i = 0; i < workers; i++) {
+            rings[i] = new PacketRing(ringSize, slotSize);
+            this.workers[i] = new Worker(rings[i], handlers.get(), "udp-worker-" + i);
+        }
+        this.receiverThread = new Thread(this::receiveLoop, "udp-receiver");
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int workers = args.length > 1 ? Integer.parseInt(args[1]) : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        boolean withLoad = args.length <= 3 || !"receive-only".equals(args[3]);
+
+        UdpIngestServer server = new UdpIngestServer(port, workers, 16 * 1024, 2048, 256, ChecksumHandler::new);
+        server.start();
+        System.out.println("UDP ingest on port " + port + " with " + workers + " workers, SO_RCVBUF="
+                + server.channel.getOption(StandardSocketOptions.SO_RCVBUF));
+
+        UdpBlaster blaster = null;
+        if (withLoad) {
+            blaster = new UdpBlaster(new InetSocketAddress("127.0.0.1", port), 2, 64);
+            blaster.start();
+        }
+
+        long lastReceived = 0;
+        long lastBytes = 0;
+        long lastDropped = 0;
+        for (int i = 0; i < seconds; i++) {
+            Thread.sleep(1000);
+            long r = server.received;
+            long b = server.receivedBytes;
+            long d = server.dropped;
+            System.out.printf("%,10d pkt/s  %7.1f MB/s  dropped %,8d/s  processed %,d  backlog %,d%n",
+                    r - lastReceived, (b - lastBytes) / 1e6, d - lastDropped, server.processed(), server.backlog());
+            lastReceived = r;
+            lastBytes = b;
+            lastDropped = d;
+        }
+
+        if (blaster != null) {
+            blaster.stop();
+            System.out.println("Sent " + blaster.sent() + " packets");
+        }
+        server.stop();
+        System.out.println(server.stats());
+    }
+
+    public void start() {
+        for (Worker worker : workers) {
+            worker.thread.start();
+        }
+        receiverThread.start();
+    }
+
+    public void stop() throws InterruptedException, IOException {
+        running = false;
+        selector.wakeup();
+        receiverThread.join();
+        // Only now: everything the receiver published is drained before the workers exit
+        workersRunning = false;
+        for (Worker worker : workers) {
+            LockSupport.unpark(worker.thread);
+            worker.thread.join();
+        }
+        selector.close();
+        channel.close();
+    }
+
+    public long processed() {
+        long sum = 0;
+        for (Worker worker : workers) {
+            sum += worker.processed;
+        }
+        return sum;
+    }
+
+    /**
+     * @return packets handed to workers but not processed yet
+     */
+    public long backlog() {
+        return received - dropped - processed();
+    }
+
+    public String stats() {
+        return "received=" + received + " bytes=" + receivedBytes + " dropped=" + dropped + " processed=" + processed();
+    }
+
+    // ------------------------ receiver ------------------------
+
+    private void receiveLoop() {
+        long packets = 0;
+        long bytes = 0;
+        long drops = 0;
+        int next = 0;
+        try {
+            while (running) {
+                if (selector.select() == 0) {
+                    continue;
+                }
+                selector.selectedKeys().clear();
+
+                // Drain the socket completely: one wakeup usually covers many datagrams
+                boolean more = true;
+                while (more && running) {
+                    PacketRing ring = rings[next];
+                    next = next + 1 == rings.length ? 0 : next + 1;
+                    int batch = 0;
+                    while (batch < batchSize) {
+                        ByteBuffer slot = ring.claim();
+                        if (slot == null) {
+                            PacketRing other = freeRing(ring);
+                            if (other != null) {
+                                ring = other;
+                                slot = ring.claim();
+                            }
+                        }
+                        if (slot == null) {
+                            scratch.clear();
+                            if (channel.receive(scratch) == null) {
+                                more = false;
+                                break;
+                            }
+                            drops++;
+                            bytes += scratch.position();
+                        } else {
+                            if (channel.receive(slot) == null) {
+                                more = false;
+                                break;
+                            }
+                            bytes += slot.position();
+                            ring.commit();
+                        }
+                        packets++;
+                        batch++;
+                    }
+                    for (PacketRing r : rings) {
+                        r.publish();
+                    }
+                    received = packets;
+                    receivedBytes = bytes;
+                    dropped = drops;
+                }
+            }
+        } catch (IOException e) {
+            if (running) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Called when a ring is full: publishes what it has and looks for another ring with room.
+     */
+    private PacketRing freeRing(PacketRing full) {
+        full.publish();
+        for (PacketRing ring : rings) {
+            if (ring != full && ring.claim() != null) {
+                return ring;
+            }
+        }
+        return null;
+    }
+
+    // ------------------------ workers ------------------------
+
+    private final class Worker implements Runnable {
+
+        private static final int SPINS = 1000;
+
+        private final PacketRing ring;
+        private final PacketHandler handler;
+        private final Thread thread;
+        private volatile long processed;
+
+        Worker(PacketRing ring, PacketHandler handler, String name) {
+            this.ring = ring;
+            this.handler = handler;
+            this.thread = new Thread(this, name);
+        }
+
+        @Override
+        public void run() {
+            int idle = 0;
+            long count = 0;
+            while (workersRunning) {
+                int n = ring.drain(handler);
+                if (n > 0) {
+                    count += n;
+                    processed = count;
+                    idle = 0;
+                } else if (++idle < SPINS) {
+                    Thread.onSpinWait();
+                } else {
+                    // Back off so an idle pipeline does not burn a core per worker
+                    LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(50));
+                }
+            }
+            processed = count + ring.drain(handler);
+        }
+    }
+
+    /**
+     * Demo workload: folds every payload into a checksum, standing in for parsing a telemetry record.
+     */
+    static final class ChecksumHandler implements PacketHandler {
+
+        private long checksum;
+
+        @Override
+        public void onPacket(ByteBuffer packet) {
+            while (packet.remaining() >= Long.BYTES) {
+                checksum = checksum * 31 + packet.getLong();
+            }
+            while (packet.hasRemaining()) {
+                checksum = checksum * 31 + packet.get();
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.training.servers;
+
+import com.sun.net.httpserver.HttpServer;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//@formatter:off
+/**
+ * How an HttpServer runs its exchanges. Without setExecutor every request runs on the single dispatcher thread,
+ * so one slow download blocks every other client.
+ *
+ * INLINE   - the JDK default: handlers run on the dispatcher thread (fine for tiny, non-blocking handlers).
+ * POOLED   - bounded platform pool; when the queue is full the dispatcher runs the exchange itself,
+ *            which slows down accepting instead of dropping requests.
+ * VIRTUAL  - one virtual thread per exchange (needs a Java 21+ runtime; this module compiles for 18,
+ *            so the executor is looked up reflectively).
+ *
+ * Pick the mode with -Dserver.executor=inline|pooled|virtual and size the pool with -Dserver.threads=N.
+ */
+//@formatter:on
+public enum ExecutorMode {
+  INLINE,
+  POOLED,
+  VIRTUAL;
+
+  private static final int QUEUE_PER_THREAD = 64;
+
+  public static ExecutorMode fromSystemProperty() {
+    return valueOf(System.getProperty("server.executor", "pooled").toUpperCase(Locale.ROOT));
+  }
+
+  /**
+   * Creates the executor and installs it on the server. Must be called before {@link HttpServer#start()}.
+   *
+   * @return the installed executor, or null for {@link #INLINE}
+   */
+  public ExecutorService applyTo(HttpServer server) {
+    int threads = Integer.getInteger("server.threads", Runtime.getRuntime().availableProcessors() * 4);
+    ExecutorService executor = create(threads);
+    server.setExecutor(executor);
+    System.out.println("Executor mode: " + this + (this == POOLED ? " (" + threads + " threads)" : ""));
+    return executor;
+  }
+
+  public ExecutorService create(int threads) {
+    return switch (this) {
+      case INLINE -> null;
+      case POOLED -> new ThreadPoolExecutor(
+          threads, threads,
+          60, TimeUnit.SECONDS,
+          new ArrayBlockingQueue<>(threads * QUEUE_PER_THREAD),
+          namedThreads("http-worker-"),
+          new ThreadPoolExecutor.CallerRunsPolicy());
+      case VIRTUAL -> newVirtualThreadPerTaskExecutor();
+    };
+  }
+
+  private static ExecutorService newVirtualThreadPerTaskExecutor() {
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new IllegalStateException("Virtual threads need a Java 21+ runtime, running on " + Runtime.version(), e);
+    } catch (InvocationTargetException e) {
+      // Java 19/20 without --enable-preview throws UnsupportedOperationException here
+      throw new IllegalStateException("Virtual threads are not available: " + e.getCause(), e.getCause());
+    }
+  }
+
+  private static ThreadFactory namedThreads(String prefix) {
+    AtomicInteger counter = new AtomicInteger();
+    return runnable -> {
+      Thread t = new Thread(runnable, prefix + counter.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    };
+  }
+}
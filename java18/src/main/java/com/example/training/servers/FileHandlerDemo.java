@@ -1,9 +1,11 @@
 package com.example.training.servers;
 
+import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
 import com.sun.net.httpserver.SimpleFileServer;
 import java.net.InetSocketAddress;
 import java.nio.file.Path;
+import java.time.Duration;
 //@formatter:off
 /**
  * What this demonstrates
@@ -25,15 +27,24 @@ public class FileHandlerDemo {
     HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
 
     // Create a file handler that serves static content under /static
-    var handler = SimpleFileServer.createFileHandler(root);
+    // Pass "zero-copy" to use ZeroCopyFileHandler (transferTo, Range, ETag/304) for large artifacts
+    boolean zeroCopy = args.length > 0 && args[0].equals("zero-copy");
+    HttpHandler handler = zeroCopy ? new ZeroCopyFileHandler(root) : SimpleFileServer.createFileHandler(root);
 
-    // Mount handler to a specific context
-    server.createContext("/static", handler);
+    // Mount handler to a specific context, measured by the metrics filter
+    MetricsFilter metrics = new MetricsFilter();
+    server.createContext("/static", handler).getFilters().add(metrics);
+    server.createContext("/_metrics", metrics.handler());
+
+    // Without an executor every exchange runs on the single dispatcher thread (-Dserver.executor=...)
+    ExecutorMode.fromSystemProperty().applyTo(server);
 
     server.start();
+    metrics.startReporter(System.out, Duration.ofSeconds(10));
 
     System.out.println("HTTP static file server running...");
     System.out.println("Open http://localhost:" + port + "/static/");
+    System.out.println("Metrics at http://localhost:" + port + "/_metrics");
     System.out.println("Serving directory: " + root);
   }
 }
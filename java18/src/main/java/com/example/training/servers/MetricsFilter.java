@@ -0,0 +1,155 @@
+package com.example.training.servers;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+//@formatter:off
+/**
+ * Companion to SimpleFileServer.createOutputFilter: instead of logging each exchange it aggregates
+ * request rate, in-flight count and a latency histogram, so you can see where static serving saturates
+ * (latency percentiles climb while the rate flattens and in-flight piles up).
+ *
+ * Recording is lock-free: LongAdder counters and a log2 histogram of microseconds in an AtomicLongArray
+ * (bucket i holds latencies in [2^(i-1), 2^i) us), so the filter adds no contention under load.
+ *
+ * Use it as a filter on any context, read it through {@link #snapshot()}, print it periodically with
+ * {@link #startReporter(PrintStream, Duration)} or mount {@link #handler()} on e.g. "/_metrics".
+ */
+//@formatter:on
+public class MetricsFilter extends Filter {
+
+  private static final int BUCKETS = 40; // 2^39 us is about 6 days
+
+  private final LongAdder requests = new LongAdder();
+  private final LongAdder serverErrors = new LongAdder();
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final LongAccumulator maxInFlight = new LongAccumulator(Math::max, 0);
+  private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+  private final long startNanos = System.nanoTime();
+
+  @Override
+  public String description() {
+    return "Request rate, in-flight and latency histogram";
+  }
+
+  @Override
+  public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+    maxInFlight.accumulate(inFlight.incrementAndGet());
+    long start = System.nanoTime();
+    try {
+      chain.doFilter(exchange);
+    } finally {
+      long micros = (System.nanoTime() - start) / 1_000;
+      histogram.incrementAndGet(bucket(micros));
+      requests.increment();
+      if (exchange.getResponseCode() >= 500 || exchange.getResponseCode() == -1) {
+        serverErrors.increment();
+      }
+      inFlight.decrementAndGet();
+    }
+  }
+
+  private static int bucket(long micros) {
+    return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+  }
+
+  public Snapshot snapshot() {
+    long[] counts = new long[BUCKETS];
+    for (int i = 0; i < BUCKETS; i++) {
+      counts[i] = histogram.get(i);
+    }
+    return new Snapshot(System.nanoTime() - startNanos, requests.sum(), serverErrors.sum(),
+        inFlight.get(), maxInFlight.get(), counts);
+  }
+
+  /**
+   * Prints one line per period with the rate over that period and the cumulative latency percentiles.
+   */
+  public ScheduledExecutorService startReporter(PrintStream out, Duration period) {
+    ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread t = new Thread(r, "metrics-reporter");
+      t.setDaemon(true);
+      return t;
+    });
+    Snapshot[] previous = {snapshot()};
+    scheduler.scheduleAtFixedRate(() -> {
+      Snapshot current = snapshot();
+      out.println("[metrics] " + current.format(previous[0]));
+      previous[0] = current;
+    }, period.toMillis(), period.toMillis(), TimeUnit.MILLISECONDS);
+    return scheduler;
+  }
+
+  /**
+   * A plain-text view of the current snapshot, for mounting next to the file handler.
+   */
+  public HttpHandler handler() {
+    return exchange -> {
+      try (exchange) {
+        byte[] body = (snapshot().format(null) + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+        exchange.sendResponseHeaders(200, body.length);
+        exchange.getResponseBody().write(body);
+      }
+    };
+  }
+
+  /**
+   * Immutable copy of the counters.
+   *
+   * @param histogram request counts per log2 bucket of microseconds
+   */
+  public record Snapshot(long uptimeNanos, long requests, long serverErrors, int inFlight, long maxInFlight,
+                         long[] histogram) {
+
+    /**
+     * @param quantile e.g. 0.99
+     * @return upper bound, in microseconds, of the bucket containing the quantile; 0 when nothing was recorded
+     */
+    public long percentileMicros(double quantile) {
+      long total = 0;
+      for (long c : histogram) {
+        total += c;
+      }
+      if (total == 0) {
+        return 0;
+      }
+      long rank = (long) Math.ceil(quantile * total);
+      long seen = 0;
+      for (int i = 0; i < histogram.length; i++) {
+        seen += histogram[i];
+        if (seen >= rank) {
+          return 1L << i;
+        }
+      }
+      return 1L << (histogram.length - 1);
+    }
+
+    /**
+     * @param since earlier snapshot for the rate, or null for the average rate since start
+     */
+    public double requestsPerSecond(Snapshot since) {
+      long count = since == null ? requests : requests - since.requests;
+      long nanos = since == null ? uptimeNanos : uptimeNanos - since.uptimeNanos;
+      return nanos <= 0 ? 0 : count * 1e9 / nanos;
+    }
+
+    public String format(Snapshot since) {
+      return String.format("rps=%.1f total=%d 5xx=%d inFlight=%d maxInFlight=%d p50<=%dus p90<=%dus p99<=%dus p999<=%dus",
+          requestsPerSecond(since), requests, serverErrors, inFlight, maxInFlight,
+          percentileMicros(0.50), percentileMicros(0.90), percentileMicros(0.99), percentileMicros(0.999));
+    }
+  }
+}
@@ -1,5 +1,6 @@
 package com.example.training.servers;
 
+import com.sun.net.httpserver.HttpServer;
 import com.sun.net.httpserver.SimpleFileServer;
 import java.net.InetSocketAddress;
 import java.nio.file.Path;
@@ -22,11 +23,23 @@ public class SimpleWebServerDemo {
     //If you give the path to a folder where an index.html is then in the browser it will open than index.html
     //Path root = Path.of(".\\java18\\src\\main\\resources").toAbsolutePath();
 
-    var server = SimpleFileServer.createFileServer(
-        new InetSocketAddress(port),
-        root,
-        SimpleFileServer.OutputLevel.INFO
-    );
+    // "zero-copy" builds the same server by hand around ZeroCopyFileHandler (transferTo, Range, ETag/304)
+    boolean zeroCopy = args.length > 0 && args[0].equals("zero-copy");
+    var server = zeroCopy
+        ? HttpServer.create(
+            new InetSocketAddress(port),
+            0,
+            "/",
+            new ZeroCopyFileHandler(root),
+            SimpleFileServer.createOutputFilter(System.out, SimpleFileServer.OutputLevel.INFO))
+        : SimpleFileServer.createFileServer(
+            new InetSocketAddress(port),
+            root,
+            SimpleFileServer.OutputLevel.INFO
+        );
+
+    // createFileServer leaves the executor unset, so every exchange would run on the dispatcher thread
+    ExecutorMode.fromSystemProperty().applyTo(server);
 
     server.start();
 
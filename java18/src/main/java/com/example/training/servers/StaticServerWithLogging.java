@@ -1,10 +1,12 @@
 package com.example.training.servers;
 
 import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
 import com.sun.net.httpserver.SimpleFileServer;
 import java.net.InetSocketAddress;
 import java.nio.file.Path;
+import java.time.Duration;
 //@formatter:off
 /**
  * When this is useful:
@@ -24,16 +26,29 @@ public class StaticServerWithLogging {
         SimpleFileServer.OutputLevel.INFO
     );
 
+    // Aggregated counters next to the per-request log lines
+    MetricsFilter metrics = new MetricsFilter();
+
+    // "zero-copy" swaps in ZeroCopyFileHandler (transferTo, Range, ETag/304) for large artifacts
+    boolean zeroCopy = args.length > 0 && args[0].equals("zero-copy");
+    HttpHandler fileHandler = zeroCopy ? new ZeroCopyFileHandler(root) : SimpleFileServer.createFileHandler(root);
+
     // Create the server: backlog 10, serve root context, static handler + our log filter
     HttpServer server = HttpServer.create(
         new InetSocketAddress(port),
         10,
         "/",                                // root context path
-        SimpleFileServer.createFileHandler(root),  // static file handler
-        logFilter
+        fileHandler,                        // static file handler
+        logFilter,
+        metrics                             // request rate, in-flight, latency histogram
     );
+    server.createContext("/_metrics", metrics.handler());
+
+    // Run exchanges off the dispatcher thread (-Dserver.executor=inline|pooled|virtual)
+    ExecutorMode.fromSystemProperty().applyTo(server);
 
     server.start();
+    metrics.startReporter(System.out, Duration.ofSeconds(10));
 
     System.out.println("Server started on http://localhost:" + port);
     System.out.println("Serving directory: " + root);
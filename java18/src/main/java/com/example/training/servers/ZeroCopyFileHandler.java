@@ -0,0 +1,243 @@
+package com.example.training.servers;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.SimpleFileServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URLConnection;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+//@formatter:off
+/**
+ * Static file handler for large artifacts, a drop-in alternative to SimpleFileServer.createFileHandler.
+ *
+ * What it adds:
+ * File bytes are pushed with FileChannel.transferTo instead of being read into a heap byte[] first.
+ *   When the target is a socket or file channel this becomes sendfile/copy_file_range.
+ *   com.sun.net.httpserver only exposes the response as an OutputStream, so here the JDK falls back to
+ *   its internal temporary direct buffer: still no per-request heap buffer proportional to the file.
+ * Range requests (single range, "bytes=a-b", "bytes=a-", "bytes=-n") answered with 206 / 416,
+ *   so download managers can resume multi-GB files.
+ * Strong ETag (size + mtime) and Last-Modified; If-None-Match answers 304 without touching the file,
+ *   If-Range falls back to the full body when the file changed.
+ *
+ * Directories are delegated to SimpleFileServer's own handler (index.html or listing).
+ * Like SimpleFileServer, hidden files and symbolic links are never served.
+ */
+//@formatter:on
+public class ZeroCopyFileHandler implements HttpHandler {
+
+  private static final DateTimeFormatter HTTP_DATE = DateTimeFormatter.RFC_1123_DATE_TIME.withZone(ZoneOffset.UTC);
+
+  private final Path root;
+  private final HttpHandler directoryHandler;
+
+  public ZeroCopyFileHandler(Path root) {
+    if (!root.isAbsolute() || !Files.isDirectory(root)) {
+      throw new IllegalArgumentException("Root must be an absolute path to a directory: " + root);
+    }
+    this.root = root.normalize();
+    this.directoryHandler = SimpleFileServer.createFileHandler(this.root);
+  }
+
+  @Override
+  public void handle(HttpExchange exchange) throws IOException {
+    try (exchange) {
+      String method = exchange.getRequestMethod();
+      boolean head = method.equals("HEAD");
+      if (!head && !method.equals("GET")) {
+        exchange.getResponseHeaders().set("Allow", "HEAD, GET");
+        exchange.sendResponseHeaders(405, -1);
+        return;
+      }
+
+      Path file = resolve(exchange);
+      if (file == null) {
+        exchange.sendResponseHeaders(404, -1);
+        return;
+      }
+      if (Files.isDirectory(file)) {
+        directoryHandler.handle(exchange);
+        return;
+      }
+      serveFile(exchange, file, head);
+    }
+  }
+
+  private void serveFile(HttpExchange exchange, Path file, boolean head) throws IOException {
+    BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+    long size = attrs.size();
+    long modified = attrs.lastModifiedTime().toMillis();
+    String etag = "\"" + Long.toHexString(size) + "-" + Long.toHexString(modified) + "\"";
+
+    var headers = exchange.getResponseHeaders();
+    headers.set("ETag", etag);
+    headers.set("Last-Modified", HTTP_DATE.format(attrs.lastModifiedTime().toInstant()));
+    headers.set("Accept-Ranges", "bytes");
+
+    var requestHeaders = exchange.getRequestHeaders();
+    if (matches(requestHeaders.getFirst("If-None-Match"), etag)) {
+      exchange.sendResponseHeaders(304, -1);
+      return;
+    }
+
+    headers.set("Content-Type", contentType(file));
+    Range range = Range.parse(requestHeaders.getFirst("Range"), size);
+    String ifRange = requestHeaders.getFirst("If-Range");
+    if (range != null && ifRange != null && !ifRange.equals(etag)) {
+      range = null; // the client's partial copy is stale: send the whole file
+    }
+
+    int status = 200;
+    long start = 0;
+    long length = size;
+    if (range == Range.UNSATISFIABLE) {
+      headers.set("Content-Range", "bytes */" + size);
+      exchange.sendResponseHeaders(416, -1);
+      return;
+    }
+    if (range != null) {
+      status = 206;
+      start = range.start();
+      length = range.length();
+      headers.set("Content-Range", "bytes " + start + "-" + (start + length - 1) + "/" + size);
+    }
+
+    if (head) {
+      headers.set("Content-Length", Long.toString(length));
+      exchange.sendResponseHeaders(status, -1);
+      return;
+    }
+    // In HttpServer a length of 0 means "chunked"; -1 means "no body"
+    exchange.sendResponseHeaders(status, length == 0 ? -1 : length);
+    if (length > 0) {
+      transfer(file, start, length, exchange.getResponseBody());
+    }
+  }
+
+  private static void transfer(Path file, long position, long count, OutputStream out) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      WritableByteChannel target = Channels.newChannel(out);
+      while (count > 0) {
+        // transferTo may move fewer bytes than asked (e.g. capped at 2 GB per call on Linux)
+        long sent = channel.transferTo(position, count, target);
+        if (sent <= 0) {
+          throw new IOException("File truncated while sending: " + file);
+        }
+        position += sent;
+        count -= sent;
+      }
+    }
+  }
+
+  /**
+   * Maps the request path (minus the context path) onto the root, refusing anything that escapes it.
+   */
+  private Path resolve(HttpExchange exchange) {
+    String contextPath = exchange.getHttpContext().getPath();
+    String requestPath = exchange.getRequestURI().getPath();
+    if (requestPath == null || !requestPath.startsWith(contextPath)) {
+      return null;
+    }
+    String relative = requestPath.substring(contextPath.length());
+    while (relative.startsWith("/")) {
+      relative = relative.substring(1);
+    }
+    Path path;
+    try {
+      path = root.resolve(relative).normalize();
+    } catch (RuntimeException e) {
+      return null; // InvalidPathException for characters the file system does not accept
+    }
+    if (!path.startsWith(root) || !Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
+      return null;
+    }
+    try {
+      if (Files.isSymbolicLink(path) || (!path.equals(root) && Files.isHidden(path)) || !Files.isReadable(path)) {
+        return null;
+      }
+    } catch (IOException e) {
+      return null;
+    }
+    return path;
+  }
+
+  private static boolean matches(String ifNoneMatch, String etag) {
+    if (ifNoneMatch == null) {
+      return false;
+    }
+    for (String candidate : ifNoneMatch.split(",")) {
+      String tag = candidate.trim();
+      if (tag.startsWith("W/")) {
+        tag = tag.substring(2); // weak comparison is what If-None-Match asks for
+      }
+      if (tag.equals("*") || tag.equals(etag)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static String contentType(Path file) {
+    String type = URLConnection.getFileNameMap().getContentTypeFor(file.getFileName().toString());
+    return type != null ? type : "application/octet-stream";
+  }
+
+  /**
+   * A single satisfiable byte range; multi-range requests are answered with the full body, which RFC 9110 allows.
+   */
+  record Range(long start, long length) {
+
+    static final Range UNSATISFIABLE = new Range(-1, -1);
+
+    /**
+     * @return the range, null to send the whole file, or {@link #UNSATISFIABLE}
+     */
+    static Range parse(String header, long size) {
+      if (header == null || !header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+        return null;
+      }
+      String spec = header.substring("bytes=".length()).trim();
+      int dash = spec.indexOf('-');
+      if (dash < 0) {
+        return null;
+      }
+      try {
+        String first = spec.substring(0, dash).trim();
+        String last = spec.substring(dash + 1).trim();
+        if (first.isEmpty()) {
+          // Suffix range: the last N bytes
+          long suffix = Long.parseLong(last);
+          if (suffix <= 0 || size == 0) {
+            return UNSATISFIABLE;
+          }
+          long len = Math.min(suffix, size);
+          return new Range(size - len, len);
+        }
+        long start = Long.parseLong(first);
+        // An open end ("N-") runs to the end of the file, so it is never below start
+        long end = last.isEmpty() ? Long.MAX_VALUE : Long.parseLong(last);
+        if (end < start) {
+          return null; // an explicit last < first is a syntactically invalid spec: ignored (RFC 7233 2.1)
+        }
+        if (start >= size) {
+          return UNSATISFIABLE;
+        }
+        end = Math.min(end, size - 1);
+        return new Range(start, end - start + 1);
+      } catch (NumberFormatException e) {
+        return null; // an invalid Range header is ignored
+      }
+    }
+  }
+}
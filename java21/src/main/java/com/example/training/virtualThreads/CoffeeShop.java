@@ -1,8 +1,9 @@
 package com.example.training.virtualThreads;
 
-import java.util.Map;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.Random;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -16,23 +17,44 @@ import java.util.concurrent.atomic.LongAdder;
  * Scenario: an in-memory inventory updated by many concurrent “orders”.
  * We use:
  *  - Virtual threads (cheap to create/block).
- *  - ConcurrentHashMap + LongAdder (no synchronized blocks, no pinning).
+ *  - StripedInventory: per-SKU long slots in striped, version-locked cells (no synchronized blocks, no pinning).
+ *  - Each order is one DeltaBatch of 1..3 lines, applied atomically.
  *  - CountDownLatch for completion (no streams, no lambdas).
  *
  * Run and observe:
  *  - Thousands of tasks update the same keys with no contention bugs.
- *  - Final inventory equals initial + all applied deltas.
+ *  - Readers always see whole orders: a snapshot never contains half of a batch.
+ *  - Final inventory equals initial + all deltas the writers report having applied.
+ *
+ * "CoffeeShop bench [seconds]" measures raw batch throughput with platform threads while a dashboard
+ * thread snapshots continuously.
+ *
+ * "CoffeeShop durable [dir]" runs the same orders through an InventoryLog: every order is group-committed to
+ * a memory-mapped write-ahead log before the writer continues, checkpoints are taken in the background, and
+ * the directory is finally recovered into a fresh inventory to check that nothing acknowledged was lost.
+ * Run it twice: the second run starts from the recovered state.
  */
 //@formatter:on
 public class CoffeeShop {
 
+  private static final String[] SKUS = {"COFFEE_BEANS", "GREEN_TEA", "CACAO", "CARDAMOM"};
+
   public static void main(String[] args) throws Exception {
+    if (args.length > 0 && "bench".equals(args[0])) {
+      benchmark(args.length > 1 ? Integer.parseInt(args[1]) : 5);
+      return;
+    }
+    if (args.length > 0 && "durable".equals(args[0])) {
+      durable(Path.of(args.length > 1 ? args[1] : "coffee-shop-wal"));
+      return;
+    }
 
-    Inventory inventory = new Inventory();
-    inventory.putInitial("COFFEE_BEANS", 10_000);
-    inventory.putInitial("GREEN_TEA", 5_000);
-    inventory.putInitial("CACAO", 3_000);
-    inventory.putInitial("CARDAMOM", 1_000);
+    StripedInventory inventory = newInventory();
+    // What the writers believe they applied, tracked independently of the inventory for verification
+    LongAdder[] ledger = new LongAdder[SKUS.length];
+    for (int i = 0; i < ledger.length; i++) {
+      ledger[i] = new LongAdder();
+    }
 
     int totalTasks = 100_000;              // number of “orders”
     int readers = 50_000;               // parallel readers computing totals
@@ -45,7 +67,7 @@ public class CoffeeShop {
     try (ExecutorService vexec = Executors.newVirtualThreadPerTaskExecutor()) {
       // Writers
       for (int i = 0; i < totalTasks; i++) {
-        vexec.submit(new WriterTask(inventory, writersDone));
+        vexec.submit(new WriterTask(inventory, ledger, writersDone));
       }
       // Readers (simulate dashboards pulling totals in parallel)
       for (int i = 0; i < readers; i++) {
@@ -60,156 +82,170 @@ public class CoffeeShop {
     long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t0);
 
     // Verify and print snapshot
-    Snapshot snapshot = inventory.snapshot();
-    System.out.println("=== Inventory snapshot ===");
-    printLine("COFFEE_BEANS", snapshot);
-    printLine("GREEN_TEA", snapshot);
-    printLine("CACAO", snapshot);
-    printLine("CARDAMOM", snapshot);
+    StripedInventory.Snapshot snapshot = inventory.snapshot();
+    System.out.println("=== Inventory snapshot (epoch " + snapshot.epoch() + ") ===");
+    for (String sku : SKUS) {
+      printLine(sku, snapshot);
+    }
 
     // Consistency check
-    boolean ok = inventory.verifyTotals();
+    boolean ok = verifyTotals(snapshot, ledger);
     System.out.println("Consistent totals: " + ok + " | tasks=" + totalTasks + " | readers=" + readers + " | took=" + elapsedMs + " ms");
   }
 
-  private static void printLine(String key, Snapshot s) {
-    System.out.println(key + " | initial=" + s.initial(key) + " | delta=" + s.delta(key) + " | current=" + s.current(key));
+  private static StripedInventory newInventory() {
+    StripedInventory inventory = new StripedInventory(16);
+    inventory.putInitial("COFFEE_BEANS", 10_000);
+    inventory.putInitial("GREEN_TEA", 5_000);
+    inventory.putInitial("CACAO", 3_000);
+    inventory.putInitial("CARDAMOM", 1_000);
+    return inventory;
   }
 
-  // ---------------- Core data structure ----------------
-
-  private static final class Inventory {
-
-    private final ConcurrentHashMap<String, LongAdder> current = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<String, LongAdder> deltas = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<String, Integer> initial = new ConcurrentHashMap<>();
-
-    void putInitial(String sku, int qty) {
-      initial.put(sku, qty);
-      LongAdder a = new LongAdder();
-      a.add(qty);
-      current.put(sku, a);
-      deltas.put(sku, new LongAdder());
-    }
-
-    void applyDelta(String sku, int delta) {
-      // current += delta
-      LongAdder c = current.get(sku);
-      if (c == null) {
-        return; // unknown SKU
-      }
-      c.add(delta);
+  private static void printLine(String key, StripedInventory.Snapshot s) {
+    System.out.println(key + " | initial=" + s.initial(key) + " | delta=" + s.delta(key) + " | current=" + s.current(key));
+  }
 
-      // track total applied delta for verification
-      LongAdder d = deltas.get(sku);
-      if (d != null) {
-        d.add(delta);
+  private static boolean verifyTotals(StripedInventory.Snapshot s, LongAdder[] ledger) {
+    for (int i = 0; i < SKUS.length; i++) {
+      if (s.delta(SKUS[i]) != ledger[i].sum() || s.current(SKUS[i]) != s.initial(SKUS[i]) + ledger[i].sum()) {
+        return false;
       }
     }
+    return true;
+  }
 
-    int getCurrent(String sku) {
-      LongAdder a = current.get(sku);
-      return a == null ? 0 : (int) a.sum();
-    }
-
-    int getDelta(String sku) {
-      LongAdder a = deltas.get(sku);
-      return a == null ? 0 : (int) a.sum();
-    }
-
-    int getInitial(String sku) {
-      Integer v = initial.get(sku);
-      return v == null ? 0 : v;
-    }
+  // ---------------- Durability ----------------
 
-    Snapshot snapshot() {
-      return new Snapshot(initial, current, deltas);
+  private static void durable(Path dir) throws Exception {
+    StripedInventory inventory = new StripedInventory(16);
+    int totalTasks = 100_000;
+    LongAdder[] ledger = new LongAdder[SKUS.length];
+    for (int i = 0; i < ledger.length; i++) {
+      ledger[i] = new LongAdder();
     }
 
-    boolean verifyTotals() {
-      for (Map.Entry<String, Integer> e : initial.entrySet()) {
-        String k = e.getKey();
-        int expect = e.getValue() + getDelta(k);
-        if (getCurrent(k) != expect) {
-          return false;
+    StripedInventory.Snapshot before;
+    long forces;
+    long records;
+    long elapsedMs;
+    try (InventoryLog log = InventoryLog.open(dir, inventory, 64 * 1024 * 1024)) {
+      log.register("COFFEE_BEANS", 10_000);
+      log.register("GREEN_TEA", 5_000);
+      log.register("CACAO", 3_000);
+      log.register("CARDAMOM", 1_000);
+      before = inventory.snapshot();
+      long lsnBefore = log.lastLsn();
+      long forcesBefore = log.forces();
+      log.scheduleCheckpoints(Duration.ofMillis(500));
+
+      CountDownLatch writersDone = new CountDownLatch(totalTasks);
+      long t0 = System.nanoTime();
+      try (ExecutorService vexec = Executors.newVirtualThreadPerTaskExecutor()) {
+        for (int i = 0; i < totalTasks; i++) {
+          vexec.submit(new DurableWriterTask(inventory, log, ledger, writersDone));
         }
+        writersDone.await();
       }
-      return true;
-    }
-  }
-
-  private static final class Snapshot {
-
-    private final Map<String, Integer> initial;
-    private final Map<String, LongAdder> current;
-    private final Map<String, LongAdder> deltas;
-
-    Snapshot(Map<String, Integer> initial, Map<String, LongAdder> current, Map<String, LongAdder> deltas) {
-      this.initial = copyInitial(initial);
-      this.current = copyAdderMap(current);
-      this.deltas = copyAdderMap(deltas);
+      elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t0);
+      records = log.lastLsn() - lsnBefore;
+      forces = log.forces() - forcesBefore;
     }
+    StripedInventory.Snapshot live = inventory.snapshot();
 
-    int initial(String key) {
-      return val(initial.get(key));
+    boolean ok = true;
+    for (int i = 0; i < SKUS.length; i++) {
+      ok &= live.delta(SKUS[i]) == before.delta(SKUS[i]) + ledger[i].sum();
     }
-
-    int current(String key) {
-      return sum(current.get(key));
-    }
-
-    int delta(String key) {
-      return sum(deltas.get(key));
-    }
-
-    private static int val(Integer v) {
-      return v == null ? 0 : v;
+    System.out.println("Committed " + records + " orders in " + elapsedMs + " ms with " + forces + " forces ("
+        + (forces == 0 ? records : records / forces) + " orders per force) | ledger matches: " + ok);
+
+    // Recover from disk only and compare with what was acknowledged in memory
+    StripedInventory recovered = new StripedInventory(16);
+    InventoryLog.open(dir, recovered, 64 * 1024 * 1024).close();
+    StripedInventory.Snapshot fromDisk = recovered.snapshot();
+    boolean same = true;
+    for (String sku : SKUS) {
+      printLine(sku, fromDisk);
+      same &= fromDisk.current(sku) == live.current(sku);
     }
+    System.out.println("Recovered state matches: " + same);
+  }
 
-    private static int sum(LongAdder a) {
-      return a == null ? 0 : (int) a.sum();
+  // ---------------- Throughput ----------------
+
+  private static void benchmark(int seconds) throws InterruptedException {
+    StripedInventory inventory = newInventory();
+    int writers = Runtime.getRuntime().availableProcessors();
+    LongAdder updates = new LongAdder();
+    LongAdder snapshots = new LongAdder();
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+
+    Thread[] threads = new Thread[writers + 1];
+    for (int w = 0; w < writers; w++) {
+      threads[w] = new Thread(() -> {
+        StripedInventory.DeltaBatch batch = inventory.newBatch(2);
+        long n = 0;
+        int i = 0;
+        while ((n & 1023) != 0 || System.nanoTime() < deadline) {
+          // A transfer between two SKUs: total stock never changes, so every coherent snapshot sums to the same value
+          batch.clear();
+          batch.add(i & 3, -1).add((i + 1) & 3, 1);
+          inventory.applyDeltas(batch);
+          i++;
+          n++;
+        }
+        updates.add(n);
+      });
     }
-
-    private static Map<String, Integer> copyInitial(Map<String, Integer> src) {
-      ConcurrentHashMap<String, Integer> dst = new ConcurrentHashMap<>();
-      for (Map.Entry<String, Integer> e : src.entrySet()) {
-        dst.put(e.getKey(), e.getValue());
+    long expectedTotal = inventory.snapshot().totalCurrent();
+    LongAdder torn = new LongAdder();
+    threads[writers] = new Thread(() -> {
+      while (System.nanoTime() < deadline) {
+        if (inventory.snapshot().totalCurrent() != expectedTotal) {
+          torn.increment();
+        }
+        snapshots.increment();
       }
-      return dst;
+    });
+    for (Thread t : threads) {
+      t.start();
     }
-
-    private static Map<String, LongAdder> copyAdderMap(Map<String, LongAdder> src) {
-      ConcurrentHashMap<String, LongAdder> dst = new ConcurrentHashMap<>();
-      for (Map.Entry<String, LongAdder> e : src.entrySet()) {
-        LongAdder copy = new LongAdder();
-        copy.add(e.getValue().sum());
-        dst.put(e.getKey(), copy);
-      }
-      return dst;
+    for (Thread t : threads) {
+      t.join();
     }
+    System.out.printf("writers=%d  batches/s=%,d  snapshots/s=%,d  torn snapshots=%d  epoch=%,d%n",
+        writers, updates.sum() / seconds, snapshots.sum() / seconds, torn.sum(), inventory.snapshot().epoch());
   }
 
   // ---------------- Tasks ----------------
 
   private static final class WriterTask implements Runnable {
 
-    private static final String[] SKUS = {"COFFEE_BEANS", "GREEN_TEA", "CACAO", "CARDAMOM"};
-    private final Inventory inventory;
+    private final StripedInventory inventory;
+    private final LongAdder[] ledger;
     private final CountDownLatch done;
     private final Random rnd = new Random();
 
-    WriterTask(Inventory inventory, CountDownLatch done) {
+    WriterTask(StripedInventory inventory, LongAdder[] ledger, CountDownLatch done) {
       this.inventory = inventory;
+      this.ledger = ledger;
       this.done = done;
     }
 
     @Override
     public void run() {
       try {
-        // choose a random SKU and a small delta (-3..+3, excluding 0)
-        String sku = SKUS[rnd.nextInt(SKUS.length)];
-        int delta = randomDelta();
-        inventory.applyDelta(sku, delta);
+        // one order = 1..3 lines, each a random SKU and a small delta (-3..+3, excluding 0)
+        StripedInventory.DeltaBatch order = inventory.newBatch(3);
+        int lines = 1 + rnd.nextInt(3);
+        for (int i = 0; i < lines; i++) {
+          int sku = rnd.nextInt(SKUS.length);
+          int delta = randomDelta(rnd);
+          order.add(SKUS[sku], delta);
+          ledger[sku].add(delta);
+        }
+        inventory.applyDeltas(order);
 
         // pretend there is brief waiting (e.g., downstream ack); this is cheap with virtual threads
         try {
@@ -221,23 +257,62 @@ public class CoffeeShop {
         done.countDown();
       }
     }
+  }
 
-    private int randomDelta() {
-      int d = rnd.nextInt(7) - 3; // -3..+3
-      if (d == 0) {
-        d = 1;          // avoid no-op
+  private static int randomDelta(Random rnd) {
+    int d = rnd.nextInt(7) - 3; // -3..+3
+    if (d == 0) {
+      d = 1;          // avoid no-op
+    }
+    return d;
+  }
+
+  private static final class DurableWriterTask implements Runnable {
+
+    private final StripedInventory inventory;
+    private final InventoryLog log;
+    private final LongAdder[] ledger;
+    private final CountDownLatch done;
+
+    DurableWriterTask(StripedInventory inventory, InventoryLog log, LongAdder[] ledger, CountDownLatch done) {
+      this.inventory = inventory;
+      this.log = log;
+      this.ledger = ledger;
+      this.done = done;
+    }
+
+    @Override
+    public void run() {
+      try {
+        Random rnd = new Random();
+        StripedInventory.DeltaBatch order = inventory.newBatch(3);
+        int lines = 1 + rnd.nextInt(3);
+        int[] skus = new int[lines];
+        int[] deltas = new int[lines];
+        for (int i = 0; i < lines; i++) {
+          skus[i] = rnd.nextInt(SKUS.length);
+          deltas[i] = randomDelta(rnd);
+          order.add(SKUS[skus[i]], deltas[i]);
+        }
+        // Blocks this virtual thread until the order is on disk; the carrier moves on meanwhile
+        log.commit(order);
+        for (int i = 0; i < lines; i++) {
+          ledger[skus[i]].add(deltas[i]);
+        }
+      } catch (IOException e) {
+        System.err.println("Order not committed: " + e.getMessage());
+      } finally {
+        done.countDown();
       }
-      return d;
     }
   }
 
   private static final class ReaderTask implements Runnable {
 
-    private static final String[] SKUS = {"COFFEE_BEANS", "GREEN_TEA", "CACAO", "CARDAMOM"};
-    private final Inventory inventory;
+    private final StripedInventory inventory;
     private final CountDownLatch done;
 
-    ReaderTask(Inventory inventory, CountDownLatch done) {
+    ReaderTask(StripedInventory inventory, CountDownLatch done) {
       this.inventory = inventory;
       this.done = done;
     }
@@ -245,14 +320,10 @@ public class CoffeeShop {
     @Override
     public void run() {
       try {
-        // compute a cheap “total on hand” over all SKUs
-        int total = 0;
-        int i;
-        for (i = 0; i < SKUS.length; i++) {
-          total += inventory.getCurrent(SKUS[i]);
-        }
+        // compute a cheap “total on hand” over all SKUs, from one coherent snapshot
+        long total = inventory.snapshot().totalCurrent();
         // touch the value so JIT keeps the reads
-        if (total == Integer.MIN_VALUE) {
+        if (total == Long.MIN_VALUE) {
           System.out.print("");
         }
       } finally {
@@ -0,0 +1,269 @@
+package com.example.training.virtualThreads;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+//@formatter:off
+/**
+ * One executor for mixed work: it watches how each kind of task behaves and routes it.
+ *
+ * - a task type is the task's class (one per lambda call site) or an explicit name
+ *   given to submit(type, task),
+ * - per type, the executor keeps a moving average of cpu time / wall time,
+ * - types that mostly wait (I/O, sleep, locks) run on virtual threads,
+ * - types that run hot go to a bounded pool of platform threads, one per core, where
+ *   the OS time-slices them instead of having them hold virtual thread carriers,
+ * - hysteresis: a type moves to the CPU pool above 60% cpu and back below 25%.
+ *
+ * ThreadMXBean reports no cpu time for virtual threads (-1), so measuring happens on
+ * platform threads: the runs of a new type until 8 were measured, and every 256th run after that,
+ * are probes on a small cached pool. Tasks in the CPU pool are measured on every run,
+ * so a type that starts blocking is moved back quickly.
+ *
+ * See ThreadsComparing1 (virtual wins for blocking) and ThreadsComparing2 (a core-sized
+ * pool wins for CPU work); "ThreadsComparing2 hybrid" runs a mix of both.
+ */
+//@formatter:on
+public final class HybridExecutor extends AbstractExecutorService {
+
+  enum Route {
+    VIRTUAL,
+    CPU
+  }
+
+  private static final int WARMUP_SAMPLES = 8;
+  private static final int REPROBE_EVERY = 256;
+  private static final int MAX_PROBES_PER_TYPE = 2;
+  private static final double TO_CPU = 0.60;
+  private static final double TO_VIRTUAL = 0.25;
+  private static final double ALPHA = 0.2;
+
+  private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+  private final boolean measurable;
+  private final Map<Object, Profile> profiles = new ConcurrentHashMap<>();
+
+  private final ExecutorService virtual = Executors.newThreadPerTaskExecutor(
+      Thread.ofVirtual().name("hybrid-io-", 0).factory());
+  private final ThreadPoolExecutor cpu;
+  private final ThreadPoolExecutor probes;
+
+  public HybridExecutor() {
+    this(Runtime.getRuntime().availableProcessors());
+  }
+
+  public HybridExecutor(int cpuThreads) {
+    cpu = new ThreadPoolExecutor(cpuThreads, cpuThreads, 0, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+        platformThreads("hybrid-cpu-"));
+    probes = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 10, TimeUnit.SECONDS, new SynchronousQueue<>(),
+        platformThreads("hybrid-probe-"));
+    boolean supported = threads.isCurrentThreadCpuTimeSupported();
+    if (supported && !threads.isThreadCpuTimeEnabled()) {
+      threads.setThreadCpuTimeEnabled(true);
+    }
+    measurable = supported;
+  }
+
+  /**
+   * Runs {@code task} as part of the named type, for tasks that share behaviour but not a class.
+   */
+  public <T> Future<T> submit(String type, Callable<T> task) {
+    TypedTask<T> future = new TypedTask<>(task, type);
+    execute(future);
+    return future;
+  }
+
+  @Override
+  public void execute(Runnable task) {
+    if (isShutdown()) {
+      throw new RejectedExecutionException("HybridExecutor is shut down");
+    }
+    Object type = task instanceof TypedTask<?> typed ? typed.type : task.getClass();
+    Profile profile = profiles.computeIfAbsent(type, Profile::new);
+    long run = profile.executions.getAndIncrement();
+
+    if (profile.route == Route.CPU) {
+      profile.cpuRuns.increment();
+      cpu.execute(() -> measure(profile, task));
+    } else if (measurable && (profile.samples < WARMUP_SAMPLES || run % REPROBE_EVERY == 0) && profile.tryStartProbe()) {
+      profile.probeRuns.increment();
+      probes.execute(() -> {
+        try {
+          measure(profile, task);
+        } finally {
+          profile.probesInFlight.decrementAndGet();
+        }
+      });
+    } else {
+      profile.virtualRuns.increment();
+      virtual.execute(task);
+    }
+  }
+
+  private void measure(Profile profile, Runnable task) {
+    long cpu0 = threads.getCurrentThreadCpuTime();
+    long wall0 = System.nanoTime();
+    try {
+      task.run();
+    } finally {
+      long wall = System.nanoTime() - wall0;
+      long cpuTime = threads.getCurrentThreadCpuTime() - cpu0;
+      if (cpu0 >= 0 && wall > 0) {
+        profile.record(Math.min(1.0, (double) cpuTime / wall));
+      }
+    }
+  }
+
+  // Keeps the task's own class as its type when it goes through submit()
+  @Override
+  protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+    return new TypedTask<>(callable, callable.getClass());
+  }
+
+  @Override
+  protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+    return new TypedTask<>(Executors.callable(runnable, value), runnable.getClass());
+  }
+
+  Route routeOf(Object type) {
+    Profile profile = profiles.get(type);
+    return profile == null ? Route.VIRTUAL : profile.route;
+  }
+
+  /**
+   * One line per task type: route, average cpu share and where its runs went.
+   */
+  public String stats() {
+    StringBuilder sb = new StringBuilder();
+    for (Profile p : profiles.values()) {
+      sb.append(String.format("%-60s %-7s cpu=%3.0f%% runs: virtual=%d cpu=%d probe=%d%n",
+          p.name(), p.route, p.cpuShare() * 100, p.virtualRuns.sum(), p.cpuRuns.sum(), p.probeRuns.sum()));
+    }
+    return sb.toString();
+  }
+
+  // ---------------------------------------------------------
+
+  @Override
+  public void shutdown() {
+    virtual.shutdown();
+    cpu.shutdown();
+    probes.shutdown();
+  }
+
+  @Override
+  public List<Runnable> shutdownNow() {
+    List<Runnable> pending = new ArrayList<>(cpu.shutdownNow());
+    pending.addAll(probes.shutdownNow());
+    pending.addAll(virtual.shutdownNow());
+    return pending;
+  }
+
+  @Override
+  public boolean isShutdown() {
+    return cpu.isShutdown();
+  }
+
+  @Override
+  public boolean isTerminated() {
+    return cpu.isTerminated() && probes.isTerminated() && virtual.isTerminated();
+  }
+
+  @Override
+  public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    for (ExecutorService executor : List.of(cpu, probes, virtual)) {
+      if (!executor.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static ThreadFactory platformThreads(String prefix) {
+    AtomicInteger counter = new AtomicInteger();
+    return r -> {
+      Thread t = new Thread(r, prefix + counter.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    };
+  }
+
+  // ---------------------------------------------------------
+
+  private static final class TypedTask<T> extends FutureTask<T> {
+
+    final Object type;
+
+    TypedTask(Callable<T> callable, Object type) {
+      super(callable);
+      this.type = type;
+    }
+  }
+
+  /**
+   * What was observed for one task type. The average is updated under the profile's monitor; the route is
+   * read without locking on every execute.
+   */
+  private static final class Profile {
+
+    private final Object type;
+    private final AtomicLong executions = new AtomicLong();
+    private final AtomicInteger probesInFlight = new AtomicInteger();
+    private final LongAdder virtualRuns = new LongAdder();
+    private final LongAdder cpuRuns = new LongAdder();
+    private final LongAdder probeRuns = new LongAdder();
+    private volatile Route route = Route.VIRTUAL;
+    private double cpuShare;
+    private volatile int samples;
+
+    Profile(Object type) {
+      this.type = type;
+    }
+
+    boolean tryStartProbe() {
+      if (probesInFlight.incrementAndGet() > MAX_PROBES_PER_TYPE) {
+        probesInFlight.decrementAndGet();
+        return false;
+      }
+      return true;
+    }
+
+    synchronized void record(double share) {
+      cpuShare = samples == 0 ? share : cpuShare + ALPHA * (share - cpuShare);
+      samples++;
+      if (route == Route.VIRTUAL && samples >= WARMUP_SAMPLES && cpuShare >= TO_CPU) {
+        route = Route.CPU;
+      } else if (route == Route.CPU && cpuShare <= TO_VIRTUAL) {
+        route = Route.VIRTUAL;
+      }
+    }
+
+    synchronized double cpuShare() {
+      return cpuShare;
+    }
+
+    String name() {
+      return type instanceof Class<?> c ? c.getName() : type.toString();
+    }
+  }
+}
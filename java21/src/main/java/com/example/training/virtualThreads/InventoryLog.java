@@ -0,0 +1,620 @@
+package com.example.training.virtualThreads;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+//@formatter:off
+/**
+ * Write-ahead log for {@link StripedInventory}: every registration and every DeltaBatch is appended to a
+ * memory-mapped segment before it is applied, and a writer is acknowledged only once its record is on disk.
+ *
+ * Group commit:
+ *  - Appending only copies the record into the mapped segment under a short lock (no system call).
+ *  - One flusher thread forces everything appended so far with a single msync/fsync, then wakes every writer
+ *    whose LSN is now durable. While a force is running, new records pile up and share the next one, so
+ *    10_000 virtual threads committing at once cost a handful of forces, not 10_000.
+ *
+ * On disk (one directory):
+ *  - wal-<first LSN>.log: fixed-size mapped segments of records [int length][int crc32][long lsn][byte type][body];
+ *    a zero length marks the end of a segment, a bad CRC a torn tail after a crash.
+ *  - checkpoint-<LSN>.ckp: the compacted state (names, initial, delta per SKU) covering every record up to LSN.
+ *    Written to a temp file, fsync-ed and renamed atomically; older checkpoints and segments it covers are deleted.
+ *
+ * Recovery ({@link #open}): load the newest checkpoint, replay the records after it, stop at a torn record at
+ * the end of the last segment, overwrite it with a zero length (forced), then continue in a fresh segment.
+ * Sealing the tear first means a later recovery reads through it into the fresh segments. A missing LSN or a
+ * tear in an older segment is damage, not a crash: open fails and leaves the files alone.
+ */
+//@formatter:on
+final class InventoryLog implements AutoCloseable {
+
+  private static final byte TYPE_REGISTER = 1;
+  private static final byte TYPE_BATCH = 2;
+  private static final int RECORD_HEADER = 4 + 4;
+  private static final int MAX_BODY = 64 * 1024;
+  private static final int CHECKPOINT_MAGIC = 0x494E5643; // "INVC"
+  private static final String CHECKPOINT_TMP = "checkpoint.tmp";
+  private static final boolean WINDOWS = System.getProperty("os.name").startsWith("Windows");
+
+  private final Path dir;
+  private final StripedInventory inventory;
+  private final int segmentSize;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition appended = lock.newCondition();
+  private final Condition flushed = lock.newCondition();
+  private final ByteBuffer scratch;
+  private final CRC32 crc = new CRC32();
+  private final Thread flusher;
+  private final ReentrantLock checkpointLock = new ReentrantLock();
+
+  // Guarded by lock
+  private Segment segment;
+  private long lastLsn;
+  private long durableLsn;
+  private int flushedPosition;
+  private IOException failure;
+  private boolean closed;
+  private long forces;
+
+  private final CountDownLatch stopCheckpoints = new CountDownLatch(1);
+  private volatile Thread checkpointer;
+
+  private InventoryLog(Path dir, StripedInventory inventory, int segmentSize) {
+    this.dir = dir;
+    this.inventory = inventory;
+    this.segmentSize = segmentSize;
+    this.scratch = ByteBuffer.allocate(MAX_BODY);
+    this.flusher = new Thread(this::flushLoop, "inventory-log-flusher");
+    this.flusher.setDaemon(true);
+  }
+
+  /**
+   * Recovers the state stored in {@code dir} into an empty inventory and opens the log for appending.
+   *
+   * @param segmentSize bytes per mapped segment
+   */
+  static InventoryLog open(Path dir, StripedInventory inventory, int segmentSize) throws IOException {
+    if (segmentSize < 2 * MAX_BODY) {
+      throw new IllegalArgumentException("Segments must hold at least " + 2 * MAX_BODY + " bytes");
+    }
+    Files.createDirectories(dir);
+    InventoryLog log = new InventoryLog(dir, inventory, segmentSize);
+    log.recover();
+    log.segment = Segment.create(dir, log.lastLsn + 1, segmentSize);
+    log.durableLsn = log.lastLsn;
+    log.flusher.start();
+    return log;
+  }
+
+  // ---------------- appending ----------------
+
+  /**
+   * Logs and registers a SKU (a no-op if it already exists, for example after recovery).
+   */
+  int register(String sku, long initialQty) throws IOException {
+    int slot = inventory.slotOf(sku);
+    if (slot >= 0) {
+      return slot;
+    }
+    byte[] name = sku.getBytes(StandardCharsets.UTF_8);
+    if (name.length > Short.MAX_VALUE) {
+      throw new IllegalArgumentException("SKU name too long");
+    }
+    long lsn;
+    lock.lock();
+    try {
+      scratch.clear();
+      scratch.putLong(initialQty).putShort((short) name.length).put(name);
+      lsn = append(TYPE_REGISTER);
+      slot = inventory.putInitial(sku, initialQty);
+    } finally {
+      lock.unlock();
+    }
+    awaitDurable(lsn);
+    return slot;
+  }
+
+  /**
+   * Appends the batch and applies it to the inventory; returns without waiting for the disk.
+   * Memory is updated in LSN order under the log lock, so a checkpoint taken under the same lock is exact.
+   *
+   * @return the LSN to pass to {@link #awaitDurable(long)}
+   */
+  long append(StripedInventory.DeltaBatch batch) throws IOException {
+    if (4 + batch.size() * 12 > MAX_BODY) {
+      throw new IOException("Batch of " + batch.size() + " lines exceeds the " + MAX_BODY + " byte record limit");
+    }
+    lock.lock();
+    try {
+      scratch.clear();
+      scratch.putInt(batch.size());
+      for (int i = 0; i < batch.size(); i++) {
+        scratch.putInt(batch.slot(i)).putLong(batch.delta(i));
+      }
+      long lsn = append(TYPE_BATCH);
+      inventory.applyDeltas(batch);
+      return lsn;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Appends the batch and blocks until it is durable. Cheap for virtual threads: they park on a Condition.
+   */
+  void commit(StripedInventory.DeltaBatch batch) throws IOException {
+    awaitDurable(append(batch));
+  }
+
+  void awaitDurable(long lsn) throws IOException {
+    lock.lock();
+    try {
+      while (durableLsn < lsn) {
+        if (failure != null) {
+          throw failure;
+        }
+        if (closed) {
+          throw new IOException("Log closed before LSN " + lsn + " became durable");
+        }
+        flushed.awaitUninterruptibly();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Writes the record body in {@code scratch} into the current segment. Caller holds the lock.
+   */
+  private long append(byte type) throws IOException {
+    if (failure != null) {
+      throw failure;
+    }
+    if (closed) {
+      throw new IOException("Log is closed");
+    }
+    scratch.flip();
+    int length = 8 + 1 + scratch.remaining();
+    // Keep room for the zero length that terminates a segment
+    if (segment.buffer.remaining() < RECORD_HEADER + length + 4) {
+      rollSegment();
+    }
+    long lsn = ++lastLsn;
+    MappedByteBuffer out = segment.buffer;
+    int start = out.position();
+    out.position(start + RECORD_HEADER);
+    out.putLong(lsn).put(type).put(scratch);
+
+    ByteBuffer body = out.duplicate();
+    body.position(start + RECORD_HEADER).limit(out.position());
+    crc.reset();
+    crc.update(body);
+    out.putInt(start, length).putInt(start + 4, (int) crc.getValue());
+    appended.signal();
+    return lsn;
+  }
+
+  /**
+   * Forces the full segment and continues in a new one. Caller holds the lock.
+   */
+  private void rollSegment() throws IOException {
+    segment.buffer.force();
+    segment.close();
+    durableLsn = lastLsn;
+    flushed.signalAll();
+    segment = Segment.create(dir, lastLsn + 1, segmentSize);
+    flushedPosition = 0;
+  }
+
+  private void flushLoop() {
+    while (true) {
+      Segment target;
+      int from;
+      int to;
+      long lsn;
+      lock.lock();
+      try {
+        while (!closed && durableLsn == lastLsn) {
+          appended.awaitUninterruptibly();
+        }
+        if (durableLsn == lastLsn) {
+          return;
+        }
+        target = segment;
+        from = flushedPosition;
+        to = segment.buffer.position();
+        lsn = lastLsn;
+      } finally {
+        lock.unlock();
+      }
+
+      IOException error = null;
+      try {
+        // Appenders keep writing past 'to' while this runs; they will share the next force
+        target.buffer.force(from, to - from);
+      } catch (RuntimeException e) {
+        error = new IOException("Force failed", e);
+      }
+
+      lock.lock();
+      try {
+        if (error != null) {
+          failure = error;
+        } else {
+          forces++;
+          durableLsn = Math.max(durableLsn, lsn);
+          if (segment == target) {
+            flushedPosition = Math.max(flushedPosition, to);
+          }
+        }
+        flushed.signalAll();
+        if (error != null) {
+          return;
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  // ---------------- checkpoints ----------------
+
+  /**
+   * Writes the current state as a checkpoint and deletes the log segments and checkpoints it makes redundant.
+   *
+   * @return the LSN covered by the checkpoint
+   */
+  long checkpoint() throws IOException {
+    checkpointLock.lock();
+    try {
+      StripedInventory.Snapshot snapshot;
+      long lsn;
+      lock.lock();
+      try {
+        // Under the log lock memory holds exactly the records up to lastLsn
+        snapshot = inventory.snapshot();
+        lsn = lastLsn;
+      } finally {
+        lock.unlock();
+      }
+      // Never let a checkpoint get ahead of the log it replaces
+      awaitDurable(lsn);
+
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(bytes);
+      out.writeInt(CHECKPOINT_MAGIC);
+      out.writeLong(lsn);
+      out.writeInt(snapshot.size());
+      for (int k = 0; k < snapshot.size(); k++) {
+        out.writeUTF(snapshot.name(k));
+        out.writeLong(snapshot.initial(k));
+        out.writeLong(snapshot.delta(k));
+      }
+      CRC32 sum = new CRC32();
+      sum.update(bytes.toByteArray());
+      out.writeLong(sum.getValue());
+
+      Path tmp = dir.resolve(CHECKPOINT_TMP);
+      try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+          StandardOpenOption.TRUNCATE_EXISTING)) {
+        ByteBuffer data = ByteBuffer.wrap(bytes.toByteArray());
+        while (data.hasRemaining()) {
+          channel.write(data);
+        }
+        channel.force(true);
+      }
+      Files.move(tmp, dir.resolve(String.format("checkpoint-%020d.ckp", lsn)), StandardCopyOption.ATOMIC_MOVE);
+      // The rename must be on disk before the segments it replaces are gone
+      forceDirectory(dir);
+      deleteCoveredFiles(lsn);
+      return lsn;
+    } finally {
+      checkpointLock.unlock();
+    }
+  }
+
+  /**
+   * Starts a daemon thread that checkpoints at a fixed interval until the log is closed. It is stopped with a
+   * latch, not an interrupt: an interrupt in the middle of a checkpoint write closes the channel
+   * (ClosedByInterruptException) and leaves a half-written temp file behind.
+   */
+  void scheduleCheckpoints(Duration interval) {
+    Thread t = new Thread(() -> {
+      try {
+        while (!stopCheckpoints.await(interval.toNanos(), TimeUnit.NANOSECONDS)) {
+          checkpoint();
+        }
+      } catch (InterruptedException e) {
+        // nobody interrupts this thread
+      } catch (IOException e) {
+        System.err.println("Checkpoint failed: " + e);
+      }
+    }, "inventory-log-checkpointer");
+    t.setDaemon(true);
+    checkpointer = t;
+    t.start();
+  }
+
+  private void deleteCoveredFiles(long checkpointLsn) throws IOException {
+    List<Path> segments = list("wal-");
+    long currentFirst;
+    lock.lock();
+    try {
+      currentFirst = segment.firstLsn;
+    } finally {
+      lock.unlock();
+    }
+    for (int i = 0; i < segments.size(); i++) {
+      long first = lsnOf(segments.get(i));
+      long nextFirst = i + 1 < segments.size() ? lsnOf(segments.get(i + 1)) : Long.MAX_VALUE;
+      // A segment can go once every record in it is covered, and never the one being written
+      if (first < currentFirst && nextFirst - 1 <= checkpointLsn) {
+        Files.deleteIfExists(segments.get(i));
+      }
+    }
+    for (Path p : list("checkpoint-")) {
+      if (lsnOf(p) < checkpointLsn) {
+        Files.deleteIfExists(p);
+      }
+    }
+  }
+
+  // ---------------- recovery ----------------
+
+  private void recover() throws IOException {
+    // A checkpoint that was never renamed into place is incomplete, whatever it contains
+    Files.deleteIfExists(dir.resolve(CHECKPOINT_TMP));
+    long checkpointLsn = 0;
+    List<Path> checkpoints = list("checkpoint-");
+    for (int i = checkpoints.size() - 1; i >= 0; i--) {
+      long lsn = loadCheckpoint(checkpoints.get(i));
+      if (lsn >= 0) {
+        checkpointLsn = lsn;
+        break;
+      }
+      System.err.println("Ignoring unreadable checkpoint " + checkpoints.get(i).getFileName());
+    }
+    lastLsn = checkpointLsn;
+
+    long replayed = 0;
+    List<Path> segments = list("wal-");
+    for (int f = 0; f < segments.size(); f++) {
+      Path file = segments.get(f);
+      int tear = -1;
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+        MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        while (in.remaining() >= RECORD_HEADER) {
+          int recordStart = in.position();
+          int length = in.getInt();
+          if (length == 0) {
+            break; // unused tail of the segment
+          }
+          int expected = in.getInt();
+          ByteBuffer body = length >= 9 && length <= in.remaining() ? in.slice(in.position(), length) : null;
+          if (body != null) {
+            crc.reset();
+            crc.update(body.duplicate());
+          }
+          if (body == null || (int) crc.getValue() != expected) {
+            tear = recordStart;
+            break;
+          }
+          in.position(in.position() + length);
+          long lsn = body.getLong();
+          if (lsn <= lastLsn) {
+            continue; // already in the checkpoint
+          }
+          if (lsn != lastLsn + 1) {
+            // Not a torn write: a checkpoint or segment is missing. Leave every file as it is for inspection
+            throw new IOException("Missing LSN " + (lastLsn + 1) + " before " + file.getFileName()
+                + " (next record has LSN " + lsn + "); refusing to recover");
+          }
+          replay(body.get(), body);
+          lastLsn = lsn;
+          replayed++;
+        }
+      }
+      if (tear >= 0) {
+        // Only the segment being written at the crash can end torn: a full segment is forced before the next
+        // one is created, so a tear with newer segments after it is damage, not an unfinished append
+        if (f < segments.size() - 1) {
+          throw new IOException("Torn record in " + file.getFileName() + " followed by newer segments; refusing to "
+              + "recover");
+        }
+        System.err.println("Torn tail in " + file.getFileName() + ", sealing it there");
+        sealAt(file, tear);
+      }
+    }
+    System.out.println("Recovered checkpoint LSN " + checkpointLsn + " + " + replayed + " log records, last LSN " + lastLsn);
+  }
+
+  /**
+   * Makes a tear permanent before anything is written after it: a zero length at the torn record ends the
+   * segment there, so the next recovery reads past it into the segments created from now on instead of
+   * stopping at the same tear and discarding records acknowledged in between.
+   */
+  private static void sealAt(Path file, int position) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      ByteBuffer zero = ByteBuffer.allocate(4);
+      while (zero.hasRemaining()) {
+        channel.write(zero, position + zero.position());
+      }
+      channel.force(true);
+    }
+  }
+
+  private void replay(byte type, ByteBuffer body) {
+    if (type == TYPE_REGISTER) {
+      long initialQty = body.getLong();
+      byte[] name = new byte[body.getShort()];
+      body.get(name);
+      inventory.putInitial(new String(name, StandardCharsets.UTF_8), initialQty);
+    } else if (type == TYPE_BATCH) {
+      int lines = body.getInt();
+      StripedInventory.DeltaBatch batch = inventory.newBatch(lines);
+      for (int i = 0; i < lines; i++) {
+        batch.add(body.getInt(), body.getLong());
+      }
+      inventory.applyDeltas(batch);
+    }
+  }
+
+  /**
+   * @return the checkpoint LSN, or -1 if the file is damaged
+   */
+  private long loadCheckpoint(Path file) throws IOException {
+    byte[] bytes = Files.readAllBytes(file);
+    if (bytes.length < 8) {
+      return -1;
+    }
+    CRC32 sum = new CRC32();
+    sum.update(bytes, 0, bytes.length - 8);
+    if (ByteBuffer.wrap(bytes, bytes.length - 8, 8).getLong() != sum.getValue()) {
+      return -1;
+    }
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+    if (in.readInt() != CHECKPOINT_MAGIC) {
+      return -1;
+    }
+    long lsn = in.readLong();
+    int count = in.readInt();
+    for (int k = 0; k < count; k++) {
+      int slot = inventory.putInitial(in.readUTF(), in.readLong());
+      inventory.applyDelta(slot, in.readLong());
+    }
+    return lsn;
+  }
+
+  private List<Path> list(String prefix) throws IOException {
+    try (Stream<Path> files = Files.list(dir)) {
+      // Names embed zero-padded LSNs, so lexical order is LSN order
+      return files.filter(p -> p.getFileName().toString().startsWith(prefix)).sorted().toList();
+    }
+  }
+
+  /**
+   * Makes created, renamed and deleted entries of {@code dir} durable; fsync on a file does not cover its name.
+   * Windows cannot open a directory as a channel (NTFS journals the metadata), so it is skipped there.
+   */
+  private static void forceDirectory(Path dir) throws IOException {
+    if (WINDOWS) {
+      return;
+    }
+    try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+      channel.force(true);
+    }
+  }
+
+  private static long lsnOf(Path file) {
+    String name = file.getFileName().toString();
+    return Long.parseLong(name.substring(name.indexOf('-') + 1, name.indexOf('.')));
+  }
+
+  // ---------------- lifecycle ----------------
+
+  /**
+   * @return number of forces so far; records / forces is the group commit factor
+   */
+  long forces() {
+    lock.lock();
+    try {
+      return forces;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  long lastLsn() {
+    lock.lock();
+    try {
+      return lastLsn;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    // Let a running checkpoint finish while the log is still open: it must not rename or delete files under
+    // the feet of a new instance recovering the same directory
+    stopCheckpoints.countDown();
+    Thread t = checkpointer;
+    if (t != null) {
+      try {
+        t.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    lock.lock();
+    try {
+      closed = true;
+      appended.signal();
+    } finally {
+      lock.unlock();
+    }
+    try {
+      flusher.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    lock.lock();
+    try {
+      segment.close();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * One mapped log file. The mapping stays valid after the channel is closed.
+   */
+  private static final class Segment {
+
+    private final long firstLsn;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+
+    private Segment(long firstLsn, FileChannel channel, MappedByteBuffer buffer) {
+      this.firstLsn = firstLsn;
+      this.channel = channel;
+      this.buffer = buffer;
+    }
+
+    static Segment create(Path dir, long firstLsn, int size) throws IOException {
+      Path file = dir.resolve(String.format("wal-%020d.log", firstLsn));
+      FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+          StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+      // Extending the file up front keeps metadata updates out of the per-commit force: the size and the
+      // directory entry are made durable once, here
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+      channel.force(true);
+      forceDirectory(dir);
+      return new Segment(firstLsn, channel, buffer);
+    }
+
+    void close() throws IOException {
+      channel.close();
+    }
+  }
+}
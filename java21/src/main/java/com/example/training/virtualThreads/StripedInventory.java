@@ -0,0 +1,411 @@
+package com.example.training.virtualThreads;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+//@formatter:off
+/**
+ * Inventory engine with per-SKU primitive slots in one striped {@code long[]}.
+ *
+ * Layout: the array is split into stripes, each stripe padded to whole cache lines:
+ *   [ version | delta(sku0) | delta(sku1) | ... | padding ] [ version | ... ] ...
+ *  - Only deltas are stored; current = initial + sum of deltas over all stripes, so "current" and
+ *    "deltas" can never disagree (they are the same number).
+ *  - A writer picks a stripe from its thread id, locks it by CAS-ing the stripe version from even to odd,
+ *    adds a whole batch in place and publishes it by setting the version back to even (+2).
+ *    If the stripe is busy it probes the next one instead of waiting, like LongAdder cells do.
+ *    No synchronized blocks, so virtual threads never pin.
+ *  - A reader copies each stripe seqlock-style (version before == version after and even), then re-checks
+ *    every stripe version (double collect): if none moved, all the copies held at one instant, so the
+ *    snapshot is a consistent cut across stripes, not only per stripe. A batch lives in exactly one stripe,
+ *    so every snapshot contains each batch either completely or not at all, and contains every batch that
+ *    finished before an included one. After OPTIMISTIC_PASSES failed passes the reader locks every stripe
+ *    for one pass instead: a snapshot costs at most OPTIMISTIC_PASSES + 1 passes, writers wait at most one.
+ *  - The sum of all stripe versions / 2 is the epoch (number of committed batches). If no stripe version
+ *    moved since the last snapshot, that snapshot is returned as is: idle dashboards cost almost nothing.
+ *
+ * SKUs are registered up front (up to a fixed capacity); the name -> slot lookup is the only map left.
+ */
+//@formatter:on
+final class StripedInventory {
+
+  private static final VarHandle CELLS = MethodHandles.arrayElementVarHandle(long[].class);
+  private static final int LONGS_PER_LINE = 8;
+  // Double-collect passes a snapshot tries before it locks every stripe for one pass
+  private static final int OPTIMISTIC_PASSES = 4;
+
+  private final long[] cells;
+  private final int stripes;
+  private final int stride;
+  private final int capacity;
+
+  private final ConcurrentHashMap<String, Integer> index = new ConcurrentHashMap<>();
+  private final ReentrantLock registration = new ReentrantLock();
+  private final String[] names;
+  private final long[] initial;
+  private volatile int skuCount;
+
+  private volatile Snapshot lastSnapshot;
+
+  /**
+   * @param capacity maximum number of SKUs
+   * @param stripes  number of stripes, rounded up to a power of two; about 2x the cores writing concurrently
+   */
+  StripedInventory(int capacity, int stripes) {
+    this.capacity = capacity;
+    this.stripes = Integer.highestOneBit(Math.max(2, stripes) - 1) << 1;
+    // slot 0 = version, then one slot per SKU, rounded up to whole lines plus one line of padding
+    this.stride = ((1 + capacity + LONGS_PER_LINE - 1) / LONGS_PER_LINE + 1) * LONGS_PER_LINE;
+    this.cells = new long[this.stripes * stride];
+    this.names = new String[capacity];
+    this.initial = new long[capacity];
+  }
+
+  StripedInventory(int capacity) {
+    this(capacity, 2 * Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Registers a SKU with its starting quantity. Not meant to race with writers of the same SKU.
+   *
+   * @return the slot of the SKU, usable with {@link #applyDelta(int, long)}
+   */
+  int putInitial(String sku, long qty) {
+    registration.lock();
+    try {
+      Integer existing = index.get(sku);
+      if (existing != null) {
+        return existing;
+      }
+      int slot = skuCount;
+      if (slot == capacity) {
+        throw new IllegalStateException("Inventory is full: " + capacity + " SKUs");
+      }
+      names[slot] = sku;
+      initial[slot] = qty;
+      skuCount = slot + 1; // volatile write publishes names/initial
+      index.put(sku, slot);
+      lastSnapshot = null;
+      return slot;
+    } finally {
+      registration.unlock();
+    }
+  }
+
+  /**
+   * @return the slot of the SKU, or -1 if it is unknown
+   */
+  int slotOf(String sku) {
+    Integer slot = index.get(sku);
+    return slot == null ? -1 : slot;
+  }
+
+  void applyDelta(String sku, long delta) {
+    int slot = slotOf(sku);
+    if (slot >= 0) {
+      applyDelta(slot, delta);
+    }
+  }
+
+  void applyDelta(int slot, long delta) {
+    int base = lockStripe();
+    int i = base + 1 + slot;
+    CELLS.setOpaque(cells, i, (long) CELLS.getOpaque(cells, i) + delta);
+    unlockStripe(base);
+  }
+
+  /**
+   * Applies every line of the batch atomically with respect to {@link #snapshot()}.
+   */
+  void applyDeltas(DeltaBatch batch) {
+    int n = batch.size();
+    if (n == 0) {
+      return;
+    }
+    int base = lockStripe() + 1;
+    for (int k = 0; k < n; k++) {
+      int i = base + batch.slots[k];
+      CELLS.setOpaque(cells, i, (long) CELLS.getOpaque(cells, i) + batch.deltas[k]);
+    }
+    unlockStripe(base - 1);
+  }
+
+  long getCurrent(String sku) {
+    int slot = slotOf(sku);
+    return slot < 0 ? 0 : snapshot().current(slot);
+  }
+
+  /**
+   * @return a consistent view of all SKUs; shared between callers, do not modify
+   */
+  Snapshot snapshot() {
+    int n = skuCount;
+    Snapshot last = lastSnapshot;
+    if (last != null && last.names.length == n && unchanged(last.versions)) {
+      return last;
+    }
+
+    long[] versions = new long[stripes];
+    long[] deltas = new long[n];
+    long[] stripe = new long[n];
+    boolean consistent = false;
+    for (int pass = 0; pass < OPTIMISTIC_PASSES && !consistent; pass++) {
+      Arrays.fill(deltas, 0);
+      for (int s = 0; s < stripes; s++) {
+        versions[s] = readStripe(s, stripe, n);
+        for (int k = 0; k < n; k++) {
+          deltas[k] += stripe[k];
+        }
+      }
+      // Double collect: every stripe was stable while it was read and none has moved since, so all of them
+      // held these values at the same instant (when this check started)
+      consistent = unchanged(versions);
+    }
+    if (!consistent) {
+      collectLocked(versions, deltas, stripe, n);
+    }
+    long epoch = 0;
+    for (int s = 0; s < stripes; s++) {
+      epoch += versions[s] >>> 1;
+    }
+
+    String[] snapshotNames = new String[n];
+    System.arraycopy(names, 0, snapshotNames, 0, n);
+    long[] snapshotInitial = new long[n];
+    System.arraycopy(initial, 0, snapshotInitial, 0, n);
+    Snapshot snapshot = new Snapshot(epoch, versions, snapshotNames, snapshotInitial, deltas);
+    lastSnapshot = snapshot;
+    return snapshot;
+  }
+
+  /**
+   * Copies one stripe seqlock-style into {@code stripe}.
+   *
+   * @return the (even) version the copy belongs to
+   */
+  private long readStripe(int s, long[] stripe, int n) {
+    int base = s * stride;
+    while (true) {
+      long version = (long) CELLS.getAcquire(cells, base);
+      if ((version & 1) != 0) {
+        Thread.onSpinWait();
+        continue;
+      }
+      for (int k = 0; k < n; k++) {
+        stripe[k] = (long) CELLS.getOpaque(cells, base + 1 + k);
+      }
+      VarHandle.loadLoadFence();
+      if ((long) CELLS.getOpaque(cells, base) == version) {
+        return version;
+      }
+    }
+  }
+
+  /**
+   * Fallback when writers keep moving stripes during every optimistic pass: locks every stripe in turn (writers
+   * probe the other stripes, then yield until this pass ends), so at the last lock all stripes are frozen at
+   * the values read. The versions are restored on unlock because nothing was written: the epoch does not move.
+   */
+  private void collectLocked(long[] versions, long[] deltas, long[] stripe, int n) {
+    Arrays.fill(deltas, 0);
+    for (int s = 0; s < stripes; s++) {
+      int base = s * stride;
+      long version;
+      while (true) {
+        version = (long) CELLS.getOpaque(cells, base);
+        if ((version & 1) == 0 && CELLS.compareAndSet(cells, base, version, version + 1)) {
+          break;
+        }
+        Thread.onSpinWait();
+      }
+      versions[s] = version;
+      for (int k = 0; k < n; k++) {
+        deltas[k] += (long) CELLS.getOpaque(cells, base + 1 + k);
+      }
+    }
+    for (int s = 0; s < stripes; s++) {
+      CELLS.setRelease(cells, s * stride, versions[s]);
+    }
+  }
+
+  DeltaBatch newBatch(int maxLines) {
+    return new DeltaBatch(this, maxLines);
+  }
+
+  // ---------------- stripe locking ----------------
+
+  /**
+   * @return the base index of a stripe now owned by the caller
+   */
+  private int lockStripe() {
+    int mask = stripes - 1;
+    int s = probe() & mask;
+    while (true) {
+      for (int tries = 0; tries < stripes; tries++) {
+        int base = s * stride;
+        long version = (long) CELLS.getOpaque(cells, base);
+        if ((version & 1) == 0 && CELLS.compareAndSet(cells, base, version, version + 1)) {
+          return base;
+        }
+        s = (s + 1) & mask;
+      }
+      // Every stripe is busy: more writers on CPU than stripes, so yield instead of burning the core
+      Thread.yield();
+    }
+  }
+
+  private void unlockStripe(int base) {
+    CELLS.setRelease(cells, base, (long) CELLS.getOpaque(cells, base) + 1);
+  }
+
+  private boolean unchanged(long[] versions) {
+    for (int s = 0; s < stripes; s++) {
+      if ((long) CELLS.getAcquire(cells, s * stride) != versions[s]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int probe() {
+    // Fibonacci hashing spreads consecutive thread ids over the stripes
+    long id = Thread.currentThread().threadId();
+    return (int) ((id * 0x9E3779B97F4A7C15L) >>> 40);
+  }
+
+  // ---------------- batch and snapshot ----------------
+
+  /**
+   * Reusable list of (SKU slot, delta) lines applied in one step by {@link #applyDeltas(DeltaBatch)}.
+   * Not thread-safe: one batch per writer.
+   */
+  static final class DeltaBatch {
+
+    private final StripedInventory inventory;
+    private final int[] slots;
+    private final long[] deltas;
+    private int size;
+
+    private DeltaBatch(StripedInventory inventory, int maxLines) {
+      this.inventory = inventory;
+      this.slots = new int[maxLines];
+      this.deltas = new long[maxLines];
+    }
+
+    DeltaBatch add(String sku, long delta) {
+      int slot = inventory.slotOf(sku);
+      if (slot < 0) {
+        throw new IllegalArgumentException("Unknown SKU: " + sku);
+      }
+      return add(slot, delta);
+    }
+
+    DeltaBatch add(int slot, long delta) {
+      if (size == slots.length) {
+        throw new IllegalStateException("Batch is full: " + size + " lines");
+      }
+      slots[size] = slot;
+      deltas[size] = delta;
+      size++;
+      return this;
+    }
+
+    int size() {
+      return size;
+    }
+
+    int slot(int line) {
+      return slots[line];
+    }
+
+    long delta(int line) {
+      return deltas[line];
+    }
+
+    void clear() {
+      size = 0;
+    }
+  }
+
+  /**
+   * Immutable, coherent view of the inventory at one epoch.
+   */
+  static final class Snapshot {
+
+    private final long epoch;
+    private final long[] versions;
+    private final String[] names;
+    private final long[] initial;
+    private final long[] deltas;
+
+    private Snapshot(long epoch, long[] versions, String[] names, long[] initial, long[] deltas) {
+      this.epoch = epoch;
+      this.versions = versions;
+      this.names = names;
+      this.initial = initial;
+      this.deltas = deltas;
+    }
+
+    /**
+     * @return number of batches (single deltas included) committed before this snapshot
+     */
+    long epoch() {
+      return epoch;
+    }
+
+    int size() {
+      return names.length;
+    }
+
+    String name(int slot) {
+      return names[slot];
+    }
+
+    long initial(int slot) {
+      return initial[slot];
+    }
+
+    long delta(int slot) {
+      return deltas[slot];
+    }
+
+    long current(int slot) {
+      return initial[slot] + deltas[slot];
+    }
+
+    long initial(String sku) {
+      int slot = slotOf(sku);
+      return slot < 0 ? 0 : initial(slot);
+    }
+
+    long delta(String sku) {
+      int slot = slotOf(sku);
+      return slot < 0 ? 0 : delta(slot);
+    }
+
+    long current(String sku) {
+      int slot = slotOf(sku);
+      return slot < 0 ? 0 : current(slot);
+    }
+
+    long totalCurrent() {
+      long total = 0;
+      for (int k = 0; k < names.length; k++) {
+        total += initial[k] + deltas[k];
+      }
+      return total;
+    }
+
+    private int slotOf(String sku) {
+      for (int k = 0; k < names.length; k++) {
+        if (names[k].equals(sku)) {
+          return k;
+        }
+      }
+      return -1;
+    }
+  }
+}
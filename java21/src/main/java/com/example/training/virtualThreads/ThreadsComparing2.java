@@ -1,5 +1,6 @@
 package com.example.training.virtualThreads;
 
+import java.util.Arrays;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
@@ -20,6 +21,10 @@ import java.util.concurrent.atomic.AtomicLong;
 public class ThreadsComparing2 {
 
   public static void main(String[] args) throws Exception {
+    if (args.length > 0 && args[0].equals("hybrid")) {
+      runMixed();
+      return;
+    }
     int cores = Runtime.getRuntime().availableProcessors();
     int tasks = 100_000;
 
@@ -59,6 +64,65 @@ public class ThreadsComparing2 {
     }
   }
 
+  /**
+   * Blocking and CPU tasks submitted together to one executor: a core-sized platform pool, virtual threads, and
+   * {@link HybridExecutor}. Reports how long the blocking tasks waited end to end and when the CPU work finished.
+   */
+  private static void runMixed() throws Exception {
+    int cores = Runtime.getRuntime().availableProcessors();
+    System.out.println("Cores: " + cores + " | 400 blocking tasks (20 ms sleep) + 400 CPU tasks");
+    runMixed("platform(cores)", Executors.newFixedThreadPool(cores));
+    runMixed("virtual", Executors.newVirtualThreadPerTaskExecutor());
+    HybridExecutor hybrid = new HybridExecutor();
+    runMixed("hybrid (learning)", hybrid);
+    // Same instance again: the task types are classified by now
+    runMixed("hybrid (warm)", hybrid);
+    System.out.print(hybrid.stats());
+    hybrid.shutdown();
+  }
+
+  private static void runMixed(String label, ExecutorService executor) throws Exception {
+    int tasks = 400;
+    long[] ioLatencies = new long[tasks];
+    CountDownLatch ioDone = new CountDownLatch(tasks);
+    CountDownLatch cpuDone = new CountDownLatch(tasks);
+    AtomicLong sink = new AtomicLong();
+
+    long t0 = System.nanoTime();
+    for (int i = 0; i < tasks; i++) {
+      int index = i;
+      long submitted = System.nanoTime();
+      executor.submit(() -> {
+        try {
+          Thread.sleep(20);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        ioLatencies[index] = System.nanoTime() - submitted;
+        ioDone.countDown();
+      });
+      executor.submit(() -> {
+        long sum = 0;
+        for (int j = 0; j < 200_000; j++) {
+          sum += spinFib(28 + (j & 7));
+        }
+        sink.addAndGet(sum);
+        cpuDone.countDown();
+      });
+    }
+    cpuDone.await();
+    long cpuMs = (System.nanoTime() - t0) / 1_000_000;
+    ioDone.await();
+    long totalMs = (System.nanoTime() - t0) / 1_000_000;
+
+    Arrays.sort(ioLatencies);
+    System.out.printf("%-18s total %5d ms | CPU work done at %5d ms | blocking latency p50 %5d ms, p99 %5d ms%n",
+        label, totalMs, cpuMs, ioLatencies[tasks / 2] / 1_000_000, ioLatencies[tasks * 99 / 100] / 1_000_000);
+    if (!(executor instanceof HybridExecutor)) {
+      executor.shutdown();
+    }
+  }
+
   // CPU-bound toy
   private static long spinFib(int n) {
     long a = 0, b = 1;
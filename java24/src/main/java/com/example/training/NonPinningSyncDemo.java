@@ -1,9 +1,13 @@
 package com.example.training;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.RejectedExecutionException;
@@ -30,11 +34,17 @@ import java.util.concurrent.locks.ReentrantLock;
  *   - No contention: each task uses its own monitor/lock; we measure pinning, not locking.
  *   - Tweak 'tasks', 'sleepsPerTask', 'sleepMillis' to amplify differences.
  *   - Optionally run with: -Djdk.virtualThreadScheduler.parallelism=4
+ *   - Run with "monitor [csvDir]" to see why: each variant runs under a
+ *     VirtualThreadMonitor (pinned time per call site, submit failures, carrier CPU).
  */
 //@formatter:on
 public class NonPinningSyncDemo {
 
-  public static void main(String[] args) {
+  public static void main(String[] args) throws IOException {
+    if (args.length > 0 && args[0].equals("monitor")) {
+      monitored(args.length > 1 ? Path.of(args[1]) : null);
+      return;
+    }
     final int tasks = 20_000;
     final int sleepsPerTask = 3;
     final int sleepMillis = 10;
@@ -56,6 +66,28 @@ public class NonPinningSyncDemo {
     System.out.printf("%nRatio sync/lock = %.2f, sync/plain = %.2f%n", tSync / (double) tLock, tSync / (double) tPlain);
   }
 
+  private static void monitored(Path csvDir) throws IOException {
+    final int tasks = 2_000;
+    System.setProperty("jdk.virtualThreadScheduler.parallelism", "4");
+    System.out.println("JDK: " + System.getProperty("java.version") + ", tasks=" + tasks);
+
+    Map<String, Runnable> variants = new LinkedHashMap<>();
+    variants.put("synchronized", vtSynchronizedSleeper(3, 10));
+    variants.put("reentrantlock", vtReentrantLockSleeper(3, 10));
+    variants.put("plain", vtPlainSleeper(3, 10));
+    for (Map.Entry<String, Runnable> variant : variants.entrySet()) {
+      try (VirtualThreadMonitor monitor = VirtualThreadMonitor.start(Duration.ofMillis(1), Duration.ofMillis(100),
+          t -> t.getJavaName() != null && t.getJavaName().startsWith("ForkJoinPool-"))) {
+        long ms = run(tasks, variant.getValue());
+        VirtualThreadMonitor.Report report = monitor.report();
+        System.out.printf("%n== %s + sleep: %d ms%n%s", variant.getKey(), ms, report);
+        if (csvDir != null) {
+          report.writeCsv(csvDir.resolve("pinning-" + variant.getKey() + ".csv"));
+        }
+      }
+    }
+  }
+
   private static long run(int tasks, Runnable task) {
     Instant start = Instant.now();
     try (ExecutorService exec = Executors.newVirtualThreadPerTaskExecutor()) {
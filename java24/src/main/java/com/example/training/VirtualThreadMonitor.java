@@ -0,0 +1,272 @@
+package com.example.training;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordedThread;
+import jdk.jfr.consumer.RecordingStream;
+
+//@formatter:off
+/**
+ * VirtualThreadMonitor
+ *
+ * Purpose:
+ *   Explain why a virtual-thread workload is slow while it runs, from JFR events
+ *   streamed in-process (RecordingStream, no .jfr file):
+ *   - jdk.VirtualThreadPinned       — a virtual thread blocked while holding its carrier,
+ *   - jdk.VirtualThreadSubmitFailed — the scheduler could not accept a virtual thread,
+ *   - jdk.ThreadCPULoad             — CPU of every carrier thread, sampled periodically.
+ *
+ * Attribution:
+ *   Every pinned event is charged to its call site: the first stack frame outside the
+ *   JDK (java.*, javax.*, jdk.*, sun.*). Sites are ranked by total pinned time.
+ *   On Java 24 the event also says why (pinnedReason, e.g. a native frame or
+ *   Object.wait) and the blocking operation; after JEP 491 synchronized alone no
+ *   longer pins, so what is left here is usually native code or class initialisers.
+ *
+ * Usage:
+ *   try (VirtualThreadMonitor monitor = VirtualThreadMonitor.start(Duration.ofMillis(1))) {
+ *     runWorkload();
+ *     VirtualThreadMonitor.Report report = monitor.report();
+ *     System.out.println(report);
+ *     report.writeCsv(Path.of("pinning.csv"));
+ *   }
+ *
+ * report() stops the stream first, so every event of the workload is counted.
+ */
+//@formatter:on
+public final class VirtualThreadMonitor implements AutoCloseable {
+
+  private static final Predicate<RecordedThread> FORK_JOIN_WORKERS = t -> t.getJavaName() != null
+      && t.getJavaName().startsWith("ForkJoinPool-") && t.getJavaName().contains("-worker-");
+
+  private final RecordingStream stream = new RecordingStream();
+  private final Predicate<RecordedThread> isCarrier;
+  private final Map<String, SiteStats> pinnedSites = new ConcurrentHashMap<>();
+  private final Map<String, LongAdder> submitFailures = new ConcurrentHashMap<>();
+  private final Map<String, CarrierStats> carriers = new ConcurrentHashMap<>();
+  private volatile boolean stopped;
+
+  private VirtualThreadMonitor(Duration pinThreshold, Duration cpuPeriod, Predicate<RecordedThread> isCarrier) {
+    this.isCarrier = isCarrier;
+    stream.enable("jdk.VirtualThreadPinned").withThreshold(pinThreshold).withStackTrace();
+    stream.enable("jdk.VirtualThreadSubmitFailed").withStackTrace();
+    stream.enable("jdk.ThreadCPULoad").withPeriod(cpuPeriod);
+    stream.onEvent("jdk.VirtualThreadPinned", this::onPinned);
+    stream.onEvent("jdk.VirtualThreadSubmitFailed", this::onSubmitFailed);
+    stream.onEvent("jdk.ThreadCPULoad", this::onCpuLoad);
+  }
+
+  /**
+   * Starts monitoring in the background with a 1 s CPU sample period, treating the default scheduler's
+   * ForkJoinPool workers as carriers.
+   *
+   * @param pinThreshold shortest pinned interval that is recorded (the JDK default is 20 ms)
+   */
+  public static VirtualThreadMonitor start(Duration pinThreshold) {
+    return start(pinThreshold, Duration.ofSeconds(1), FORK_JOIN_WORKERS);
+  }
+
+  public static VirtualThreadMonitor start(Duration pinThreshold, Duration cpuPeriod,
+      Predicate<RecordedThread> isCarrier) {
+    VirtualThreadMonitor monitor = new VirtualThreadMonitor(pinThreshold, cpuPeriod, isCarrier);
+    monitor.stream.startAsync();
+    return monitor;
+  }
+
+  // ---------------------------------------------------------
+
+  private void onPinned(RecordedEvent event) {
+    String site = callSite(event.getStackTrace());
+    String reason = event.hasField("pinnedReason") ? event.getString("pinnedReason") : null;
+    String key = reason == null ? site : site + " [" + reason + "]";
+    pinnedSites.computeIfAbsent(key, k -> new SiteStats()).add(event.getDuration().toNanos());
+  }
+
+  private void onSubmitFailed(RecordedEvent event) {
+    submitFailures.computeIfAbsent(callSite(event.getStackTrace()), k -> new LongAdder()).increment();
+  }
+
+  private void onCpuLoad(RecordedEvent event) {
+    RecordedThread thread = event.getThread();
+    if (thread != null && isCarrier.test(thread)) {
+      double load = event.getFloat("user") + event.getFloat("system");
+      carriers.computeIfAbsent(thread.getJavaName(), k -> new CarrierStats()).add(load);
+    }
+  }
+
+  /**
+   * First frame outside the JDK, e.g. {@code com.example.Foo.bar:42}; the top frame when all are JDK frames.
+   */
+  static String callSite(RecordedStackTrace stackTrace) {
+    if (stackTrace == null || stackTrace.getFrames().isEmpty()) {
+      return "<no stack trace>";
+    }
+    List<RecordedFrame> frames = stackTrace.getFrames();
+    for (RecordedFrame frame : frames) {
+      String type = frame.getMethod().getType().getName();
+      if (!(type.startsWith("java.") || type.startsWith("javax.") || type.startsWith("jdk.") || type.startsWith("sun."))) {
+        return format(frame);
+      }
+    }
+    return format(frames.get(0));
+  }
+
+  private static String format(RecordedFrame frame) {
+    return frame.getMethod().getType().getName() + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+  }
+
+  // ---------------------------------------------------------
+
+  /**
+   * Stops the stream (waiting for the events still buffered) and summarises everything seen.
+   */
+  public Report report() {
+    stop();
+    List<PinnedSite> sites = new ArrayList<>();
+    pinnedSites.forEach((site, stats) -> sites.add(
+        new PinnedSite(site, stats.count.sum(), Duration.ofNanos(stats.totalNanos.sum()), Duration.ofNanos(stats.maxNanos()))));
+    sites.sort(Comparator.comparing(PinnedSite::total).reversed());
+
+    List<SubmitFailureSite> failures = new ArrayList<>();
+    submitFailures.forEach((site, count) -> failures.add(new SubmitFailureSite(site, count.sum())));
+    failures.sort(Comparator.comparingLong(SubmitFailureSite::count).reversed());
+
+    List<CarrierLoad> loads = new ArrayList<>();
+    carriers.forEach((name, stats) -> loads.add(new CarrierLoad(name, stats.average(), stats.max())));
+    loads.sort(Comparator.comparing(CarrierLoad::carrier));
+    return new Report(sites, failures, loads);
+  }
+
+  private synchronized void stop() {
+    if (!stopped) {
+      stopped = true;
+      stream.stop();
+    }
+  }
+
+  @Override
+  public void close() {
+    stream.close();
+  }
+
+  // ---------------------------------------------------------
+
+  private static final class SiteStats {
+
+    final LongAdder count = new LongAdder();
+    final LongAdder totalNanos = new LongAdder();
+    private long maxNanos;
+
+    void add(long nanos) {
+      count.increment();
+      totalNanos.add(nanos);
+      synchronized (this) {
+        maxNanos = Math.max(maxNanos, nanos);
+      }
+    }
+
+    synchronized long maxNanos() {
+      return maxNanos;
+    }
+  }
+
+  private static final class CarrierStats {
+
+    private double sum;
+    private double max;
+    private int samples;
+
+    synchronized void add(double load) {
+      sum += load;
+      max = Math.max(max, load);
+      samples++;
+    }
+
+    synchronized double average() {
+      return samples == 0 ? 0 : sum / samples;
+    }
+
+    synchronized double max() {
+      return max;
+    }
+  }
+
+  public record PinnedSite(String site, long count, Duration total, Duration max) {
+
+  }
+
+  public record SubmitFailureSite(String site, long count) {
+
+  }
+
+  /**
+   * @param average share of one CPU, 0..1, over the samples taken while the monitor ran
+   */
+  public record CarrierLoad(String carrier, double average, double max) {
+
+  }
+
+  public record Report(List<PinnedSite> pinnedSites, List<SubmitFailureSite> submitFailures, List<CarrierLoad> carriers) {
+
+    public long pinnedCount() {
+      return pinnedSites.stream().mapToLong(PinnedSite::count).sum();
+    }
+
+    public Duration pinnedTotal() {
+      return pinnedSites.stream().map(PinnedSite::total).reduce(Duration.ZERO, Duration::plus);
+    }
+
+    /**
+     * One row per pinned site, submit-failure site and carrier.
+     */
+    public void writeCsv(Path file) throws IOException {
+      try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file))) {
+        out.println("kind,name,count,total_ms,max_ms,avg_cpu,max_cpu");
+        for (PinnedSite s : pinnedSites) {
+          out.printf("pinned,\"%s\",%d,%.3f,%.3f,,%n", s.site(), s.count(), millis(s.total()), millis(s.max()));
+        }
+        for (SubmitFailureSite s : submitFailures) {
+          out.printf("submit_failed,\"%s\",%d,,,,%n", s.site(), s.count());
+        }
+        for (CarrierLoad c : carriers) {
+          out.printf("carrier,\"%s\",,,,%.3f,%.3f%n", c.carrier(), c.average(), c.max());
+        }
+      }
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder sb = new StringBuilder();
+      sb.append(String.format("Pinned: %d events, %.1f ms in total%n", pinnedCount(), millis(pinnedTotal())));
+      for (PinnedSite s : pinnedSites) {
+        sb.append(String.format("  %8d x %10.1f ms (max %7.1f ms)  %s%n", s.count(), millis(s.total()), millis(s.max()), s.site()));
+      }
+      sb.append("Submit failures: ").append(submitFailures.isEmpty() ? "none" : "").append(System.lineSeparator());
+      for (SubmitFailureSite s : submitFailures) {
+        sb.append(String.format("  %8d x  %s%n", s.count(), s.site()));
+      }
+      sb.append("Carrier CPU:").append(carriers.isEmpty() ? " no samples" : "").append(System.lineSeparator());
+      for (CarrierLoad c : carriers) {
+        sb.append(String.format("  %-28s avg %5.1f%%  max %5.1f%%%n", c.carrier(), c.average() * 100, c.max() * 100));
+      }
+      return sb.toString();
+    }
+
+    private static double millis(Duration d) {
+      return d.toNanos() / 1e6;
+    }
+  }
+}
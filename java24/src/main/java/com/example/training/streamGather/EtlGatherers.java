@@ -0,0 +1,494 @@
+package com.example.training.streamGather;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+import java.util.stream.Gatherer;
+
+//@formatter:off
+/**
+ * EtlGatherers (Java 24)
+ *
+ * Custom Gatherers for streaming ETL, the companion of the built-ins shown in {@link GatherersDemo}:
+ *  - tumblingByEventTime / slidingByEventTime: windows on a timestamp taken from the element, closed by a
+ *    watermark (highest timestamp seen minus the allowed lateness), so they also work on unbounded sources.
+ *  - batchByWeight: batches capped by total weight (e.g. bytes) with a max-latency flush.
+ *  - throttle: token-bucket rate limiting, shared by every thread of a parallel stream.
+ *  - distinctApprox: distinct in bounded memory (Bloom filter); may drop a few unique elements, never lets a
+ *    duplicate through.
+ *  - topK: the k greatest elements.
+ *
+ * Allocation:
+ *  - windows keep the pending elements in one sorted array buffer (not a list per window); only the emitted
+ *    window lists are allocated,
+ *  - batches are pre-sized from the previous batch,
+ *  - throttle and distinctApprox allocate nothing per element (one CAS on a long / a few bit sets under one
+ *    of 64 striped monitors, so parallel puts of the same key admit it once).
+ *
+ * Parallel streams:
+ *  - batchByWeight and topK have combiners. The partly filled batches of all segments are combined and emitted
+ *    at the end, so in parallel the batches keep the encounter order only within a segment,
+ *  - throttle and distinctApprox keep their state in a shared thread-safe object (create one gatherer per
+ *    pipeline run),
+ *  - the event-time windows are sequential: a window can only be emitted early when every element before the
+ *    watermark has been seen, which needs the encounter order. The rest of the pipeline still runs in parallel.
+ *
+ * A Gatherer only runs when an element arrives (pushing from a timer thread is not allowed), so "max latency" and
+ * the watermark advance with the data: a source that goes silent holds the last batch / window until the next
+ * element or the end of the stream.
+ */
+//@formatter:on
+public final class EtlGatherers {
+
+  private EtlGatherers() {
+  }
+
+  public record TimeWindow<T>(long start, long end, List<T> elements) {
+
+  }
+
+  // ---------------------------------------------------------
+  // Event-time windows
+
+  /**
+   * Non-overlapping windows {@code [k * size, (k + 1) * size)} on the timestamps returned by {@code timestamp}
+   * (e.g. epoch millis). Elements older than an already emitted window are dropped; empty windows are skipped.
+   */
+  public static <T> Gatherer<T, ?, TimeWindow<T>> tumblingByEventTime(ToLongFunction<? super T> timestamp,
+      Duration size, Duration allowedLateness) {
+    return slidingByEventTime(timestamp, size, size, allowedLateness);
+  }
+
+  /**
+   * Windows of length {@code size} starting every {@code slide}; an element belongs to {@code size / slide}
+   * windows but is buffered once.
+   */
+  public static <T> Gatherer<T, ?, TimeWindow<T>> slidingByEventTime(ToLongFunction<? super T> timestamp,
+      Duration size, Duration slide, Duration allowedLateness) {
+    long sizeMillis = size.toMillis();
+    long slideMillis = slide.toMillis();
+    long latenessMillis = allowedLateness.toMillis();
+    if (sizeMillis <= 0 || slideMillis <= 0 || slideMillis > sizeMillis || latenessMillis < 0) {
+      throw new IllegalArgumentException("Need 0 < slide <= size and lateness >= 0");
+    }
+    return Gatherer.ofSequential(
+        () -> new WindowState<T>(sizeMillis, slideMillis),
+        Gatherer.Integrator.ofGreedy((state, element, downstream) -> {
+          long time = timestamp.applyAsLong(element);
+          if (time < state.nextStart) {
+            return true; // later than the allowed lateness: its windows are gone
+          }
+          state.add(time, element);
+          if (time > state.maxTime) {
+            state.maxTime = time;
+          }
+          return state.emitUpTo(state.maxTime - latenessMillis, downstream);
+        }),
+        (state, downstream) -> state.emitUpTo(Long.MAX_VALUE, downstream));
+  }
+
+  /**
+   * Pending elements sorted by timestamp, in two parallel arrays used as a deque. Everything before
+   * {@code nextStart} has been emitted.
+   */
+  private static final class WindowState<T> {
+
+    final long size;
+    final long slide;
+    long nextStart = Long.MIN_VALUE;
+    long maxTime = Long.MIN_VALUE;
+    long[] times = new long[64];
+    Object[] elements = new Object[64];
+    int head;
+    int tail;
+
+    WindowState(long size, long slide) {
+      this.size = size;
+      this.slide = slide;
+    }
+
+    void add(long time, Object element) {
+      if (tail == times.length) {
+        makeRoom();
+      }
+      int i = tail++;
+      while (i > head && times[i - 1] > time) { // out-of-order elements are rare and close to the end
+        times[i] = times[i - 1];
+        elements[i] = elements[i - 1];
+        i--;
+      }
+      times[i] = time;
+      elements[i] = element;
+    }
+
+    /**
+     * Emits every window that ends at or before {@code watermark}.
+     */
+    @SuppressWarnings("unchecked")
+    boolean emitUpTo(long watermark, Gatherer.Downstream<? super TimeWindow<T>> downstream) {
+      while (head < tail) {
+        // first window holding the oldest pending element, skipping empty windows
+        long start = Math.max(nextStart, Math.floorDiv(times[head] - size, slide) * slide + slide);
+        long end = start + size;
+        if (end > watermark) {
+          return true;
+        }
+        int to = head;
+        while (to < tail && times[to] < end) {
+          to++;
+        }
+        List<T> window = new ArrayList<>(to - head);
+        for (int i = head; i < to; i++) {
+          window.add((T) elements[i]);
+        }
+        nextStart = start + slide;
+        while (head < tail && times[head] < nextStart) {
+          elements[head++] = null;
+        }
+        if (!downstream.push(new TimeWindow<>(start, end, window))) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private void makeRoom() {
+      int live = tail - head;
+      if (live > times.length / 2) {
+        times = Arrays.copyOf(times, times.length * 2);
+        elements = Arrays.copyOf(elements, elements.length * 2);
+      }
+      System.arraycopy(times, head, times, 0, live);
+      System.arraycopy(elements, head, elements, 0, live);
+      Arrays.fill(elements, live, tail, null);
+      head = 0;
+      tail = live;
+    }
+  }
+
+  // ---------------------------------------------------------
+  // Batching by weight
+
+  /**
+   * Batches whose total weight stays within {@code maxWeight} (an element heavier than that forms a batch alone).
+   * A batch is also emitted when the next element arrives more than {@code maxLatency} after the batch's first
+   * element.
+   */
+  public static <T> Gatherer<T, ?, List<T>> batchByWeight(ToLongFunction<? super T> weigher, long maxWeight,
+      Duration maxLatency) {
+    if (maxWeight <= 0) {
+      throw new IllegalArgumentException("maxWeight must be positive: " + maxWeight);
+    }
+    long maxLatencyNanos = maxLatency.toNanos();
+    return Gatherer.of(
+        BatchState<T>::new,
+        Gatherer.Integrator.ofGreedy((state, element, downstream) -> {
+          if (!state.flushFull(downstream)) {
+            return false;
+          }
+          long weight = weigher.applyAsLong(element);
+          long now = System.nanoTime();
+          if (!state.batch.isEmpty()
+              && (state.weight + weight > maxWeight || now - state.openedAt >= maxLatencyNanos)) {
+            if (!state.emit(downstream)) {
+              return false;
+            }
+          }
+          if (state.batch.isEmpty()) {
+            state.openedAt = now;
+          }
+          state.batch.add(element);
+          state.weight += weight;
+          return true;
+        }),
+        (left, right) -> left.merge(right, maxWeight),
+        (state, downstream) -> {
+          if (state.flushFull(downstream) && !state.batch.isEmpty()) {
+            state.emit(downstream);
+          }
+        });
+  }
+
+  private static final class BatchState<T> {
+
+    ArrayList<T> batch = new ArrayList<>();
+    long weight;
+    long openedAt;
+    int lastSize = 16;
+    // complete batches left over from merging two segments, emitted first
+    List<List<T>> full;
+
+    boolean emit(Gatherer.Downstream<? super List<T>> downstream) {
+      List<T> out = batch;
+      lastSize = out.size();
+      batch = new ArrayList<>(lastSize); // the next batch is probably about as long
+      weight = 0;
+      return downstream.push(out);
+    }
+
+    boolean flushFull(Gatherer.Downstream<? super List<T>> downstream) {
+      if (full != null) {
+        List<List<T>> batches = full;
+        full = null;
+        for (List<T> b : batches) {
+          if (!downstream.push(b)) {
+            return false;
+          }
+        }
+      }
+      return true;
+    }
+
+    /**
+     * {@code right} holds the elements that follow this segment's: if it has complete batches, or its open batch
+     * does not fit into ours, our open batch is complete too.
+     */
+    BatchState<T> merge(BatchState<T> right, long maxWeight) {
+      if (right.full == null && weight + right.weight <= maxWeight) {
+        if (batch.isEmpty()) {
+          openedAt = right.openedAt;
+        }
+        batch.addAll(right.batch);
+        weight += right.weight;
+        return this;
+      }
+      if (full == null) {
+        full = new ArrayList<>();
+      }
+      if (!batch.isEmpty()) {
+        full.add(batch);
+      }
+      if (right.full != null) {
+        full.addAll(right.full);
+      }
+      batch = right.batch;
+      weight = right.weight;
+      openedAt = right.openedAt;
+      return this;
+    }
+  }
+
+  // ---------------------------------------------------------
+  // Rate limiting
+
+  /**
+   * One permit per element from a bucket of {@code burst} permits refilled at {@code permitsPerSecond}.
+   */
+  public static <T> Gatherer<T, ?, T> throttle(double permitsPerSecond, int burst) {
+    return throttle(new TokenBucket(permitsPerSecond, burst), e -> 1);
+  }
+
+  /**
+   * Waits for {@code cost(element)} permits of {@code bucket} before passing each element on; share the bucket to
+   * put several pipelines under one limit.
+   */
+  public static <T> Gatherer<T, ?, T> throttle(TokenBucket bucket, ToIntFunction<? super T> cost) {
+    return Gatherer.of(Gatherer.Integrator.ofGreedy(
+        (Void state, T element, Gatherer.Downstream<? super T> downstream) -> {
+          bucket.acquire(cost.applyAsInt(element));
+          return downstream.push(element);
+        }));
+  }
+
+  /**
+   * Token bucket as a single long (the GCRA form): {@code theoretical} is when the bucket will be full again. A
+   * permit is a CAS on that long, with no lock or allocation, and threads that take permits at the same time never
+   * block each other.
+   */
+  public static final class TokenBucket {
+
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final AtomicLong theoretical;
+
+    public TokenBucket(double permitsPerSecond, int burst) {
+      if (permitsPerSecond <= 0 || burst < 1) {
+        throw new IllegalArgumentException("Need a positive rate and burst >= 1");
+      }
+      this.intervalNanos = Math.max(1, (long) (1e9 / permitsPerSecond));
+      this.burstNanos = intervalNanos * (burst - 1);
+      this.theoretical = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * Reserves {@code permits} and waits until they are due.
+     *
+     * @throws CancellationException if the thread is interrupted while waiting (the interrupt stays set)
+     */
+    public void acquire(int permits) {
+      long now = System.nanoTime();
+      long cost = intervalNanos * permits;
+      long previous;
+      long start;
+      do {
+        previous = theoretical.get();
+        start = previous - now < 0 ? now : previous;
+      } while (!theoretical.compareAndSet(previous, start + cost));
+      long due = start + cost - intervalNanos - burstNanos;
+      for (long wait = due - now; wait > 0; wait = due - System.nanoTime()) {
+        LockSupport.parkNanos(wait);
+        if (Thread.currentThread().isInterrupted()) {
+          throw new CancellationException("Interrupted while throttled");
+        }
+      }
+    }
+
+    /**
+     * @return true if {@code permits} were available right now (and took them)
+     */
+    public boolean tryAcquire(int permits) {
+      long now = System.nanoTime();
+      long cost = intervalNanos * permits;
+      while (true) {
+        long previous = theoretical.get();
+        long start = previous - now < 0 ? now : previous;
+        if (start + cost - intervalNanos - burstNanos - now > 0) {
+          return false;
+        }
+        if (theoretical.compareAndSet(previous, start + cost)) {
+          return true;
+        }
+      }
+    }
+  }
+
+  // ---------------------------------------------------------
+  // Approximate distinct
+
+  /**
+   * Distinct by {@code hashCode}, in a Bloom filter sized for {@code expectedItems} at false-positive rate
+   * {@code fpp}: memory stays fixed however long the stream is. Up to {@code fpp} of the unique elements are
+   * dropped as "seen" (more if the stream exceeds {@code expectedItems}). The filter belongs to the returned
+   * gatherer: use a new one for every pipeline run.
+   */
+  public static <T> Gatherer<T, ?, T> distinctApprox(long expectedItems, double fpp) {
+    return distinctApprox(e -> Objects.hashCode(e), expectedItems, fpp);
+  }
+
+  /**
+   * Same, with a 64-bit key hash: better than {@code hashCode} once the stream has many millions of keys.
+   */
+  public static <T> Gatherer<T, ?, T> distinctApprox(ToLongFunction<? super T> keyHash, long expectedItems,
+      double fpp) {
+    BloomFilter filter = new BloomFilter(expectedItems, fpp);
+    return Gatherer.of(Gatherer.Integrator.ofGreedy(
+        (Void state, T element, Gatherer.Downstream<? super T> downstream) ->
+            !filter.put(keyHash.applyAsLong(element)) || downstream.push(element)));
+  }
+
+  /**
+   * Thread-safe Bloom filter over 64-bit hashes, bits set with an atomic OR; the k bit positions come from two
+   * mixes of the hash (Kirsch-Mitzenmacher). Setting the k bits of one key is not atomic as a whole: two threads
+   * putting the same key could each set some of its bits first and both report it new. So a put holds one of a
+   * few striped monitors, picked by the hash: puts of the same key run one after the other, puts of different
+   * keys rarely meet on a stripe.
+   */
+  static final class BloomFilter {
+
+    private static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final int STRIPES = 64;
+
+    private final Object[] stripes = new Object[STRIPES];
+    private final long[] words;
+    private final long bits;
+    private final int hashes;
+
+    BloomFilter(long expectedItems, double fpp) {
+      if (expectedItems <= 0 || fpp <= 0 || fpp >= 1) {
+        throw new IllegalArgumentException("Need expectedItems > 0 and 0 < fpp < 1");
+      }
+      long m = (long) Math.ceil(-expectedItems * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+      int wordCount = (int) Math.min(Integer.MAX_VALUE - 8, (m + 63) >>> 6);
+      this.words = new long[wordCount];
+      this.bits = (long) wordCount << 6;
+      this.hashes = Math.max(1, (int) Math.round((double) bits / expectedItems * Math.log(2)));
+      for (int i = 0; i < STRIPES; i++) {
+        stripes[i] = new Object();
+      }
+    }
+
+    /**
+     * @return true if the hash was not in the filter before (so the element is certainly new)
+     */
+    boolean put(long hash) {
+      long h1 = mix(hash);
+      long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+      boolean added = false;
+      // Other stripes still set bits in the same words, hence the atomic OR under the monitor
+      synchronized (stripes[(int) (h1 >>> 58)]) {
+        for (int i = 0; i < hashes; i++) {
+          long bit = Math.floorMod(h1 + i * h2, bits);
+          int index = (int) (bit >>> 6);
+          long mask = 1L << bit;
+          if (((long) WORDS.getOpaque(words, index) & mask) == 0) { // a plain read first: most bits are already set
+            added |= ((long) WORDS.getAndBitwiseOr(words, index, mask) & mask) == 0;
+          }
+        }
+      }
+      return added;
+    }
+
+    private static long mix(long z) { // SplitMix64 finalizer
+      z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+      z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+      return z ^ (z >>> 31);
+    }
+  }
+
+  // ---------------------------------------------------------
+  // Top-K
+
+  /**
+   * The {@code k} greatest elements by {@code comparator}, greatest first, emitted when the stream ends. On an
+   * unbounded source apply it per window: {@code window.elements().stream().gather(topK(...))}.
+   */
+  public static <T> Gatherer<T, ?, T> topK(int k, Comparator<? super T> comparator) {
+    if (k <= 0) {
+      throw new IllegalArgumentException("k must be positive: " + k);
+    }
+    return Gatherer.of(
+        () -> new PriorityQueue<T>(k, comparator), // min-heap: the root is the weakest of the k
+        Gatherer.Integrator.ofGreedy((heap, element, downstream) -> {
+          offer(heap, element, k, comparator);
+          return true;
+        }),
+        (left, right) -> {
+          PriorityQueue<T> big = left.size() >= right.size() ? left : right;
+          PriorityQueue<T> small = big == left ? right : left;
+          for (T element : small) {
+            offer(big, element, k, comparator);
+          }
+          return big;
+        },
+        (heap, downstream) -> {
+          @SuppressWarnings("unchecked")
+          T[] sorted = (T[]) heap.toArray();
+          Arrays.sort(sorted, comparator.reversed());
+          for (T element : sorted) {
+            if (!downstream.push(element)) {
+              return;
+            }
+          }
+        });
+  }
+
+  private static <T> void offer(PriorityQueue<T> heap, T element, int k, Comparator<? super T> comparator) {
+    if (heap.size() < k) {
+      heap.offer(element);
+    } else if (comparator.compare(element, heap.peek()) > 0) { // most elements stop here, without touching the heap
+      heap.poll();
+      heap.offer(element);
+    }
+  }
+}
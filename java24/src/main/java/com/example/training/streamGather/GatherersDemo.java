@@ -3,8 +3,10 @@ package com.example.training.streamGather;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Gatherers;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
@@ -19,6 +21,8 @@ import java.util.stream.Stream;
  *  - scan(initial, op): emits each prefix accumulation (running totals/aggregates).
  *  - fold(initial, op): ordered reduction that emits exactly one element downstream.
  *  - mapConcurrent(max, mapper): concurrent mapping on virtual threads, preserving encounter order.
+ *  - custom Gatherers from {@link EtlGatherers} on an endless source: event-time windows, weight batching,
+ *    throttling, approximate distinct and top-K.
  *
  * Quick run:
  *   javac GatherersShowcase.java && java GatherersShowcase
@@ -32,6 +36,7 @@ public class GatherersDemo {
     scanDemo();
     foldDemo();
     mapConcurrentDemo();
+    etlGatherersDemo();
   }
 
   private static void windowFixedDemo() {
@@ -108,6 +113,45 @@ public class GatherersDemo {
     System.out.println("sum=" + sum);
   }
 
+  record ClickEvent(long timeMillis, String user, String page, int bytes) {
+
+  }
+
+  private static void etlGatherersDemo() {
+    // An endless source of clicks, 5 ms of event time apart, arriving slightly out of order
+    AtomicLong clock = new AtomicLong();
+    Stream<ClickEvent> clicks = Stream.generate(() -> {
+      ThreadLocalRandom random = ThreadLocalRandom.current();
+      long time = Math.max(0, clock.addAndGet(5) - random.nextInt(20));
+      return new ClickEvent(time, "user-" + random.nextInt(5_000), "/page/" + random.nextInt(10),
+          200 + random.nextInt(800));
+    });
+
+    // Throttle to 2000 events/s, drop repeated (user, page) pairs, one-second tumbling windows, top 3 pages by
+    // traffic in each window; the source never ends, limit() does.
+    clicks
+        .gather(EtlGatherers.throttle(2_000, 100))
+        .gather(EtlGatherers.distinctApprox(e -> e.user().hashCode() * 31L + e.page().hashCode(), 100_000, 0.01))
+        .gather(EtlGatherers.tumblingByEventTime(ClickEvent::timeMillis, Duration.ofSeconds(1), Duration.ofMillis(50)))
+        .limit(3)
+        .forEach(window -> {
+          List<ClickEvent> top = window.elements().stream()
+              .gather(EtlGatherers.topK(3, Comparator.comparingInt(ClickEvent::bytes)))
+              .toList();
+          System.out.println("window [" + window.start() + ", " + window.end() + "): " + window.elements().size()
+              + " first visits, biggest: " + top.stream().map(e -> e.page() + "=" + e.bytes()).toList());
+        });
+
+    // Batches of at most 64 KB for a bulk sink, flushed after 100 ms at the latest
+    List<Integer> batchSizes = IntStream.range(0, 5_000)
+        .mapToObj(i -> new ClickEvent(i, "user-" + i % 50, "/page/" + i % 10, 200 + i % 800))
+        .gather(EtlGatherers.batchByWeight(ClickEvent::bytes, 64 * 1024, Duration.ofMillis(100)))
+        .map(List::size)
+        .toList();
+    System.out.println("batchByWeight(64 KB): " + batchSizes.size() + " batches, first sizes "
+        + batchSizes.subList(0, Math.min(5, batchSizes.size())));
+  }
+
   private static int slowDouble(int n) {
     try {
       Thread.sleep(10); // pretend HTTP/DB latency
@@ -0,0 +1,342 @@
+//@formatter:off
+/**
+ * Structured fan-out / fan-in on virtual threads, without preview features.
+ *
+ * StructuredTaskScope is still a preview API in Java 25, so this is the same idea
+ * built from final APIs only:
+ *  - every subtask runs on its own virtual thread, forked by the owner thread,
+ *  - one deadline for the whole scope: join() gives up and cancels everything left,
+ *  - ALL_SUCCESSFUL: the first failure cancels the siblings (interrupts them),
+ *  - FIRST_SUCCESSFUL: the first success wins and cancels the others (hedged calls, replicas),
+ *  - close() cancels whatever still runs and waits for it, so no task outlives the
+ *    try-with-resources block,
+ *  - the ScopedValues named at open() are re-bound in every subtask with the values
+ *    the owner had when it forked (plain threads do not inherit ScopedValue bindings).
+ *
+ * Usage:
+ *  try (var scope = FanOut.<Object>allSuccessful(Duration.ofMillis(500), TRACE_ID)) {
+ *    var user = scope.fork(() -> fetchUser(id));
+ *    var orders = scope.fork(() -> fetchOrders(id));
+ *    scope.joinAll();
+ *    return new Dashboard(user.get(), orders.get());
+ *  }
+ *
+ * Subtasks must react to interruption, otherwise cancelling cannot stop them and
+ * close() waits for them to finish on their own.
+ */
+//@formatter:on
+package com.example.training.scopedValue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+public final class FanOut<T> implements AutoCloseable {
+
+  public enum Policy {
+    /** Every subtask must succeed; the first failure cancels the rest. */
+    ALL_SUCCESSFUL,
+    /** One success is enough; it cancels the rest. Fails only when every subtask failed. */
+    FIRST_SUCCESSFUL
+  }
+
+  private final Policy policy;
+  private final long deadline;
+  private final ScopedValue<?>[] inherited;
+  private final Thread owner = Thread.currentThread();
+  private final ThreadFactory threads = Thread.ofVirtual().name("fan-out-", 0).factory();
+  private final List<Subtask<T>> subtasks = new ArrayList<>();
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition changed = lock.newCondition();
+  // guarded by lock
+  private final Set<Thread> running = new HashSet<>();
+  private int unfinished;
+  private boolean shutdown;
+  private boolean timedOut;
+  private Subtask<T> winner;
+  private Throwable firstFailure;
+
+  private boolean closed;
+
+  private FanOut(Policy policy, Duration timeout, ScopedValue<?>[] inherited) {
+    this.policy = policy;
+    this.deadline = System.nanoTime() + timeout.toNanos();
+    this.inherited = inherited.clone();
+  }
+
+  /**
+   * @param timeout   deadline for the whole scope, counted from now
+   * @param inherited ScopedValues to propagate into the subtasks
+   */
+  public static <T> FanOut<T> open(Policy policy, Duration timeout, ScopedValue<?>... inherited) {
+    return new FanOut<>(policy, timeout, inherited);
+  }
+
+  public static <T> FanOut<T> allSuccessful(Duration timeout, ScopedValue<?>... inherited) {
+    return open(Policy.ALL_SUCCESSFUL, timeout, inherited);
+  }
+
+  public static <T> FanOut<T> firstSuccessful(Duration timeout, ScopedValue<?>... inherited) {
+    return open(Policy.FIRST_SUCCESSFUL, timeout, inherited);
+  }
+
+  /**
+   * Starts {@code task} on a new virtual thread. After a shutdown (failure, winner or deadline) the task is not
+   * started and the returned subtask is already cancelled.
+   */
+  public <U extends T> Subtask<U> fork(Callable<? extends U> task) {
+    checkOwner();
+    if (closed) {
+      throw new IllegalStateException("Scope is closed");
+    }
+    Subtask<U> subtask = new Subtask<>();
+    @SuppressWarnings("unchecked")
+    Subtask<T> tracked = (Subtask<T>) (Subtask<?>) subtask;
+    subtasks.add(tracked);
+    Thread thread = threads.newThread(bind(() -> run(tracked, task)));
+
+    lock.lock();
+    try {
+      if (shutdown) {
+        subtask.state = Subtask.State.CANCELLED;
+        return subtask;
+      }
+      unfinished++;
+      running.add(thread);
+    } finally {
+      lock.unlock();
+    }
+    thread.start();
+    return subtask;
+  }
+
+  /**
+   * Waits until every subtask succeeded, one failed, or the deadline passed.
+   *
+   * @return the results in fork order
+   * @throws ExecutionException wrapping the first failure; the other subtasks were cancelled
+   * @throws TimeoutException   when the deadline passed first; the subtasks still running were cancelled
+   */
+  public List<T> joinAll() throws InterruptedException, ExecutionException, TimeoutException {
+    requirePolicy(Policy.ALL_SUCCESSFUL);
+    await();
+    lock.lock();
+    try {
+      if (firstFailure != null) {
+        throw new ExecutionException(firstFailure);
+      }
+      if (timedOut) {
+        throw new TimeoutException("Fan-out did not complete before its deadline");
+      }
+    } finally {
+      lock.unlock();
+    }
+    List<T> results = new ArrayList<>(subtasks.size());
+    for (Subtask<T> subtask : subtasks) {
+      results.add(subtask.get());
+    }
+    return results;
+  }
+
+  /**
+   * Waits for the first successful subtask, or until all failed, or the deadline passed.
+   *
+   * @throws ExecutionException wrapping the first failure, with the others suppressed, when every subtask failed
+   * @throws TimeoutException   when the deadline passed before any subtask succeeded
+   */
+  public T joinFirst() throws InterruptedException, ExecutionException, TimeoutException {
+    requirePolicy(Policy.FIRST_SUCCESSFUL);
+    await();
+    lock.lock();
+    try {
+      if (winner != null) {
+        return winner.value;
+      }
+      if (timedOut) {
+        throw new TimeoutException("No subtask succeeded before the deadline");
+      }
+    } finally {
+      lock.unlock();
+    }
+    Throwable failure = null;
+    for (Subtask<T> subtask : subtasks) {
+      if (subtask.state == Subtask.State.FAILED) {
+        if (failure == null) {
+          failure = subtask.error;
+        } else {
+          failure.addSuppressed(subtask.error);
+        }
+      }
+    }
+    throw new ExecutionException("All subtasks failed", failure);
+  }
+
+  /**
+   * Cancels the subtasks still running and waits for their threads to finish.
+   */
+  @Override
+  public void close() {
+    checkOwner();
+    if (closed) {
+      return;
+    }
+    closed = true;
+    lock.lock();
+    try {
+      shutdownLocked();
+      while (unfinished > 0) {
+        changed.awaitUninterruptibly();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  // ---------------------------------------------------------
+
+  /**
+   * Waits until nothing runs any more or the scope was shut down; at the deadline, shuts it down itself.
+   */
+  private void await() throws InterruptedException {
+    checkOwner();
+    lock.lock();
+    try {
+      while (unfinished > 0 && !shutdown) {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+          timedOut = true;
+          shutdownLocked();
+          return;
+        }
+        changed.awaitNanos(remaining);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void run(Subtask<T> subtask, Callable<? extends T> task) {
+    T value = null;
+    Throwable error = null;
+    try {
+      value = task.call();
+    } catch (Throwable e) {
+      error = e;
+    }
+    lock.lock();
+    try {
+      running.remove(Thread.currentThread());
+      if (shutdown) {
+        subtask.state = Subtask.State.CANCELLED; // finished after the outcome was decided: ignored
+      } else if (error == null) {
+        subtask.value = value;
+        subtask.state = Subtask.State.SUCCESS;
+        if (policy == Policy.FIRST_SUCCESSFUL) {
+          winner = subtask;
+          shutdownLocked();
+        }
+      } else {
+        subtask.error = error;
+        subtask.state = Subtask.State.FAILED;
+        if (policy == Policy.ALL_SUCCESSFUL) {
+          firstFailure = error;
+          shutdownLocked();
+        }
+      }
+      unfinished--;
+      changed.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void shutdownLocked() {
+    if (!shutdown) {
+      shutdown = true;
+      for (Thread thread : running) {
+        thread.interrupt();
+      }
+      changed.signalAll();
+    }
+  }
+
+  /**
+   * Wraps {@code body} so it runs with the inherited ScopedValues bound to the owner's current values.
+   */
+  private Runnable bind(Runnable body) {
+    ScopedValue.Carrier carrier = null;
+    for (ScopedValue<?> key : inherited) {
+      if (key.isBound()) {
+        carrier = where(carrier, key);
+      }
+    }
+    if (carrier == null) {
+      return body;
+    }
+    ScopedValue.Carrier bindings = carrier;
+    return () -> bindings.run(body);
+  }
+
+  private static <V> ScopedValue.Carrier where(ScopedValue.Carrier carrier, ScopedValue<V> key) {
+    V value = key.get();
+    return carrier == null ? ScopedValue.where(key, value) : carrier.where(key, value);
+  }
+
+  private void checkOwner() {
+    if (Thread.currentThread() != owner) {
+      throw new WrongThreadException("Only the thread that opened the scope may use it");
+    }
+  }
+
+  private void requirePolicy(Policy expected) {
+    if (policy != expected) {
+      throw new IllegalStateException("Scope was opened with " + policy);
+    }
+  }
+
+  // ---------------------------------------------------------
+
+  /**
+   * Handle to one forked task. Its state is final once join returned.
+   */
+  public static final class Subtask<T> implements Supplier<T> {
+
+    public enum State { RUNNING, SUCCESS, FAILED, CANCELLED }
+
+    private volatile State state = State.RUNNING;
+    private T value;
+    private Throwable error;
+
+    public State state() {
+      return state;
+    }
+
+    /**
+     * @throws IllegalStateException unless the subtask succeeded
+     */
+    @Override
+    public T get() {
+      if (state != State.SUCCESS) {
+        throw new IllegalStateException("Subtask " + state);
+      }
+      return value;
+    }
+
+    public Throwable exception() {
+      if (state != State.FAILED) {
+        throw new IllegalStateException("Subtask " + state);
+      }
+      return error;
+    }
+  }
+}
@@ -0,0 +1,93 @@
+//@formatter:off
+/**
+ * FanOut in four situations, each request with its trace ID in a ScopedValue that
+ * the subtasks see too:
+ *  1. dashboard: user, orders and recommendations in parallel, all must succeed,
+ *  2. failure: orders fail, the slow recommendations call is cancelled at once,
+ *  3. replicas: the same query on three replicas, the fastest answer wins,
+ *  4. deadline: the scope gives up after 300 ms and nothing keeps running.
+ *
+ * Compare with CompletableFutureDemo2 (allOf + join): there a failed call does not
+ * stop its siblings and a slow one has no upper bound.
+ */
+//@formatter:on
+package com.example.training.scopedValue;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+public class FanOutDemo {
+
+  private static final ScopedValue<String> TRACE_ID = ScopedValue.newInstance();
+
+  static void main() throws Exception {
+    ScopedValue.where(TRACE_ID, "REQ-1").call(() -> dashboard(false));
+    ScopedValue.where(TRACE_ID, "REQ-2").call(() -> dashboard(true));
+    ScopedValue.where(TRACE_ID, "REQ-3").call(FanOutDemo::fastestReplica);
+    ScopedValue.where(TRACE_ID, "REQ-4").call(FanOutDemo::deadline);
+  }
+
+  private static Void dashboard(boolean ordersFail) throws InterruptedException {
+    long start = System.nanoTime();
+    try (FanOut<Object> scope = FanOut.allSuccessful(Duration.ofSeconds(1), TRACE_ID)) {
+      FanOut.Subtask<String> user = scope.fork(() -> call("user", 300, false));
+      FanOut.Subtask<String> orders = scope.fork(() -> call("orders", 200, ordersFail));
+      FanOut.Subtask<String> recommendations = scope.fork(() -> call("recommendations", 800, false));
+      scope.joinAll();
+      log("Dashboard: " + user.get() + ", " + orders.get() + ", " + recommendations.get());
+    } catch (ExecutionException e) {
+      log("Dashboard failed: " + e.getCause().getMessage());
+    } catch (TimeoutException e) {
+      log(e.getMessage());
+    }
+    log("Took " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    return null;
+  }
+
+  private static Void fastestReplica() throws InterruptedException {
+    try (FanOut<String> scope = FanOut.firstSuccessful(Duration.ofSeconds(1), TRACE_ID)) {
+      for (int replica = 1; replica <= 3; replica++) {
+        int latency = 100 + replica * 150;
+        scope.fork(() -> call("replica-" + latency, latency, false));
+      }
+      log("Fastest answer: " + scope.joinFirst());
+    } catch (ExecutionException | TimeoutException e) {
+      log("No replica answered: " + e);
+    }
+    return null;
+  }
+
+  private static Void deadline() throws InterruptedException {
+    try (FanOut<String> scope = FanOut.allSuccessful(Duration.ofMillis(300), TRACE_ID)) {
+      scope.fork(() -> call("fast", 100, false));
+      scope.fork(() -> call("stuck", 5_000, false));
+      List<String> results = scope.joinAll();
+      log("Results: " + results);
+    } catch (ExecutionException | TimeoutException e) {
+      log("Gave up: " + e.getMessage());
+    }
+    return null;
+  }
+
+  private static String call(String service, long millis, boolean fail) throws InterruptedException {
+    log(service + " started on " + Thread.currentThread());
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      log(service + " cancelled");
+      throw e;
+    }
+    if (fail) {
+      throw new IllegalStateException(service + " unavailable");
+    }
+    log(service + " done");
+    return service + "-data";
+  }
+
+  private static void log(String msg) {
+    String trace = TRACE_ID.isBound() ? TRACE_ID.get() : "NO_TRACE";
+    System.out.printf("[%s] %s%n", trace, msg);
+  }
+}